@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXB;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Peer filter evaluation with the growing number of rules. Every kind of rule is compiled into a single
+ * lookup structure, so the cost per artifact is expected to stay flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArtifactFilterBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int rules;
+
+    private static final int ARTIFACTS = 1024;
+
+    private ArtifactFilter filter;
+    private ArtifactMetaInfo[] metaInfos;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        StringBuilder xml = new StringBuilder("<filter>");
+        for (int i = 0; i < rules; i++) {
+            xml.append("<include repository=\"releases-").append(i).append("\"/>");
+            xml.append("<include groupId=\"com.griddynamics.team").append(i).append("\"/>");
+            xml.append("<exclude pattern=\"com.griddynamics.*:artifact-").append(i).append("?:*\"/>");
+        }
+        xml.append("<exclude versionType=\"snapshot\"/></filter>");
+        filter = ArtifactFilter.compile(JAXB.unmarshal(new StringReader(xml.toString()), ReplicationFilter.class));
+        metaInfos = new ArtifactMetaInfo[ARTIFACTS];
+        for (int i = 0; i < ARTIFACTS; i++) {
+            metaInfos[i] = Artifacts.metaInfo(i);
+        }
+    }
+
+    @Benchmark
+    public boolean accepts() {
+        return filter.accepts(metaInfos[next++ & (ARTIFACTS - 1)]);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+
+import java.io.File;
+
+/**
+ * Test data of the benchmarks
+ */
+final class Artifacts {
+
+    static final String MASTER_URL = "http://master:8081/nexus";
+
+    private Artifacts() {
+    }
+
+    /**
+     * Returns meta info of the artifact deployed to the master nexus
+     * @param index Number of the artifact
+     */
+    static ArtifactMetaInfo metaInfo(int index) {
+        ArtifactMetaInfo metaInfo = new ArtifactMetaInfo(MASTER_URL, "com.griddynamics.cd.benchmark",
+                "artifact-" + index, "1.0." + index, "releases");
+        metaInfo.setExtension("jar");
+        return metaInfo;
+    }
+
+    /**
+     * Returns repository path of the artifact file
+     * @param index     Number of the artifact
+     * @param extension File extension, e.g. jar or jar.sha1
+     */
+    static String path(int index, String extension) {
+        return "/com/griddynamics/cd/benchmark/artifact-" + index + "/1.0." + index
+                + "/artifact-" + index + "-1.0." + index + "." + extension;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
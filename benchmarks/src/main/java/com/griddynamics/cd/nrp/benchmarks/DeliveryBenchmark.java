@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.NexusServer;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.serialization.impl.XmlSerializerImpl;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ArtifactUpdateApiClientImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP path of the replication requests against the in-process {@link StubPeer}.
+ * {@link #sendRequest} is a single synchronous request over the pooled connection,
+ * {@link #offerAndDeliver} measures requests going through the lane queue, batching and delivery.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeliveryBenchmark {
+
+    private static final int REQUESTS_PER_INVOCATION = 100;
+
+    @Param({"journal"})
+    public String queueStoreType;
+
+    @Param({"100"})
+    public int batchSize;
+
+    private File directory;
+    private StubPeer peer;
+    private NexusServer server;
+    private ArtifactUpdateApiClientImpl client;
+    private final ArtifactMetaInfo artifactMetaInfo = Artifacts.metaInfo(7);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JAXBException {
+        directory = Files.createTempDirectory("replication-delivery-benchmark").toFile();
+        peer = new StubPeer(4);
+        // Attributes without setters are set the same way as the plugin reads replication-plugin.xml
+        String xml = "<configurations myUrl=\"" + Artifacts.MASTER_URL + "\""
+                + " queueDumpFileName=\"" + new File(directory, "queue").getAbsolutePath() + "\""
+                + " queueStoreType=\"" + queueStoreType + "\""
+                + " requestsQueueSize=\"" + 10 * REQUESTS_PER_INVOCATION + "\""
+                + " batchSize=\"" + batchSize + "\" batchLingerMillis=\"1\">"
+                + "<servers><server><url>" + peer.getUrl() + "</url><user></user><password></password></server></servers>"
+                + "</configurations>";
+        final ReplicationPluginConfiguration configuration = (ReplicationPluginConfiguration) JAXBContext
+                .newInstance(ReplicationPluginConfiguration.class).createUnmarshaller().unmarshal(new StringReader(xml));
+        server = configuration.getServers().iterator().next();
+        client = new ArtifactUpdateApiClientImpl(new ConfigurationsManager() {
+            @Override
+            public ReplicationPluginConfiguration getConfiguration() {
+                return configuration;
+            }
+        }, new ReplicationMetricsImpl(), new XmlSerializerImpl());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        peer.stop();
+        Artifacts.delete(directory);
+    }
+
+    @Benchmark
+    public Object sendRequest() throws Exception {
+        return client.sendRequest(server, artifactMetaInfo);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS_PER_INVOCATION)
+    public long offerAndDeliver() throws InterruptedException {
+        long expected = peer.getReceivedArtifacts() + REQUESTS_PER_INVOCATION;
+        for (int i = 0; i < REQUESTS_PER_INVOCATION; i++) {
+            client.offerRequest(artifactMetaInfo);
+        }
+        while (peer.getReceivedArtifacts() < expected) {
+            Thread.sleep(0, 100000);
+        }
+        return expected;
+    }
+}
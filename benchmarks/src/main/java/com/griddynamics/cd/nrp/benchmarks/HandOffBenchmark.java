@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.serialization.impl.XmlSerializerImpl;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ArtifactUpdateApiClientImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency the replication request adds to the deploy, reported as percentiles of {@code offerRequest}
+ * called by concurrent deploying threads. {@code handOffBufferSize=0} appends the request to the lane queue store
+ * on the calling thread, other values hand it over to the writer thread through the ring.
+ * Requests are offered as fast as possible, so the tail percentiles include waits for the full ring
+ * once the writer can not keep up with the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class HandOffBenchmark {
+
+    @Param({"0", "8192"})
+    public int handOffBufferSize;
+
+    @Param({"journal", "mappedRing"})
+    public String queueStoreType;
+
+    private File directory;
+    private StubPeer peer;
+    private ArtifactUpdateApiClientImpl client;
+    private final ArtifactMetaInfo artifactMetaInfo = Artifacts.metaInfo(7);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JAXBException {
+        directory = Files.createTempDirectory("replication-hand-off-benchmark").toFile();
+        peer = new StubPeer(4);
+        // Large queue keeps the deliveries from throttling the offers
+        String xml = "<configurations myUrl=\"" + Artifacts.MASTER_URL + "\""
+                + " queueDumpFileName=\"" + new File(directory, "queue").getAbsolutePath() + "\""
+                + " queueStoreType=\"" + queueStoreType + "\""
+                + " handOffBufferSize=\"" + handOffBufferSize + "\""
+                + " requestsQueueSize=\"1000000\" requestsSendingThreadsCount=\"4\">"
+                + "<servers><server><url>" + peer.getUrl() + "</url><user></user><password></password></server></servers>"
+                + "</configurations>";
+        final ReplicationPluginConfiguration configuration = (ReplicationPluginConfiguration) JAXBContext
+                .newInstance(ReplicationPluginConfiguration.class).createUnmarshaller().unmarshal(new StringReader(xml));
+        client = new ArtifactUpdateApiClientImpl(new ConfigurationsManager() {
+            @Override
+            public ReplicationPluginConfiguration getConfiguration() {
+                return configuration;
+            }
+        }, new ReplicationMetricsImpl(), new XmlSerializerImpl());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        peer.stop();
+        Artifacts.delete(directory);
+    }
+
+    @Benchmark
+    public void offerRequest() {
+        client.offerRequest(artifactMetaInfo);
+    }
+}
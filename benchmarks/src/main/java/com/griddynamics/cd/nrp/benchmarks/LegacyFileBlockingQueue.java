@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.uploading.impl.QueueEntry;
+import com.griddynamics.cd.nrp.internal.uploading.impl.QueueStore;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monitor based queue used by the plugin before the lease/ack queue, kept as the baseline of {@link QueueBenchmark}.
+ * {@link LinkedBlockingQueue} is guarded by its own monitor with wait/notify.
+ */
+public class LegacyFileBlockingQueue {
+
+    private final BlockingQueue<QueueEntry> internalBlockingQueue;
+    private final QueueStore queueStore;
+
+    public LegacyFileBlockingQueue(int capacity, QueueStore queueStore) {
+        this.internalBlockingQueue = new LinkedBlockingQueue<>(capacity);
+        this.queueStore = queueStore;
+    }
+
+    public boolean offer(ArtifactMetaInfo e, long timeout, TimeUnit timeUnit) throws InterruptedException, IOException {
+        QueueEntry entry = queueStore.append(e);
+        synchronized (internalBlockingQueue) {
+            boolean retVal = internalBlockingQueue.offer(entry, timeout, timeUnit);
+            if (!retVal) {
+                queueStore.ack(entry.getSequence());
+            }
+            internalBlockingQueue.notify();
+            return retVal;
+        }
+    }
+
+    public QueueEntry poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        synchronized (internalBlockingQueue) {
+            if (internalBlockingQueue.isEmpty()) {
+                internalBlockingQueue.wait(timeUnit.toMillis(timeout));
+            }
+            return internalBlockingQueue.poll();
+        }
+    }
+
+    public void ack(QueueEntry entry) throws IOException {
+        queueStore.ack(entry.getSequence());
+    }
+}
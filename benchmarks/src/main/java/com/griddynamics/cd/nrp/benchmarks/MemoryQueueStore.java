@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.uploading.impl.QueueEntry;
+import com.griddynamics.cd.nrp.internal.uploading.impl.QueueStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue store that persists nothing, isolates the queue from the disk in the benchmarks
+ */
+public class MemoryQueueStore implements QueueStore {
+
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    @Override
+    public List<QueueEntry> recover() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public QueueEntry append(ArtifactMetaInfo artifactMetaInfo) {
+        return new QueueEntry(nextSequence.incrementAndGet(), artifactMetaInfo);
+    }
+
+    @Override
+    public List<QueueEntry> appendAll(List<ArtifactMetaInfo> artifactMetaInfos) {
+        List<QueueEntry> entries = new ArrayList<>(artifactMetaInfos.size());
+        for (ArtifactMetaInfo artifactMetaInfo : artifactMetaInfos) {
+            entries.add(append(artifactMetaInfo));
+        }
+        return entries;
+    }
+
+    @Override
+    public void ack(long sequence) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
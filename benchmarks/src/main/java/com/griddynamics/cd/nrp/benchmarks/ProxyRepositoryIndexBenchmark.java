@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.receiving.impl.ProxyRepositoryIndexImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Routing of the replication request to the proxy repositories with N repositories in the registry.
+ * Every tenth repository proxies the master nexus. {@link #linearScan} is the full scan of the registry
+ * the update resource did before the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyRepositoryIndexBenchmark {
+
+    private static final int MASTERS = 10;
+
+    @Param({"10", "100", "1000"})
+    public int repositories;
+
+    private RepositoryRegistry repositoryRegistry;
+    private List<Repository> registeredRepositories;
+    private List<String[]> remoteUrls;
+    private ProxyRepositoryIndexImpl index;
+    private int nextLookup;
+
+    @Setup
+    public void setUp() {
+        registeredRepositories = new ArrayList<>(repositories);
+        remoteUrls = new ArrayList<>(repositories);
+        for (int i = 0; i < repositories; i++) {
+            String repositoryId = "repository-" + i;
+            String remoteUrl = masterUrl(i % MASTERS) + "/content/repositories/" + repositoryId + "/";
+            MavenProxyRepository repository = mock(MavenProxyRepository.class);
+            when(repository.getId()).thenReturn("proxy-" + i);
+            when(repository.getRemoteUrl()).thenReturn(remoteUrl);
+            registeredRepositories.add(repository);
+            remoteUrls.add(new String[]{masterUrl(i % MASTERS), repositoryId});
+        }
+        repositoryRegistry = mock(RepositoryRegistry.class);
+        when(repositoryRegistry.getRepositories()).thenReturn(registeredRepositories);
+        index = new ProxyRepositoryIndexImpl(repositoryRegistry);
+    }
+
+    @Benchmark
+    public Object indexLookup() {
+        String[] lookup = nextLookup();
+        return index.findProxies(lookup[0], lookup[1]);
+    }
+
+    @Benchmark
+    public Object indexBuildAndLookup() {
+        String[] lookup = nextLookup();
+        return new ProxyRepositoryIndexImpl(repositoryRegistry).findProxies(lookup[0], lookup[1]);
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole blackhole) {
+        String[] lookup = nextLookup();
+        for (Repository repository : repositoryRegistry.getRepositories()) {
+            if (repository instanceof MavenProxyRepository) {
+                MavenProxyRepository proxy = (MavenProxyRepository) repository;
+                String remoteUrl = proxy.getRemoteUrl();
+                if (remoteUrl != null && remoteUrl.startsWith(lookup[0])
+                        && (remoteUrl.endsWith("/" + lookup[1] + "/") || remoteUrl.endsWith("/" + lookup[1]))) {
+                    blackhole.consume(proxy);
+                }
+            }
+        }
+    }
+
+    private String[] nextLookup() {
+        nextLookup = (nextLookup + 1) % repositories;
+        return remoteUrls.get(nextLookup);
+    }
+
+    private static String masterUrl(int master) {
+        return "http://master-" + master + ":8081/nexus";
+    }
+}
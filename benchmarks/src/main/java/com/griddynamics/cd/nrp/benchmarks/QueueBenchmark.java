@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.uploading.impl.FileBlockingQueue;
+import com.griddynamics.cd.nrp.internal.uploading.impl.JournalQueueStore;
+import com.griddynamics.cd.nrp.internal.uploading.impl.MappedRingQueueStore;
+import com.griddynamics.cd.nrp.internal.uploading.impl.QueueEntry;
+import com.griddynamics.cd.nrp.internal.uploading.impl.QueueStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offer/take throughput and latency of the replication queue. Producers and consumers run in one group,
+ * their numbers are changed with -tg, e.g. {@code -tg 32,4} runs 32 producers and 4 consumers.
+ * The legacy implementation is the monitor based queue the plugin used before.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+
+    private static final long TIMEOUT_MILLIS = 10;
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Param({"100", "1000", "10000"})
+    public int queueSize;
+
+    @Param({"leased", "legacy"})
+    public String implementation;
+
+    /**
+     * memory, journal or mappedRing
+     */
+    @Param({"memory"})
+    public String store;
+
+    private final ArtifactMetaInfo artifactMetaInfo = Artifacts.metaInfo(0);
+    private File directory;
+    private QueueStore queueStore;
+    private FileBlockingQueue queue;
+    private LegacyFileBlockingQueue legacyQueue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("replication-queue-benchmark").toFile();
+        switch (store) {
+            case "journal":
+                queueStore = new JournalQueueStore(new File(directory, "queue" + JournalQueueStore.DIRECTORY_SUFFIX));
+                break;
+            case "mappedRing":
+                queueStore = new MappedRingQueueStore(new File(directory, "queue" + MappedRingQueueStore.FILE_SUFFIX),
+                        64 * 1024 * 1024, 2);
+                break;
+            default:
+                queueStore = new MemoryQueueStore();
+        }
+        queueStore.recover();
+        if ("legacy".equals(implementation)) {
+            legacyQueue = new LegacyFileBlockingQueue(queueSize, queueStore);
+        } else {
+            queue = new FileBlockingQueue(queueSize, Collections.<QueueEntry>emptyList(), queueStore, LEASE_MILLIS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        queueStore.close();
+        Artifacts.delete(directory);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(4)
+    public boolean offer() throws Exception {
+        if (legacyQueue != null) {
+            return legacyQueue.offer(artifactMetaInfo, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return queue.offer(artifactMetaInfo, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(4)
+    public QueueEntry takeAndAck() throws Exception {
+        QueueEntry entry;
+        if (legacyQueue != null) {
+            entry = legacyQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            if (entry != null) {
+                legacyQueue.ack(entry);
+            }
+        } else {
+            entry = queue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            if (entry != null) {
+                queue.ack(entry);
+            }
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoCodec;
+import com.thoughtworks.xstream.XStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the replication request: JAXB is used by the sender, XStream by the receiving REST resource,
+ * binary codec by the queue stores
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private final ArtifactMetaInfo artifactMetaInfo = Artifacts.metaInfo(42);
+    private JAXBContext jaxbContext;
+    private XStream xstream;
+    private String xml;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws JAXBException, IOException {
+        artifactMetaInfo.setClassifier("sources");
+        jaxbContext = JAXBContext.newInstance(ArtifactMetaInfo.class);
+        xstream = new XStream();
+        xstream.processAnnotations(ArtifactMetaInfo.class);
+        xml = jaxbMarshal();
+        binary = codecWrite();
+    }
+
+    @Benchmark
+    public String jaxbMarshal() throws JAXBException {
+        StringWriter writer = new StringWriter();
+        jaxbContext.createMarshaller().marshal(artifactMetaInfo, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public Object jaxbUnmarshal() throws JAXBException {
+        return jaxbContext.createUnmarshaller().unmarshal(new StringReader(xml));
+    }
+
+    @Benchmark
+    public String xstreamMarshal() {
+        return xstream.toXML(artifactMetaInfo);
+    }
+
+    @Benchmark
+    public Object xstreamUnmarshal() {
+        return xstream.fromXML(xml);
+    }
+
+    @Benchmark
+    public byte[] codecWrite() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        ArtifactMetaInfoCodec.write(out, artifactMetaInfo);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public ArtifactMetaInfo codecRead() throws IOException {
+        return ArtifactMetaInfoCodec.read(new DataInputStream(new ByteArrayInputStream(binary)));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process peer nexus answering replication requests without fetching artifacts
+ */
+public class StubPeer {
+
+    private static final String CONTEXT = "/nexus/service/local/artifact/maven/";
+    private static final String ARTIFACT_ELEMENT = "<artifact-meta-info>";
+    private static final String SUCCESS = "<rest-status><isSuccess>true</isSuccess><message>Artifact fetch is scheduled.</message></rest-status>";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong receivedArtifacts = new AtomicLong();
+
+    public StubPeer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(CONTEXT + "update", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                receivedArtifacts.addAndGet(countArtifacts(exchange.getRequestBody()));
+                respond(exchange, SUCCESS);
+            }
+        });
+        server.createContext(CONTEXT + "batch-update", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int artifacts = countArtifacts(exchange.getRequestBody());
+                receivedArtifacts.addAndGet(artifacts);
+                StringBuilder response = new StringBuilder("<rest-batch-status>");
+                for (int i = 0; i < artifacts; i++) {
+                    response.append(SUCCESS);
+                }
+                respond(exchange, response.append("</rest-batch-status>").toString());
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * @return Nexus URL of the peer
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/nexus";
+    }
+
+    public long getReceivedArtifacts() {
+        return receivedArtifacts.get();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static int countArtifacts(InputStream body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        String xml = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        int count = 0;
+        for (int index = xml.indexOf(ARTIFACT_ELEMENT); index >= 0; index = xml.indexOf(ARTIFACT_ELEMENT, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void respond(HttpExchange exchange, String xml) throws IOException {
+        byte[] response = ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+}
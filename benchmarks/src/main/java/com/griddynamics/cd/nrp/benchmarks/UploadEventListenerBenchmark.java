@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.uploading.ArtifactUpdateApiClient;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.griddynamics.cd.nrp.internal.uploading.impl.UploadEventListenerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStore;
+import org.sonatype.nexus.proxy.item.RepositoryItemUid;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.MavenHostedRepository;
+import org.sonatype.nexus.proxy.maven.gav.M2GavCalculator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Artifact stored events processed by {@link UploadEventListenerImpl} from several threads. Every operation
+ * delivers the binary and sha1 events of one artifact, so every operation completes an artifact set that is
+ * replicated after the quiet period. Events are prepared in advance, repository mocks only return stubbed values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class UploadEventListenerBenchmark {
+
+    @Param({"4096"})
+    public int artifacts;
+
+    private UploadEventListenerImpl listener;
+    private RepositoryItemEventStore[] fileEvents;
+    private RepositoryItemEventStore[] sha1Events;
+    private final AtomicInteger nextArtifact = new AtomicInteger();
+    private final AtomicLong offeredRequests = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        ConfigurationsManager configurationsManager = mock(ConfigurationsManager.class);
+        when(configurationsManager.getConfiguration()).thenReturn(new ReplicationPluginConfiguration(Artifacts.MASTER_URL));
+        ArtifactUpdateApiClient artifactUpdateApiClient = new ArtifactUpdateApiClient() {
+            @Override
+            public void offerRequest(ArtifactMetaInfo artifactMetaInfo) {
+                offeredRequests.incrementAndGet();
+            }
+
+            @Override
+            public boolean isReplicated(ArtifactMetaInfo artifactMetaInfo) {
+                return true;
+            }
+
+            @Override
+            public ArtifactFilter getPeerFilter(String peerUrl) {
+                return null;
+            }
+        };
+        listener = new UploadEventListenerImpl(configurationsManager, artifactUpdateApiClient,
+                new ReplicationMetricsImpl());
+
+        MavenHostedRepository repository = mock(MavenHostedRepository.class);
+        when(repository.getId()).thenReturn("releases");
+        when(repository.getGavCalculator()).thenReturn(new M2GavCalculator());
+        fileEvents = new RepositoryItemEventStore[artifacts];
+        sha1Events = new RepositoryItemEventStore[artifacts];
+        for (int i = 0; i < artifacts; i++) {
+            fileEvents[i] = new RepositoryItemEventStore(repository, storageItem(Artifacts.path(i, "jar")));
+            sha1Events[i] = new RepositoryItemEventStore(repository, storageItem(Artifacts.path(i, "jar.sha1")));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void fileAndSha1() {
+        int index = (nextArtifact.getAndIncrement() & Integer.MAX_VALUE) % artifacts;
+        listener.onArtifactUploading(fileEvents[index]);
+        listener.onArtifactUploading(sha1Events[index]);
+    }
+
+    private static StorageItem storageItem(String path) {
+        RepositoryItemUid uid = mock(RepositoryItemUid.class);
+        when(uid.getPath()).thenReturn(path);
+        StorageItem item = mock(StorageItem.class);
+        when(item.getRepositoryItemUid()).thenReturn(uid);
+        return item;
+    }
+}
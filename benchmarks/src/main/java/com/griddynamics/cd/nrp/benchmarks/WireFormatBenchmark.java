@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfoBatch;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoBatchCodec;
+import com.thoughtworks.xstream.XStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire formats of the batch replication request: XML is written by JAXB on the sender and parsed by XStream
+ * on the receiver, binary batch is written and parsed by {@link ArtifactMetaInfoBatchCodec}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    private List<ArtifactMetaInfo> metaInfos;
+    private JAXBContext jaxbContext;
+    private XStream xstream;
+    private String xml;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws JAXBException, IOException {
+        metaInfos = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            metaInfos.add(Artifacts.metaInfo(i));
+        }
+        jaxbContext = JAXBContext.newInstance(ArtifactMetaInfoBatch.class);
+        // Receiving resource configures XStream the same way
+        xstream = new XStream();
+        xstream.processAnnotations(ArtifactMetaInfo.class);
+        xstream.processAnnotations(ArtifactMetaInfoBatch.class);
+        xml = xmlWrite();
+        binary = binaryWrite();
+    }
+
+    @Benchmark
+    public String xmlWrite() throws JAXBException {
+        StringWriter writer = new StringWriter();
+        jaxbContext.createMarshaller().marshal(new ArtifactMetaInfoBatch(metaInfos), writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public Object xmlRead() {
+        return xstream.fromXML(xml);
+    }
+
+    @Benchmark
+    public byte[] binaryWrite() throws IOException {
+        return ArtifactMetaInfoBatchCodec.encode(metaInfos);
+    }
+
+    @Benchmark
+    public List<ArtifactMetaInfo> binaryRead() throws IOException {
+        return ArtifactMetaInfoBatchCodec.decode(new ByteArrayInputStream(binary));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.benchmarks;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.serialization.XmlSerializer;
+import com.griddynamics.cd.nrp.internal.serialization.impl.XmlSerializerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JAXB cost per operation: context built for every call as the plugin did before, marshaller created
+ * for every request as the Jersey JAXB provider does, and {@link XmlSerializer} with prebuilt contexts
+ * and pooled marshallers
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlSerializerBenchmark {
+
+    private static final String CONFIGURATION = "<configurations myUrl=\"" + Artifacts.MASTER_URL + "\""
+            + " requestsQueueSize=\"500\" requestsSendingThreadsCount=\"1\">"
+            + "<servers><server><url>http://peer:8083/nexus</url><user>admin</user><password>admin123</password>"
+            + "</server></servers></configurations>";
+
+    private final ArtifactMetaInfo artifactMetaInfo = Artifacts.metaInfo(42);
+    private final byte[] configuration = CONFIGURATION.getBytes(StandardCharsets.UTF_8);
+    private JAXBContext metaInfoContext;
+    private XmlSerializer xmlSerializer;
+
+    @Setup
+    public void setUp() throws JAXBException {
+        metaInfoContext = JAXBContext.newInstance(ArtifactMetaInfo.class);
+        xmlSerializer = new XmlSerializerImpl();
+    }
+
+    @Benchmark
+    public Object configurationNewContext() throws JAXBException {
+        return JAXBContext.newInstance(ReplicationPluginConfiguration.class).createUnmarshaller()
+                .unmarshal(new ByteArrayInputStream(configuration));
+    }
+
+    @Benchmark
+    public Object configurationSerializer() throws JAXBException {
+        return xmlSerializer.unmarshal(new ByteArrayInputStream(configuration), ReplicationPluginConfiguration.class);
+    }
+
+    @Benchmark
+    public byte[] requestNewMarshaller() throws JAXBException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metaInfoContext.createMarshaller().marshal(artifactMetaInfo, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] requestSerializer() throws JAXBException {
+        return xmlSerializer.marshal(artifactMetaInfo);
+    }
+}
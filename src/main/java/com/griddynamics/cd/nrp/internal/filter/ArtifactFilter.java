@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.filter;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.FilterRule;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Peer filter compiled from the {@link ReplicationFilter} rules. Rules of the same kind are merged:
+ * repository ids into a hash set, groupId prefixes into a {@link GroupPrefixTrie}, glob patterns into
+ * a {@link GlobAutomaton}, so artifact is matched in time independent of the number of rules. Attributes of
+ * the same rule have to be met all, rules with several attributes are checked one by one among the rules of
+ * the artifact repository and the rules without repository.
+ */
+public class ArtifactFilter {
+
+    /**
+     * Filter of the peer without configured rules
+     */
+    public static final ArtifactFilter ACCEPT_ALL = new ArtifactFilter(null, null);
+
+    private static final Logger log = LoggerFactory.getLogger(ArtifactFilter.class);
+
+    /**
+     * Null if there are no include rules and all artifacts are included
+     */
+    private final Rules includes;
+    private final Rules excludes;
+
+    private ArtifactFilter(Rules includes, Rules excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * @param filter Configured filter, null if artifacts are not filtered
+     */
+    public static ArtifactFilter compile(ReplicationFilter filter) {
+        if (filter == null || (filter.getIncludes().isEmpty() && filter.getExcludes().isEmpty())) {
+            return ACCEPT_ALL;
+        }
+        return new ArtifactFilter(filter.getIncludes().isEmpty() ? null : new Rules(filter.getIncludes()),
+                filter.getExcludes().isEmpty() ? null : new Rules(filter.getExcludes()));
+    }
+
+    /**
+     * @return true if the artifact has to be replicated to the peer
+     */
+    public boolean accepts(ArtifactMetaInfo metaInfo) {
+        if (includes == null && excludes == null) {
+            return true;
+        }
+        boolean snapshot = metaInfo.isSnapshot();
+        return (includes == null || includes.matches(metaInfo, snapshot))
+                && (excludes == null || !excludes.matches(metaInfo, snapshot));
+    }
+
+    /**
+     * Include or exclude rules of the filter. Artifact matches the rules if it meets all attributes of any rule.
+     * Rules with a single attribute are merged, rules with several attributes are indexed by their repository.
+     */
+    private static class Rules {
+        private final Set<String> repositories = new HashSet<>();
+        private final GroupPrefixTrie groupPrefixes = new GroupPrefixTrie();
+        private final GlobAutomaton patterns;
+        private final boolean hasPatterns;
+        private boolean snapshots;
+        private boolean releases;
+        /**
+         * Rules with several attributes by repository id, rules without repository are kept by the null key
+         */
+        private final Map<String, List<Conjunction>> conjunctions = new HashMap<>();
+
+        private Rules(List<FilterRule> rules) {
+            List<String> globs = new ArrayList<>();
+            for (FilterRule rule : rules) {
+                String versionType = versionType(rule);
+                int attributes = (rule.getRepository() != null ? 1 : 0) + (rule.getGroupId() != null ? 1 : 0)
+                        + (rule.getPattern() != null ? 1 : 0) + (versionType != null ? 1 : 0);
+                if (attributes == 0) {
+                    log.warn("Replication filter rule without attributes is ignored");
+                } else if (attributes > 1) {
+                    List<Conjunction> repositoryRules = conjunctions.get(rule.getRepository());
+                    if (repositoryRules == null) {
+                        repositoryRules = new ArrayList<>();
+                        conjunctions.put(rule.getRepository(), repositoryRules);
+                    }
+                    repositoryRules.add(new Conjunction(rule, versionType));
+                } else if (rule.getRepository() != null) {
+                    repositories.add(rule.getRepository());
+                } else if (rule.getGroupId() != null) {
+                    groupPrefixes.add(rule.getGroupId());
+                } else if (rule.getPattern() != null) {
+                    globs.add(rule.getPattern());
+                } else if (FilterRule.VERSION_SNAPSHOT.equals(versionType)) {
+                    snapshots = true;
+                } else {
+                    releases = true;
+                }
+            }
+            hasPatterns = !globs.isEmpty();
+            patterns = new GlobAutomaton(globs);
+        }
+
+        private boolean matches(ArtifactMetaInfo metaInfo, boolean snapshot) {
+            if ((snapshot ? snapshots : releases)
+                    || repositories.contains(metaInfo.getRepositoryId())
+                    || (!groupPrefixes.isEmpty() && groupPrefixes.matches(metaInfo.getGroupId()))
+                    || (hasPatterns && patterns.matches(coordinates(metaInfo)))) {
+                return true;
+            }
+            return !conjunctions.isEmpty()
+                    && (matchesAny(conjunctions.get(metaInfo.getRepositoryId()), metaInfo, snapshot)
+                    || matchesAny(conjunctions.get(null), metaInfo, snapshot));
+        }
+
+        private static boolean matchesAny(List<Conjunction> rules, ArtifactMetaInfo metaInfo, boolean snapshot) {
+            if (rules != null) {
+                for (Conjunction rule : rules) {
+                    if (rule.matches(metaInfo, snapshot)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return Version type of the rule or null if it is not set or unknown
+         */
+        private static String versionType(FilterRule rule) {
+            String versionType = rule.getVersionType();
+            if (versionType != null && !FilterRule.VERSION_SNAPSHOT.equals(versionType)
+                    && !FilterRule.VERSION_RELEASE.equals(versionType)) {
+                log.warn("Unknown versionType of the replication filter rule is ignored: " + versionType);
+                return null;
+            }
+            return versionType;
+        }
+    }
+
+    /**
+     * Rule with several attributes, artifact has to meet all of them. Repository is matched by the index
+     * of {@link Rules}, so only the other attributes are checked here.
+     */
+    private static class Conjunction {
+        /**
+         * Null if the attribute is not set
+         */
+        private final String versionType;
+        private final GroupPrefixTrie groupPrefix;
+        private final GlobAutomaton pattern;
+
+        private Conjunction(FilterRule rule, String versionType) {
+            this.versionType = versionType;
+            if (rule.getGroupId() != null) {
+                groupPrefix = new GroupPrefixTrie();
+                groupPrefix.add(rule.getGroupId());
+            } else {
+                groupPrefix = null;
+            }
+            pattern = rule.getPattern() != null
+                    ? new GlobAutomaton(Collections.singletonList(rule.getPattern())) : null;
+        }
+
+        private boolean matches(ArtifactMetaInfo metaInfo, boolean snapshot) {
+            return (versionType == null
+                    || versionType.equals(snapshot ? FilterRule.VERSION_SNAPSHOT : FilterRule.VERSION_RELEASE))
+                    && (groupPrefix == null || groupPrefix.matches(metaInfo.getGroupId()))
+                    && (pattern == null || pattern.matches(coordinates(metaInfo)));
+        }
+    }
+
+    private static String coordinates(ArtifactMetaInfo metaInfo) {
+        return metaInfo.getGroupId() + ':' + metaInfo.getArtifactId() + ':' + metaInfo.getVersion();
+    }
+}
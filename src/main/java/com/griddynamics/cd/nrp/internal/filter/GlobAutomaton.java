@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Glob patterns compiled into the single automaton: '*' matches any sequence of characters, '?' matches
+ * a single character. Patterns are joined into one NFA which is determinized lazily: DFA states are built
+ * on the first transition and cached, so the subject is matched in time proportional to its length
+ * regardless of the number of patterns. Automaton is safe to be used by concurrent threads.
+ */
+class GlobAutomaton {
+
+    /**
+     * Transitions from the states created above this limit are computed on every match and not cached
+     */
+    private static final int MAX_CACHED_STATES = 4096;
+
+    /**
+     * Pattern character at every NFA position. Position after the last character of the pattern is accepting.
+     */
+    private final char[] symbols;
+    private final boolean[] accepting;
+    private final ConcurrentMap<State, State> states = new ConcurrentHashMap<>();
+    private final State initial;
+
+    GlobAutomaton(List<String> patterns) {
+        int size = 0;
+        for (String pattern : patterns) {
+            size += pattern.length() + 1;
+        }
+        symbols = new char[size];
+        accepting = new boolean[size];
+        BitSet starts = new BitSet(size);
+        int position = 0;
+        for (String pattern : patterns) {
+            starts.set(position);
+            pattern.getChars(0, pattern.length(), symbols, position);
+            position += pattern.length();
+            accepting[position++] = true;
+        }
+        initial = intern(closure(starts));
+    }
+
+    boolean matches(CharSequence subject) {
+        State state = initial;
+        for (int i = 0; i < subject.length() && state.positions.length > 0; i++) {
+            state = next(state, subject.charAt(i));
+        }
+        return state.accepting;
+    }
+
+    private State next(State state, char c) {
+        State next = state.transitions.get(c);
+        if (next == null) {
+            BitSet positions = new BitSet(symbols.length);
+            for (int position : state.positions) {
+                if (accepting[position]) {
+                    continue;
+                }
+                char symbol = symbols[position];
+                if (symbol == '*') {
+                    positions.set(position);
+                } else if (symbol == '?' || symbol == c) {
+                    positions.set(position + 1);
+                }
+            }
+            next = intern(closure(positions));
+            if (states.size() < MAX_CACHED_STATES) {
+                state.transitions.put(c, next);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Adds positions following '*', since it matches empty sequence
+     */
+    private BitSet closure(BitSet positions) {
+        for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+            if (!accepting[position] && symbols[position] == '*') {
+                positions.set(position + 1);
+            }
+        }
+        return positions;
+    }
+
+    private State intern(BitSet positions) {
+        int[] array = new int[positions.cardinality()];
+        boolean isAccepting = false;
+        int i = 0;
+        for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+            array[i++] = position;
+            isAccepting |= accepting[position];
+        }
+        State state = new State(array, isAccepting);
+        if (states.size() >= MAX_CACHED_STATES) {
+            State existing = states.get(state);
+            return existing == null ? state : existing;
+        }
+        State existing = states.putIfAbsent(state, state);
+        return existing == null ? state : existing;
+    }
+
+    /**
+     * DFA state: set of the NFA positions
+     */
+    private static class State {
+        private final int[] positions;
+        private final boolean accepting;
+        private final ConcurrentMap<Character, State> transitions = new ConcurrentHashMap<>();
+
+        private State(int[] positions, boolean accepting) {
+            this.positions = positions;
+            this.accepting = accepting;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof State && Arrays.equals(positions, ((State) o).positions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(positions);
+        }
+    }
+}
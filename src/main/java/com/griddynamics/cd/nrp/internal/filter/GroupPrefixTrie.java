@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * groupId prefixes stored as a trie of the groupId segments. Lookup walks the segments of the groupId once,
+ * so its time does not depend on the number of prefixes.
+ */
+class GroupPrefixTrie {
+
+    private final Node root = new Node();
+    private boolean empty = true;
+
+    /**
+     * @param prefix groupId prefix, matched by whole segments
+     */
+    void add(String prefix) {
+        Node node = root;
+        for (String segment : prefix.split("\\.")) {
+            Node child = node.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        node.terminal = true;
+        empty = false;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return true if any added prefix is the groupId or its leading segments
+     */
+    boolean matches(String groupId) {
+        Node node = root;
+        int start = 0;
+        while (start <= groupId.length()) {
+            int end = groupId.indexOf('.', start);
+            if (end < 0) {
+                end = groupId.length();
+            }
+            node = node.children.get(groupId.substring(start, end));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean terminal;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivery metrics of the single peer. Counters are updated by the lane sending threads,
+ * queue gauges are read from the lane queue when metrics are requested.
+ */
+public class PeerMetrics implements PeerMetricsMXBean {
+
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+
+    @Getter
+    private final String url;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejectedByPeer = new AtomicLong();
+    private final AtomicLong rejectedByQueue = new AtomicLong();
+    private final AtomicLong filtered = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    /**
+     * Duration of the HTTP requests to the peer
+     */
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    /**
+     * Time from the replication request was enqueued till it was acknowledged by the peer
+     */
+    private final LatencyHistogram replicationLag = new LatencyHistogram();
+    @Setter
+    private volatile QueueGauge queueGauge;
+
+    public PeerMetrics(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Registers successful HTTP request to the peer
+     * @param requests Number of replication requests sent in the HTTP request
+     * @param rejected Number of replication requests the peer responded to with failure
+     */
+    public void sent(int requests, int rejected, long durationNanos) {
+        sendLatency.record(durationNanos, TimeUnit.NANOSECONDS);
+        delivered.addAndGet(requests - rejected);
+        rejectedByPeer.addAndGet(rejected);
+    }
+
+    /**
+     * Registers HTTP request that failed because the peer is unavailable
+     * @param requests Number of replication requests that will be sent again
+     */
+    public void failed(int requests, long durationNanos) {
+        sendLatency.record(durationNanos, TimeUnit.NANOSECONDS);
+        failed.addAndGet(requests);
+    }
+
+    /**
+     * Registers replication request that did not fit into the full lane queue
+     */
+    public void rejectedByQueue() {
+        rejectedByQueue.incrementAndGet();
+    }
+
+    /**
+     * Registers replication request that was not enqueued because the peer filter does not accept the artifact
+     */
+    public void filtered() {
+        filtered.incrementAndGet();
+    }
+
+    /**
+     * Registers replication request acknowledged by the peer
+     * @param enqueuedMillis Time the request was enqueued
+     */
+    public void acknowledged(long enqueuedMillis) {
+        replicationLag.record(System.currentTimeMillis() - enqueuedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void bytesSent(long bytes) {
+        bytesSent.addAndGet(bytes);
+    }
+
+    public void bytesReceived(long bytes) {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        QueueGauge gauge = queueGauge;
+        return gauge == null ? 0 : gauge.getDepth();
+    }
+
+    @Override
+    public long getOldestQueueEntryAgeMillis() {
+        QueueGauge gauge = queueGauge;
+        return gauge == null ? 0 : gauge.getOldestEntryAgeMillis();
+    }
+
+    @Override
+    public long getSuperseded() {
+        QueueGauge gauge = queueGauge;
+        return gauge == null ? 0 : gauge.getSuperseded();
+    }
+
+    @Override
+    public long getSpillDepth() {
+        QueueGauge gauge = queueGauge;
+        return gauge == null ? 0 : gauge.getSpillDepth();
+    }
+
+    @Override
+    public long getSpilled() {
+        QueueGauge gauge = queueGauge;
+        return gauge == null ? 0 : gauge.getSpilled();
+    }
+
+    @Override
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public long getRejectedByPeer() {
+        return rejectedByPeer.get();
+    }
+
+    @Override
+    public long getRejectedByQueue() {
+        return rejectedByQueue.get();
+    }
+
+    @Override
+    public long getFiltered() {
+        return filtered.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public double getSendLatencyP50Millis() {
+        return sendLatency.getPercentileMillis(P50);
+    }
+
+    @Override
+    public double getSendLatencyP99Millis() {
+        return sendLatency.getPercentileMillis(P99);
+    }
+
+    @Override
+    public double getSendLatencyMaxMillis() {
+        return sendLatency.getMaxMillis();
+    }
+
+    @Override
+    public double getReplicationLagP50Millis() {
+        return replicationLag.getPercentileMillis(P50);
+    }
+
+    @Override
+    public double getReplicationLagP99Millis() {
+        return replicationLag.getPercentileMillis(P99);
+    }
+
+    @Override
+    public double getReplicationLagMaxMillis() {
+        return replicationLag.getMaxMillis();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.metrics;
+
+/**
+ * JMX view of the delivery metrics of the single peer
+ */
+public interface PeerMetricsMXBean {
+    String getUrl();
+
+    int getQueueDepth();
+
+    long getOldestQueueEntryAgeMillis();
+
+    long getDelivered();
+
+    long getFailed();
+
+    long getRejectedByPeer();
+
+    long getRejectedByQueue();
+
+    long getFiltered();
+
+    long getSuperseded();
+
+    long getSpillDepth();
+
+    long getSpilled();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    double getSendLatencyP50Millis();
+
+    double getSendLatencyP99Millis();
+
+    double getSendLatencyMaxMillis();
+
+    double getReplicationLagP50Millis();
+
+    double getReplicationLagP99Millis();
+
+    double getReplicationLagMaxMillis();
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.metrics;
+
+/**
+ * Source of the replication queue gauges
+ */
+public interface QueueGauge {
+    /**
+     * @return Number of requests that are not delivered yet
+     */
+    int getDepth();
+
+    /**
+     * @return Age of the oldest request that is not delivered yet, 0 if the queue is empty
+     */
+    long getOldestEntryAgeMillis();
+
+    /**
+     * @return Number of SNAPSHOT requests dropped because the request about the newer deploy was enqueued
+     */
+    long getSuperseded();
+
+    /**
+     * @return Number of requests waiting in the disk spill because the queue was full
+     */
+    long getSpillDepth();
+
+    /**
+     * @return Number of requests spilled to disk because the queue was full
+     */
+    long getSpilled();
+}
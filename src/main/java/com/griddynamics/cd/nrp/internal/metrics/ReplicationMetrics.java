@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.metrics;
+
+import com.griddynamics.cd.nrp.internal.model.api.ReplicationMetricsReport;
+
+/**
+ * Collects replication pipeline metrics. Recording methods are called on the hot path and only update
+ * atomic counters, metrics are exposed over JMX and REST.
+ */
+public interface ReplicationMetrics {
+
+    /**
+     * Registers artifact stored event handled by the plugin
+     */
+    void eventReceived();
+
+    /**
+     * Registers replication request offered to the peer lanes
+     */
+    void artifactEnqueued();
+
+    /**
+     * Registers SNAPSHOT notification that replaced the notification waiting in the coalescing window
+     */
+    void snapshotCoalesced();
+
+    /**
+     * Registers replication request which producer waited for a free slot of the full hand-off ring
+     */
+    void handOffStalled();
+
+    /**
+     * Registers partial artifact removed after partialArtifactTimeoutSeconds
+     */
+    void partialArtifactExpired();
+
+    /**
+     * Registers partial artifact removed because trackedArtifactsMaxCount was reached
+     */
+    void partialArtifactEvicted();
+
+    /**
+     * Registers partial artifact replicated without checksum
+     */
+    void partialArtifactReplicated();
+
+    /**
+     * Registers finished artifact fetch on the receiver
+     * @param succeeded     true if the artifact was retrieved
+     * @param durationNanos Time the fetch was running
+     */
+    void fetchCompleted(boolean succeeded, long durationNanos);
+
+    /**
+     * Registers replication request joined to the artifact fetch that is already in flight
+     */
+    void fetchCoalesced();
+
+    /**
+     * Registers file which download was skipped because the proxy already had the same content
+     */
+    void fileUnchanged();
+
+    /**
+     * Registers file which content was copied from another local repository instead of the download
+     */
+    void fileCopiedLocally();
+
+    /**
+     * Registers proxy repository compared with its master repository by the reconciliation job
+     */
+    void reconciliationCompleted();
+
+    /**
+     * Registers content tree node requested from the master and compared with the local one
+     */
+    void reconciliationNodeCompared();
+
+    /**
+     * Registers file retrieved again because the proxy did not have it or its content differed from the master
+     */
+    void fileRepaired();
+
+    /**
+     * Returns metrics of the peer, registers them if the peer is not known yet
+     * @param url Peer URL
+     */
+    PeerMetrics getPeerMetrics(String url);
+
+    /**
+     * Forgets metrics of the removed peer and unregisters their MBean
+     * @param url Peer URL
+     */
+    void removePeerMetrics(String url);
+
+    /**
+     * @return Snapshot of all metrics
+     */
+    ReplicationMetricsReport getReport();
+}
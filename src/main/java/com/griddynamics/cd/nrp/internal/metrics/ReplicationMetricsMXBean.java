@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.metrics;
+
+/**
+ * JMX view of the replication metrics that are not related to a single peer
+ */
+public interface ReplicationMetricsMXBean {
+    long getEventsReceived();
+
+    long getArtifactsEnqueued();
+
+    long getSnapshotsCoalesced();
+
+    long getHandOffStalls();
+
+    long getPartialArtifactsExpired();
+
+    long getPartialArtifactsEvicted();
+
+    long getPartialArtifactsReplicated();
+
+    long getFetchesSucceeded();
+
+    long getFetchesFailed();
+
+    long getFetchesCoalesced();
+
+    long getFilesUnchanged();
+
+    long getFilesCopiedLocally();
+
+    long getReconciliations();
+
+    long getReconciliationNodesCompared();
+
+    long getFilesRepaired();
+
+    double getFetchTimeP50Millis();
+
+    double getFetchTimeP99Millis();
+
+    double getFetchTimeMaxMillis();
+}
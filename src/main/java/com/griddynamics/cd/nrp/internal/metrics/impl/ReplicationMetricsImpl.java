@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.metrics.impl;
+
+import com.griddynamics.cd.nrp.internal.metrics.LatencyHistogram;
+import com.griddynamics.cd.nrp.internal.metrics.PeerMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetricsMXBean;
+import com.griddynamics.cd.nrp.internal.model.api.PeerMetricsReport;
+import com.griddynamics.cd.nrp.internal.model.api.ReplicationMetricsReport;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps replication metrics in memory and registers them in the platform MBean server
+ */
+@Singleton
+@Named(ReplicationMetricsImpl.ID)
+public class ReplicationMetricsImpl extends ComponentSupport implements ReplicationMetrics, ReplicationMetricsMXBean {
+
+    public static final String ID = "replicationMetrics";
+
+    /**
+     * JMX domain of the plugin MBeans
+     */
+    public static final String JMX_DOMAIN = "com.griddynamics.cd.nrp";
+
+    private static final double P50 = 0.5;
+    private static final double P99 = 0.99;
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong artifactsEnqueued = new AtomicLong();
+    private final AtomicLong snapshotsCoalesced = new AtomicLong();
+    private final AtomicLong handOffStalls = new AtomicLong();
+    private final AtomicLong partialArtifactsExpired = new AtomicLong();
+    private final AtomicLong partialArtifactsEvicted = new AtomicLong();
+    private final AtomicLong partialArtifactsReplicated = new AtomicLong();
+    private final AtomicLong fetchesFailed = new AtomicLong();
+    private final AtomicLong fetchesCoalesced = new AtomicLong();
+    private final AtomicLong filesUnchanged = new AtomicLong();
+    private final AtomicLong filesCopiedLocally = new AtomicLong();
+    private final AtomicLong reconciliations = new AtomicLong();
+    private final AtomicLong reconciliationNodesCompared = new AtomicLong();
+    private final AtomicLong filesRepaired = new AtomicLong();
+    private final LatencyHistogram fetchTime = new LatencyHistogram();
+    private final ConcurrentMap<String, PeerMetrics> peers = new ConcurrentHashMap<>();
+
+    public ReplicationMetricsImpl() {
+        registerMBean(JMX_DOMAIN + ":type=ReplicationMetrics", this);
+    }
+
+    @Override
+    public void eventReceived() {
+        eventsReceived.incrementAndGet();
+    }
+
+    @Override
+    public void artifactEnqueued() {
+        artifactsEnqueued.incrementAndGet();
+    }
+
+    @Override
+    public void snapshotCoalesced() {
+        snapshotsCoalesced.incrementAndGet();
+    }
+
+    @Override
+    public void handOffStalled() {
+        handOffStalls.incrementAndGet();
+    }
+
+    @Override
+    public void partialArtifactExpired() {
+        partialArtifactsExpired.incrementAndGet();
+    }
+
+    @Override
+    public void partialArtifactEvicted() {
+        partialArtifactsEvicted.incrementAndGet();
+    }
+
+    @Override
+    public void partialArtifactReplicated() {
+        partialArtifactsReplicated.incrementAndGet();
+    }
+
+    @Override
+    public void fetchCompleted(boolean succeeded, long durationNanos) {
+        fetchTime.record(durationNanos, TimeUnit.NANOSECONDS);
+        if (!succeeded) {
+            fetchesFailed.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void fetchCoalesced() {
+        fetchesCoalesced.incrementAndGet();
+    }
+
+    @Override
+    public void fileUnchanged() {
+        filesUnchanged.incrementAndGet();
+    }
+
+    @Override
+    public void fileCopiedLocally() {
+        filesCopiedLocally.incrementAndGet();
+    }
+
+    @Override
+    public void reconciliationCompleted() {
+        reconciliations.incrementAndGet();
+    }
+
+    @Override
+    public void reconciliationNodeCompared() {
+        reconciliationNodesCompared.incrementAndGet();
+    }
+
+    @Override
+    public void fileRepaired() {
+        filesRepaired.incrementAndGet();
+    }
+
+    @Override
+    public PeerMetrics getPeerMetrics(String url) {
+        PeerMetrics peerMetrics = peers.get(url);
+        if (peerMetrics == null) {
+            PeerMetrics newPeerMetrics = new PeerMetrics(url);
+            peerMetrics = peers.putIfAbsent(url, newPeerMetrics);
+            if (peerMetrics == null) {
+                peerMetrics = newPeerMetrics;
+                registerMBean(peerMBeanName(url), peerMetrics);
+            }
+        }
+        return peerMetrics;
+    }
+
+    @Override
+    public void removePeerMetrics(String url) {
+        if (peers.remove(url) != null) {
+            unregisterMBean(peerMBeanName(url));
+        }
+    }
+
+    @Override
+    public ReplicationMetricsReport getReport() {
+        ReplicationMetricsReport report = new ReplicationMetricsReport();
+        report.setEventsReceived(getEventsReceived());
+        report.setArtifactsEnqueued(getArtifactsEnqueued());
+        report.setSnapshotsCoalesced(getSnapshotsCoalesced());
+        report.setHandOffStalls(getHandOffStalls());
+        report.setPartialArtifactsExpired(getPartialArtifactsExpired());
+        report.setPartialArtifactsEvicted(getPartialArtifactsEvicted());
+        report.setPartialArtifactsReplicated(getPartialArtifactsReplicated());
+        report.setFetchesSucceeded(getFetchesSucceeded());
+        report.setFetchesFailed(getFetchesFailed());
+        report.setFetchesCoalesced(getFetchesCoalesced());
+        report.setFilesUnchanged(getFilesUnchanged());
+        report.setFilesCopiedLocally(getFilesCopiedLocally());
+        report.setReconciliations(getReconciliations());
+        report.setReconciliationNodesCompared(getReconciliationNodesCompared());
+        report.setFilesRepaired(getFilesRepaired());
+        report.setFetchTimeP50Millis(getFetchTimeP50Millis());
+        report.setFetchTimeP99Millis(getFetchTimeP99Millis());
+        report.setFetchTimeMaxMillis(getFetchTimeMaxMillis());
+        for (PeerMetrics peerMetrics : peers.values()) {
+            PeerMetricsReport peerReport = new PeerMetricsReport(peerMetrics.getUrl());
+            peerReport.setQueueDepth(peerMetrics.getQueueDepth());
+            peerReport.setOldestQueueEntryAgeMillis(peerMetrics.getOldestQueueEntryAgeMillis());
+            peerReport.setDelivered(peerMetrics.getDelivered());
+            peerReport.setFailed(peerMetrics.getFailed());
+            peerReport.setRejectedByPeer(peerMetrics.getRejectedByPeer());
+            peerReport.setRejectedByQueue(peerMetrics.getRejectedByQueue());
+            peerReport.setFiltered(peerMetrics.getFiltered());
+            peerReport.setSuperseded(peerMetrics.getSuperseded());
+            peerReport.setSpillDepth(peerMetrics.getSpillDepth());
+            peerReport.setSpilled(peerMetrics.getSpilled());
+            peerReport.setBytesSent(peerMetrics.getBytesSent());
+            peerReport.setBytesReceived(peerMetrics.getBytesReceived());
+            peerReport.setSendLatencyP50Millis(peerMetrics.getSendLatencyP50Millis());
+            peerReport.setSendLatencyP99Millis(peerMetrics.getSendLatencyP99Millis());
+            peerReport.setSendLatencyMaxMillis(peerMetrics.getSendLatencyMaxMillis());
+            peerReport.setReplicationLagP50Millis(peerMetrics.getReplicationLagP50Millis());
+            peerReport.setReplicationLagP99Millis(peerMetrics.getReplicationLagP99Millis());
+            peerReport.setReplicationLagMaxMillis(peerMetrics.getReplicationLagMaxMillis());
+            report.addPeer(peerReport);
+        }
+        return report;
+    }
+
+    @Override
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    @Override
+    public long getArtifactsEnqueued() {
+        return artifactsEnqueued.get();
+    }
+
+    @Override
+    public long getSnapshotsCoalesced() {
+        return snapshotsCoalesced.get();
+    }
+
+    @Override
+    public long getHandOffStalls() {
+        return handOffStalls.get();
+    }
+
+    @Override
+    public long getPartialArtifactsExpired() {
+        return partialArtifactsExpired.get();
+    }
+
+    @Override
+    public long getPartialArtifactsEvicted() {
+        return partialArtifactsEvicted.get();
+    }
+
+    @Override
+    public long getPartialArtifactsReplicated() {
+        return partialArtifactsReplicated.get();
+    }
+
+    @Override
+    public long getFetchesSucceeded() {
+        return fetchTime.getCount() - fetchesFailed.get();
+    }
+
+    @Override
+    public long getFetchesFailed() {
+        return fetchesFailed.get();
+    }
+
+    @Override
+    public long getFetchesCoalesced() {
+        return fetchesCoalesced.get();
+    }
+
+    @Override
+    public long getFilesUnchanged() {
+        return filesUnchanged.get();
+    }
+
+    @Override
+    public long getFilesCopiedLocally() {
+        return filesCopiedLocally.get();
+    }
+
+    @Override
+    public long getReconciliations() {
+        return reconciliations.get();
+    }
+
+    @Override
+    public long getReconciliationNodesCompared() {
+        return reconciliationNodesCompared.get();
+    }
+
+    @Override
+    public long getFilesRepaired() {
+        return filesRepaired.get();
+    }
+
+    @Override
+    public double getFetchTimeP50Millis() {
+        return fetchTime.getPercentileMillis(P50);
+    }
+
+    @Override
+    public double getFetchTimeP99Millis() {
+        return fetchTime.getPercentileMillis(P99);
+    }
+
+    @Override
+    public double getFetchTimeMaxMillis() {
+        return fetchTime.getMaxMillis();
+    }
+
+    private static String peerMBeanName(String url) {
+        return JMX_DOMAIN + ":type=PeerMetrics,peer=" + ObjectName.quote(url);
+    }
+
+    private void unregisterMBean(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Can not unregister replication metrics MBean " + name, e);
+        }
+    }
+
+    /**
+     * Registers MBean, replaces the MBean left by the previous plugin instance
+     */
+    private void registerMBean(String name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (JMException e) {
+            log.warn("Can not register replication metrics MBean " + name, e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.model.api;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import java.io.Serializable;
+
+/**
+ * DTO Class encapsulates file of the deployed artifact set, e.g. POM, sources or javadoc of the artifact.
+ * Sha1 checksum and size of the content are null if the master nexus did not send them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+@XStreamAlias(value = ArtifactFile.NAME)
+public class ArtifactFile implements Serializable {
+    public static final String NAME = "file";
+
+    private String classifier;
+    private String extension;
+    private String sha1;
+    private Long size;
+
+    public ArtifactFile(String classifier, String extension) {
+        this(classifier, extension, null, null);
+    }
+}
@@ -20,8 +20,12 @@ import lombok.*;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * DTO Class encapsulates data sent to replication nexus servers
@@ -34,6 +38,12 @@ import java.io.Serializable;
 public class ArtifactMetaInfo implements Serializable {
     public static final String NAME = "artifact-meta-info";
 
+    private static final String SNAPSHOT_VERSION = "SNAPSHOT";
+    /**
+     * Unique version of the deployed SNAPSHOT, e.g. 1.0-20150519.140619-2
+     */
+    private static final Pattern TIMESTAMPED_SNAPSHOT = Pattern.compile("-\\d{8}\\.\\d{6}-\\d+$");
+
     @Getter
     @NonNull
     private final String groupId;
@@ -58,6 +68,32 @@ public class ArtifactMetaInfo implements Serializable {
     @Getter
     @NonNull
     private final String nexusUrl;
+    /**
+     * Other files deployed together with the artifact, e.g. POM, sources and javadoc. Null if there are none,
+     * so the request of the single file stays readable by the peers running previous plugin versions.
+     */
+    @Getter
+    @Setter
+    @XmlElementWrapper(name = "files")
+    @XmlElement(name = ArtifactFile.NAME)
+    private List<ArtifactFile> files;
+    /**
+     * True if the deployment updated maven-metadata.xml of the artifact, null otherwise
+     */
+    private Boolean metadataUpdated;
+    /**
+     * Sha1 checksum of the main file content, null if unknown. Peer skips the download if it already has the content.
+     * Checksums and sizes are not sent to the peers running previous plugin versions, which reject them.
+     */
+    @Getter
+    @Setter
+    private String sha1;
+    /**
+     * Size of the main file content in bytes, null if unknown
+     */
+    @Getter
+    @Setter
+    private Long size;
 
     public ArtifactMetaInfo() {
         this(null, null, null, null, null);
@@ -74,4 +110,23 @@ public class ArtifactMetaInfo implements Serializable {
     public boolean isValid() {
         return nexusUrl != null && groupId != null && artifactId != null && version != null && repositoryId != null;
     }
+
+    public boolean isMetadataUpdated() {
+        return Boolean.TRUE.equals(metadataUpdated);
+    }
+
+    public void setMetadataUpdated(boolean metadataUpdated) {
+        this.metadataUpdated = metadataUpdated ? Boolean.TRUE : null;
+    }
+
+    public boolean isSnapshot() {
+        return version != null && (version.endsWith(SNAPSHOT_VERSION) || TIMESTAMPED_SNAPSHOT.matcher(version).find());
+    }
+
+    /**
+     * @return Version with the timestamp of the unique SNAPSHOT replaced by SNAPSHOT, e.g. 1.0-SNAPSHOT
+     */
+    public String getBaseVersion() {
+        return version == null ? null : TIMESTAMPED_SNAPSHOT.matcher(version).replaceFirst("-" + SNAPSHOT_VERSION);
+    }
 }
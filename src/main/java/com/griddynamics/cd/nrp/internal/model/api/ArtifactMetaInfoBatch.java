@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.model.api;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamImplicit;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO Class encapsulates several artifacts sent to replication nexus servers in one request
+ */
+@Data
+@NoArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = ArtifactMetaInfoBatch.NAME)
+@XStreamAlias(value = ArtifactMetaInfoBatch.NAME)
+public class ArtifactMetaInfoBatch implements Serializable {
+    public static final String NAME = "artifact-meta-info-batch";
+
+    @XmlElement(name = ArtifactMetaInfo.NAME)
+    @XStreamImplicit(itemFieldName = ArtifactMetaInfo.NAME)
+    private List<ArtifactMetaInfo> artifactMetaInfos = new ArrayList<>();
+
+    public ArtifactMetaInfoBatch(List<ArtifactMetaInfo> artifactMetaInfos) {
+        this.artifactMetaInfos = artifactMetaInfos;
+    }
+}
@@ -20,8 +20,12 @@ import lombok.EqualsAndHashCode;
 
 import java.io.Serializable;
 
+/**
+ * Files received for the deployed artifact. Not thread safe, the status is updated under the lock of the artifact set
+ * it belongs to.
+ */
 @Data
-@EqualsAndHashCode(exclude = {"isSha1Received", "isFileReceived"})
+@EqualsAndHashCode(exclude = {"isSha1Received", "isFileReceived", "sha1", "size"})
 public class ArtifactStatus implements Serializable {
     private final String groupId;
     private final String artifactId;
@@ -32,6 +36,11 @@ public class ArtifactStatus implements Serializable {
     private final String nexusUrl;
     private boolean isSha1Received;
     private boolean isFileReceived;
+    /**
+     * Sha1 checksum and size of the received binary, null if the stored item did not have them
+     */
+    private String sha1;
+    private Long size;
 
     public ArtifactStatus(ArtifactMetaInfo artifactMetaInfo) {
         this.groupId = artifactMetaInfo.getGroupId();
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.model.api;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamImplicit;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO Class encapsulates node of the repository content hash tree with the hashes of its children.
+ * Inner node is identified by the hex prefix of its buckets and is empty for the root. Children of the bucket
+ * are artifact directories, children of the artifact directory are its files.
+ */
+@Data
+@NoArgsConstructor
+@RequiredArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = ContentTreeNode.NAME)
+@XStreamAlias(value = ContentTreeNode.NAME)
+public class ContentTreeNode implements Serializable {
+    public static final String NAME = "content-tree-node";
+
+    @NonNull
+    private String repositoryId;
+    @NonNull
+    private String node;
+
+    @XmlElement(name = ContentTreeEntry.NAME)
+    @XStreamImplicit(itemFieldName = ContentTreeEntry.NAME)
+    private List<ContentTreeEntry> entries = new ArrayList<>();
+
+    public void addEntry(ContentTreeEntry entry) {
+        entries.add(entry);
+    }
+}
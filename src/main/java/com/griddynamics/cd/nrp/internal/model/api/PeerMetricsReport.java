@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.model.api;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * DTO Class encapsulates delivery metrics of the single peer, see {@link ReplicationMetricsReport}
+ */
+@Data
+@NoArgsConstructor
+@RequiredArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = PeerMetricsReport.NAME)
+@XStreamAlias(value = PeerMetricsReport.NAME)
+public class PeerMetricsReport implements Serializable {
+    public static final String NAME = "peer-metrics";
+
+    @NonNull
+    private String url;
+    private int queueDepth;
+    private long oldestQueueEntryAgeMillis;
+    private long delivered;
+    private long failed;
+    private long rejectedByPeer;
+    private long rejectedByQueue;
+    private long filtered;
+    private long superseded;
+    private long spillDepth;
+    private long spilled;
+    private long bytesSent;
+    private long bytesReceived;
+    private double sendLatencyP50Millis;
+    private double sendLatencyP99Millis;
+    private double sendLatencyMaxMillis;
+    private double replicationLagP50Millis;
+    private double replicationLagP99Millis;
+    private double replicationLagMaxMillis;
+}
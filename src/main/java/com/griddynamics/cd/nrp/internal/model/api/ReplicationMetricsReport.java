@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.model.api;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamImplicit;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO Class encapsulates snapshot of the replication metrics of the Nexus instance
+ */
+@Data
+@NoArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = ReplicationMetricsReport.NAME)
+@XStreamAlias(value = ReplicationMetricsReport.NAME)
+public class ReplicationMetricsReport implements Serializable {
+    public static final String NAME = "replication-metrics";
+
+    private long eventsReceived;
+    private long artifactsEnqueued;
+    private long snapshotsCoalesced;
+    private long handOffStalls;
+    private long partialArtifactsExpired;
+    private long partialArtifactsEvicted;
+    private long partialArtifactsReplicated;
+    private long fetchesSucceeded;
+    private long fetchesFailed;
+    private long fetchesCoalesced;
+    private long filesUnchanged;
+    private long filesCopiedLocally;
+    private long reconciliations;
+    private long reconciliationNodesCompared;
+    private long filesRepaired;
+    private double fetchTimeP50Millis;
+    private double fetchTimeP99Millis;
+    private double fetchTimeMaxMillis;
+
+    @XmlElement(name = PeerMetricsReport.NAME)
+    @XStreamImplicit(itemFieldName = PeerMetricsReport.NAME)
+    private List<PeerMetricsReport> peers = new ArrayList<>();
+
+    public void addPeer(PeerMetricsReport peer) {
+        peers.add(peer);
+    }
+}
@@ -42,4 +42,8 @@ public class RestResponse implements Serializable {
     private boolean isSuccess;
     @NonNull
     private String message;
+    /**
+     * ID of the scheduled artifact fetch, see {@link FetchStatus}
+     */
+    private String trackingId;
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.model.config;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+
+/**
+ * DTO Class encapsulates single include / exclude rule of the peer filter.
+ * Rule matches artifact that meets all attributes set on the rule, e.g. repository="x" versionType="snapshot"
+ * matches only SNAPSHOT versions in x.
+ */
+@NoArgsConstructor
+@EqualsAndHashCode
+@XmlAccessorType(XmlAccessType.FIELD)
+public class FilterRule {
+    /**
+     * Matches SNAPSHOT versions, including timestamped ones
+     */
+    public static final String VERSION_SNAPSHOT = "snapshot";
+
+    /**
+     * Matches release versions
+     */
+    public static final String VERSION_RELEASE = "release";
+
+    /**
+     * Hosted repository id
+     */
+    @Getter
+    @XmlAttribute(name = "repository")
+    private String repository;
+    /**
+     * groupId prefix, matched by whole segments: com.example matches com.example.app but not com.examples
+     */
+    @Getter
+    @XmlAttribute(name = "groupId")
+    private String groupId;
+    /**
+     * Glob pattern of the groupId:artifactId:version coordinates
+     */
+    @Getter
+    @XmlAttribute(name = "pattern")
+    private String pattern;
+    @Getter
+    @XmlAttribute(name = "versionType")
+    private String versionType;
+}
@@ -26,6 +26,7 @@ import javax.xml.bind.annotation.XmlElement;
  */
 @NoArgsConstructor
 @RequiredArgsConstructor
+@EqualsAndHashCode
 @XmlAccessorType(XmlAccessType.FIELD)
 public class NexusServer {
     @Getter
@@ -40,4 +41,10 @@ public class NexusServer {
     @NonNull
     @XmlElement(name = "password")
     private String password;
+    /**
+     * Artifacts replicated to the peer, all artifacts are replicated if the filter is not configured
+     */
+    @Getter
+    @XmlElement(name = "filter")
+    private ReplicationFilter filter;
 }
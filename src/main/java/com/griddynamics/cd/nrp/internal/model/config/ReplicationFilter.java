@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.model.config;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO Class encapsulates artifacts filter of the peer. Artifact is replicated to the peer if it matches
+ * any include rule (or there are no include rules) and does not match any exclude rule.
+ */
+@NoArgsConstructor
+@EqualsAndHashCode
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ReplicationFilter {
+    @Getter
+    @XmlElement(name = "include")
+    private List<FilterRule> includes = new ArrayList<>();
+    @Getter
+    @XmlElement(name = "exclude")
+    private List<FilterRule> excludes = new ArrayList<>();
+}
@@ -24,6 +24,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -34,6 +35,42 @@ import java.util.Set;
 @RequiredArgsConstructor
 @XmlRootElement(name = "configurations")
 public class ReplicationPluginConfiguration {
+    /**
+     * Queue dump location used if queueDumpFileName attribute is not configured
+     */
+    public static final String DEFAULT_QUEUE_DUMP_FILE_NAME =
+            new File(System.getProperty("java.io.tmpdir"), "nexus-replication-plugin-queue-backup").getPath();
+
+    /**
+     * Replication queue is persisted to the append-only segment journal
+     */
+    public static final String QUEUE_STORE_JOURNAL = "journal";
+
+    /**
+     * Replication queue is persisted to the memory-mapped ring file with group commit
+     */
+    public static final String QUEUE_STORE_MAPPED_RING = "mappedRing";
+
+    /**
+     * Artifact deployed without checksum is replicated when partialArtifactTimeoutSeconds elapses
+     */
+    public static final String PARTIAL_ARTIFACT_REPLICATE = "replicate";
+
+    /**
+     * Artifact deployed without checksum is not replicated
+     */
+    public static final String PARTIAL_ARTIFACT_DROP = "drop";
+
+    /**
+     * Replication requests are sent as XML
+     */
+    public static final String WIRE_FORMAT_XML = "xml";
+
+    /**
+     * Replication requests are sent in the compact binary format to the peers that support it
+     */
+    public static final String WIRE_FORMAT_BINARY = "binary";
+
     @XmlElement(name = "server")
     @XmlElementWrapper(name = "servers")
     private final Set<NexusServer> servers = new HashSet<>();
@@ -46,7 +83,67 @@ public class ReplicationPluginConfiguration {
     @XmlAttribute(name = "requestsSendingThreadsCount")
     private Integer requestsSendingThreadsCount = 1;
     @XmlAttribute(name = "queueDumpFileName")
-    private String queueDumpFileName;
+    private String queueDumpFileName = DEFAULT_QUEUE_DUMP_FILE_NAME;
+    @XmlAttribute(name = "queueStoreType")
+    private String queueStoreType = QUEUE_STORE_JOURNAL;
+    @XmlAttribute(name = "queueRingFileSize")
+    private Integer queueRingFileSize = 64 * 1024 * 1024;
+    @XmlAttribute(name = "groupCommitWindowMillis")
+    private Integer groupCommitWindowMillis = 2;
+    @XmlAttribute(name = "batchSize")
+    private Integer batchSize = 100;
+    @XmlAttribute(name = "batchLingerMillis")
+    private Integer batchLingerMillis = 50;
+    @XmlAttribute(name = "maxConnectionsPerRoute")
+    private Integer maxConnectionsPerRoute = 10;
+    @XmlAttribute(name = "connectionIdleTimeoutSeconds")
+    private Integer connectionIdleTimeoutSeconds = 60;
+    @XmlAttribute(name = "leaseTimeoutSeconds")
+    private Integer leaseTimeoutSeconds = 600;
+    @XmlAttribute(name = "retryInitialDelayMillis")
+    private Integer retryInitialDelayMillis = 1000;
+    @XmlAttribute(name = "retryMaxDelayMillis")
+    private Integer retryMaxDelayMillis = 5 * 60 * 1000;
+    @XmlAttribute(name = "rejectedRequestRetries")
+    private Integer rejectedRequestRetries = 3;
+    @XmlAttribute(name = "circuitBreakerFailureThreshold")
+    private Integer circuitBreakerFailureThreshold = 5;
+    @XmlAttribute(name = "circuitBreakerOpenSeconds")
+    private Integer circuitBreakerOpenSeconds = 30;
+    @XmlAttribute(name = "fetchThreadsCount")
+    private Integer fetchThreadsCount = 4;
+    @XmlAttribute(name = "fetchThreadsPerRepository")
+    private Integer fetchThreadsPerRepository = 2;
+    @XmlAttribute(name = "fetchStatusExpirySeconds")
+    private Integer fetchStatusExpirySeconds = 3600;
+    @XmlAttribute(name = "fetchCompletionCacheSeconds")
+    private Integer fetchCompletionCacheSeconds = 30;
+    @XmlAttribute(name = "fetchAttempts")
+    private Integer fetchAttempts = 5;
+    @XmlAttribute(name = "fetchRetryDelaySeconds")
+    private Integer fetchRetryDelaySeconds = 30;
+    @XmlAttribute(name = "checksumIndexSize")
+    private Integer checksumIndexSize = 100000;
+    @XmlAttribute(name = "reconciliationIntervalMinutes")
+    private Integer reconciliationIntervalMinutes = 60;
+    @XmlAttribute(name = "reconciliationMaxRepairs")
+    private Integer reconciliationMaxRepairs = 1000;
+    @XmlAttribute(name = "contentTreeRebuildHours")
+    private Integer contentTreeRebuildHours = 24;
+    @XmlAttribute(name = "trackedArtifactsMaxCount")
+    private Integer trackedArtifactsMaxCount = 10000;
+    @XmlAttribute(name = "partialArtifactTimeoutSeconds")
+    private Integer partialArtifactTimeoutSeconds = 600;
+    @XmlAttribute(name = "artifactSetQuietMillis")
+    private Integer artifactSetQuietMillis = 1000;
+    @XmlAttribute(name = "partialArtifactPolicy")
+    private String partialArtifactPolicy = PARTIAL_ARTIFACT_DROP;
+    @XmlAttribute(name = "wireFormat")
+    private String wireFormat = WIRE_FORMAT_XML;
+    @XmlAttribute(name = "snapshotCoalescingWindowMillis")
+    private Integer snapshotCoalescingWindowMillis = 0;
+    @XmlAttribute(name = "handOffBufferSize")
+    private Integer handOffBufferSize = 8192;
 
     public void addServer(NexusServer server) {
         servers.add(server);
@@ -60,6 +157,126 @@ public class ReplicationPluginConfiguration {
         return queueDumpFileName;
     }
 
+    public String getQueueStoreType() {
+        return queueStoreType;
+    }
+
+    public Integer getQueueRingFileSize() {
+        return queueRingFileSize;
+    }
+
+    public Integer getGroupCommitWindowMillis() {
+        return groupCommitWindowMillis;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public Integer getBatchLingerMillis() {
+        return batchLingerMillis;
+    }
+
+    public Integer getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public Integer getConnectionIdleTimeoutSeconds() {
+        return connectionIdleTimeoutSeconds;
+    }
+
+    public Integer getLeaseTimeoutSeconds() {
+        return leaseTimeoutSeconds;
+    }
+
+    public Integer getRetryInitialDelayMillis() {
+        return retryInitialDelayMillis;
+    }
+
+    public Integer getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    public Integer getRejectedRequestRetries() {
+        return rejectedRequestRetries;
+    }
+
+    public Integer getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public Integer getCircuitBreakerOpenSeconds() {
+        return circuitBreakerOpenSeconds;
+    }
+
+    public Integer getFetchThreadsCount() {
+        return fetchThreadsCount;
+    }
+
+    public Integer getFetchThreadsPerRepository() {
+        return fetchThreadsPerRepository;
+    }
+
+    public Integer getFetchStatusExpirySeconds() {
+        return fetchStatusExpirySeconds;
+    }
+
+    public Integer getFetchCompletionCacheSeconds() {
+        return fetchCompletionCacheSeconds;
+    }
+
+    public Integer getFetchAttempts() {
+        return fetchAttempts;
+    }
+
+    public Integer getFetchRetryDelaySeconds() {
+        return fetchRetryDelaySeconds;
+    }
+
+    public Integer getChecksumIndexSize() {
+        return checksumIndexSize;
+    }
+
+    public Integer getReconciliationIntervalMinutes() {
+        return reconciliationIntervalMinutes;
+    }
+
+    public Integer getReconciliationMaxRepairs() {
+        return reconciliationMaxRepairs;
+    }
+
+    public Integer getContentTreeRebuildHours() {
+        return contentTreeRebuildHours;
+    }
+
+    public Integer getTrackedArtifactsMaxCount() {
+        return trackedArtifactsMaxCount;
+    }
+
+    public Integer getPartialArtifactTimeoutSeconds() {
+        return partialArtifactTimeoutSeconds;
+    }
+
+    public Integer getArtifactSetQuietMillis() {
+        return artifactSetQuietMillis;
+    }
+
+    public String getPartialArtifactPolicy() {
+        return partialArtifactPolicy;
+    }
+
+    public String getWireFormat() {
+        return wireFormat;
+    }
+
+    public Integer getSnapshotCoalescingWindowMillis() {
+        return snapshotCoalescingWindowMillis;
+    }
+
+    public Integer getHandOffBufferSize() {
+        return handOffBufferSize;
+    }
+
     public Integer getRequestsSendingThreadsCount() {
         return requestsSendingThreadsCount;
     }
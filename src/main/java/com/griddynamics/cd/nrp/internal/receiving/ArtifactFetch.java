@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
+import lombok.Getter;
+import org.sonatype.nexus.proxy.maven.ArtifactStoreRequest;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+
+import java.util.List;
+
+/**
+ * Retrieval of the replicated artifact set by the single proxy repository
+ */
+public class ArtifactFetch {
+    @Getter
+    private final MavenProxyRepository repository;
+    /**
+     * Files of the artifact set
+     */
+    @Getter
+    private final List<ArtifactStoreRequest> requests;
+    /**
+     * Expected sha1 checksums and sizes of the files in the order of the requests, null if the master did not send them
+     */
+    @Getter
+    private final List<ArtifactFile> contents;
+    /**
+     * Paths of maven-metadata.xml files which cached copies have to be refreshed
+     */
+    @Getter
+    private final List<String> metadataPaths;
+
+    public ArtifactFetch(MavenProxyRepository repository, List<ArtifactStoreRequest> requests, List<ArtifactFile> contents,
+                         List<String> metadataPaths) {
+        this.repository = repository;
+        this.requests = requests;
+        this.contents = contents;
+        this.metadataPaths = metadataPaths;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.FetchStatus;
+
+import java.util.List;
+
+public interface ArtifactFetchScheduler {
+    /**
+     * Schedules retrieval of the replicated artifact by proxy repositories
+     * @param metaInfo Information about artifact that was deployed to the master nexus
+     * @param fetches Retrievals by the matched proxy repositories
+     * @return Tracking ID of the scheduled retrievals
+     */
+    String schedule(ArtifactMetaInfo metaInfo, List<ArtifactFetch> fetches);
+
+    /**
+     * Returns state of the scheduled retrievals
+     * @param trackingId Tracking ID returned by {@link #schedule(ArtifactMetaInfo, List)}
+     * @return Fetch status or null if tracking ID is unknown or expired
+     */
+    FetchStatus getStatus(String trackingId);
+}
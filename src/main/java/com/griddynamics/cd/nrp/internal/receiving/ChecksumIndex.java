@@ -0,0 +1,28 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving;
+
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+
+public interface ChecksumIndex {
+    /**
+     * Finds local file with the given content
+     * @param sha1 Sha1 checksum of the content
+     * @param size Size of the content in bytes, null if unknown
+     * @return File stored or cached by some local repository or null if the content is not known
+     */
+    StorageFileItem find(String sha1, Long size);
+}
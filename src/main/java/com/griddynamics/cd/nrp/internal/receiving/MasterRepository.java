@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Repository of the master nexus which replication requests this instance receives
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class MasterRepository {
+    /**
+     * URL of the master nexus without trailing slashes
+     */
+    private final String nexusUrl;
+    /**
+     * Repository ID at the master nexus
+     */
+    private final String repositoryId;
+
+    public MasterRepository(String nexusUrl, String repositoryId) {
+        this.nexusUrl = nexusUrl;
+        this.repositoryId = repositoryId;
+    }
+}
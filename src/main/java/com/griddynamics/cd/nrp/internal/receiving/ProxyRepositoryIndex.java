@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving;
+
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+
+import java.util.List;
+import java.util.Set;
+
+public interface ProxyRepositoryIndex {
+    /**
+     * Returns proxy repositories of the master nexus repository
+     * @param nexusUrl URL of the master nexus
+     * @param repositoryId Repository ID at the master nexus
+     * @return Proxy repositories which remote URL starts with nexusUrl and ends with repositoryId
+     */
+    List<MavenProxyRepository> findProxies(String nexusUrl, String repositoryId);
+
+    /**
+     * Returns master repositories of the configured proxies
+     * @return Masters parsed from the proxy remote URLs of the form nexusUrl/content/repositories/repositoryId
+     */
+    Set<MasterRepository> getMasters();
+}
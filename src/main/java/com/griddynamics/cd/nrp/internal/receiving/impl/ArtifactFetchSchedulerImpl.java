@@ -0,0 +1,323 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.Subscribe;
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.FetchStatus;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetch;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetchScheduler;
+import com.griddynamics.cd.nrp.internal.receiving.ChecksumIndex;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationChangedEvent;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ConfigurationsManagerImpl;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs artifact retrievals requested by the master nexus in background, so replication request
+ * is answered immediately. Retrievals are executed by the bounded pool of fetchThreadsCount threads,
+ * at most fetchThreadsPerRepository retrievals of the single proxy repository run at the same time.
+ * <p/>
+ * Retrievals are de-duplicated by {@link FetchKey}: request for the artifact that is already being retrieved
+ * is attached to the running retrieval, request for the artifact retrieved within fetchCompletionCacheSeconds
+ * is answered by the completed retrieval.
+ * <p/>
+ * Replication request is acknowledged once the retrieval is scheduled, so failed retrieval is retried here:
+ * it is queued again after fetchRetryDelaySeconds, doubled with every attempt, and fails after fetchAttempts.
+ * Retrieval stays in flight while it waits for the next attempt. Waiting retries are lost on shutdown,
+ * the files are repaired by the content reconciliation then.
+ * <p/>
+ * Both concurrency limits and the retry settings follow the configuration changes.
+ */
+@Singleton
+@Named(ArtifactFetchSchedulerImpl.ID)
+public class ArtifactFetchSchedulerImpl extends ComponentSupport implements ArtifactFetchScheduler {
+
+    public static final String ID = "artifactFetchScheduler";
+
+    /**
+     * Upper bound of the tracked retrievals, the oldest are forgotten first
+     */
+    private static final int MAX_TRACKED_FETCHES = 100000;
+
+    /**
+     * Time the running retrievals are given to finish on shutdown
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final ThreadPoolExecutor fetchExecutor;
+    private int fetchThreadsPerRepository;
+    private int fetchAttempts;
+    private long fetchRetryDelaySeconds;
+
+    /**
+     * Queues failed retrievals again after the retry delay
+     */
+    private final ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Waiting and running retrievals by proxy repository ID
+     */
+    private final Map<String, RepositoryFetches> repositoryFetches = new HashMap<>();
+
+    /**
+     * Waiting and running retrievals by artifact
+     */
+    private final Map<FetchKey, FetchTask> inFlightFetches = new HashMap<>();
+
+    /**
+     * Recently succeeded retrievals by artifact
+     */
+    private final Cache<FetchKey, FetchTask> completedFetches;
+
+    /**
+     * Scheduled retrievals by tracking ID
+     */
+    private final Cache<String, List<FetchTask>> trackedFetches;
+
+    private final ReplicationMetrics replicationMetrics;
+
+    /**
+     * Finds local copies of the replicated files
+     */
+    private final ChecksumIndex checksumIndex;
+
+    @Inject
+    public ArtifactFetchSchedulerImpl(@Named(ConfigurationsManagerImpl.ID) ConfigurationsManager configurationsManager,
+                                      @Named(ReplicationMetricsImpl.ID) ReplicationMetrics replicationMetrics,
+                                      @Named(ChecksumIndexImpl.ID) ChecksumIndex checksumIndex) {
+        this.replicationMetrics = replicationMetrics;
+        this.checksumIndex = checksumIndex;
+        ReplicationPluginConfiguration configuration = configurationsManager.getConfiguration();
+        this.fetchExecutor = new ThreadPoolExecutor(configuration.getFetchThreadsCount(), configuration.getFetchThreadsCount(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        this.fetchThreadsPerRepository = configuration.getFetchThreadsPerRepository();
+        this.fetchAttempts = configuration.getFetchAttempts();
+        this.fetchRetryDelaySeconds = configuration.getFetchRetryDelaySeconds();
+        this.trackedFetches = CacheBuilder.newBuilder()
+                .maximumSize(MAX_TRACKED_FETCHES)
+                .expireAfterWrite(configuration.getFetchStatusExpirySeconds(), TimeUnit.SECONDS)
+                .build();
+        this.completedFetches = CacheBuilder.newBuilder()
+                .maximumSize(MAX_TRACKED_FETCHES)
+                .expireAfterWrite(configuration.getFetchCompletionCacheSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Stops the retrieval threads. Scheduled retrievals are given a few seconds to finish, then the threads
+     * are interrupted. Retrievals waiting for the next attempt are not retried.
+     */
+    @PreDestroy
+    public void destroy() {
+        retryTimer.shutdownNow();
+        fetchExecutor.shutdown();
+        try {
+            if (!fetchExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Artifact retrievals did not finish in time and are interrupted");
+                fetchExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            fetchExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String schedule(ArtifactMetaInfo metaInfo, List<ArtifactFetch> fetches) {
+        String trackingId = UUID.randomUUID().toString();
+        List<FetchTask> tasks = new ArrayList<>(fetches.size());
+        for (ArtifactFetch fetch : fetches) {
+            tasks.add(submit(new FetchKey(fetch.getRepository().getId(), metaInfo), fetch));
+        }
+        trackedFetches.put(trackingId, tasks);
+        log.debug("Scheduled " + tasks.size() + " retrievals of " + metaInfo + ". Tracking ID: " + trackingId);
+        return trackingId;
+    }
+
+    @Override
+    public FetchStatus getStatus(String trackingId) {
+        List<FetchTask> tasks = trackedFetches.getIfPresent(trackingId);
+        if (tasks == null) {
+            return null;
+        }
+        boolean running = false;
+        boolean queued = false;
+        for (FetchTask task : tasks) {
+            if (FetchStatus.FAILED.equals(task.getState())) {
+                return new FetchStatus(trackingId, FetchStatus.FAILED, task.getMessage());
+            }
+            running |= FetchStatus.RUNNING.equals(task.getState());
+            queued |= FetchStatus.QUEUED.equals(task.getState());
+        }
+        if (running) {
+            return new FetchStatus(trackingId, FetchStatus.RUNNING, null);
+        }
+        if (queued) {
+            return new FetchStatus(trackingId, FetchStatus.QUEUED, null);
+        }
+        return new FetchStatus(trackingId, FetchStatus.SUCCEEDED, "Artifact is resolved.");
+    }
+
+    /**
+     * Applies changed concurrency limits. Waiting retrievals are started if the repository limit is increased,
+     * extra running retrievals are not interrupted.
+     */
+    @Subscribe
+    public synchronized void onConfigurationChanged(ConfigurationChangedEvent event) {
+        ReplicationPluginConfiguration configuration = event.getNewConfiguration();
+        int fetchThreadsCount = configuration.getFetchThreadsCount();
+        if (fetchThreadsCount > fetchExecutor.getMaximumPoolSize()) {
+            fetchExecutor.setMaximumPoolSize(fetchThreadsCount);
+            fetchExecutor.setCorePoolSize(fetchThreadsCount);
+        } else if (fetchThreadsCount < fetchExecutor.getMaximumPoolSize()) {
+            fetchExecutor.setCorePoolSize(fetchThreadsCount);
+            fetchExecutor.setMaximumPoolSize(fetchThreadsCount);
+        }
+        fetchThreadsPerRepository = configuration.getFetchThreadsPerRepository();
+        fetchAttempts = configuration.getFetchAttempts();
+        fetchRetryDelaySeconds = configuration.getFetchRetryDelaySeconds();
+        for (RepositoryFetches fetches : repositoryFetches.values()) {
+            while (fetches.running < fetchThreadsPerRepository && !fetches.waiting.isEmpty()) {
+                fetches.running++;
+                execute(fetches.waiting.poll());
+            }
+        }
+    }
+
+    /**
+     * Returns running or recently completed retrieval of the same artifact. Otherwise starts retrieval
+     * or queues it if the repository has reached its concurrency limit.
+     */
+    private synchronized FetchTask submit(FetchKey key, ArtifactFetch fetch) {
+        FetchTask task = inFlightFetches.get(key);
+        if (task == null) {
+            task = completedFetches.getIfPresent(key);
+        }
+        if (task != null) {
+            log.debug("Retrieval of " + key + " is attached to the " + task.getState() + " one");
+            replicationMetrics.fetchCoalesced();
+            return task;
+        }
+        task = new FetchTask(key, fetch, fetchAttempts, checksumIndex, replicationMetrics);
+        inFlightFetches.put(key, task);
+        enqueue(task);
+        return task;
+    }
+
+    /**
+     * Starts retrieval or queues it if the repository has reached its concurrency limit
+     */
+    private void enqueue(FetchTask task) {
+        RepositoryFetches fetches = repositoryFetches.get(task.getRepositoryId());
+        if (fetches == null) {
+            fetches = new RepositoryFetches();
+            repositoryFetches.put(task.getRepositoryId(), fetches);
+        }
+        if (fetches.running < fetchThreadsPerRepository) {
+            fetches.running++;
+            execute(task);
+        } else {
+            fetches.waiting.add(task);
+        }
+    }
+
+    /**
+     * Remembers completed retrieval or schedules the next attempt of the failed one,
+     * then starts next waiting retrieval of the repository
+     */
+    private synchronized void complete(FetchTask task) {
+        if (FetchStatus.QUEUED.equals(task.getState())) {
+            scheduleRetry(task);
+        } else {
+            inFlightFetches.remove(task.getKey());
+            boolean succeeded = FetchStatus.SUCCEEDED.equals(task.getState());
+            if (succeeded) {
+                completedFetches.put(task.getKey(), task);
+            }
+            replicationMetrics.fetchCompleted(succeeded, task.getDurationNanos());
+        }
+        RepositoryFetches fetches = repositoryFetches.get(task.getRepositoryId());
+        // Slot is released without starting the next retrieval if the limit was reduced
+        FetchTask next = fetches.running <= fetchThreadsPerRepository ? fetches.waiting.poll() : null;
+        if (next != null) {
+            execute(next);
+        } else if (--fetches.running == 0 && fetches.waiting.isEmpty()) {
+            repositoryFetches.remove(task.getRepositoryId());
+        }
+    }
+
+    /**
+     * Queues failed retrieval again after the delay, which is doubled with every attempt
+     */
+    private void scheduleRetry(final FetchTask task) {
+        long delaySeconds = fetchRetryDelaySeconds << Math.min(task.getAttempts() - 1, 16);
+        try {
+            retryTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (ArtifactFetchSchedulerImpl.this) {
+                        enqueue(task);
+                    }
+                }
+            }, delaySeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Retrieval of " + task.getKey() + " is not retried, the plugin is stopped");
+            inFlightFetches.remove(task.getKey());
+        }
+    }
+
+    private void execute(final FetchTask task) {
+        fetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    complete(task);
+                }
+            }
+        });
+    }
+
+    private static class RepositoryFetches {
+        private final Deque<FetchTask> waiting = new ArrayDeque<>();
+        private int running;
+    }
+}
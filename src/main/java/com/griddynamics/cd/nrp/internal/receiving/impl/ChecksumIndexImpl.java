@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.griddynamics.cd.nrp.internal.receiving.ChecksumIndex;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ConfigurationsManagerImpl;
+import lombok.EqualsAndHashCode;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventCache;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventDelete;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStore;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.GroupRepository;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Index of the local files by the sha1 checksum of their content. Files stored to the hosted repositories
+ * and cached by the proxy repositories are indexed from the repository item events, at most checksumIndexSize
+ * recently stored files are remembered. Indexed location is verified on every lookup, so deleted or
+ * overwritten files are never returned.
+ * <p/>
+ * Index is empty after restart and is disabled if checksumIndexSize is 0.
+ */
+@Singleton
+@Named(ChecksumIndexImpl.ID)
+public class ChecksumIndexImpl extends ComponentSupport implements ChecksumIndex {
+
+    public static final String ID = "checksumIndex";
+
+    private final RepositoryRegistry repositoryRegistry;
+
+    /**
+     * Location of the most recently stored file by checksum, null if the index is disabled
+     */
+    private final Cache<String, ItemLocation> locations;
+
+    @Inject
+    public ChecksumIndexImpl(RepositoryRegistry repositoryRegistry,
+                             @Named(ConfigurationsManagerImpl.ID) ConfigurationsManager configurationsManager) {
+        this.repositoryRegistry = repositoryRegistry;
+        int size = configurationsManager.getConfiguration().getChecksumIndexSize();
+        this.locations = size > 0 ? CacheBuilder.newBuilder().maximumSize(size).<String, ItemLocation>build() : null;
+    }
+
+    @Override
+    public StorageFileItem find(String sha1, Long size) {
+        if (locations == null || sha1 == null) {
+            return null;
+        }
+        ItemLocation location = locations.getIfPresent(sha1);
+        if (location == null) {
+            return null;
+        }
+        try {
+            Repository repository = repositoryRegistry.getRepository(location.repositoryId);
+            // Local only request, indexed proxy must not go to its remote
+            StorageItem item = repository.retrieveItem(new ResourceStoreRequest(location.path, true, false));
+            if (item instanceof StorageFileItem && matches((StorageFileItem) item, sha1, size)) {
+                return (StorageFileItem) item;
+            }
+        } catch (Exception e) {
+            log.debug("Indexed file " + location.path + " in " + location.repositoryId + " is not available", e);
+        }
+        locations.asMap().remove(sha1, location);
+        return null;
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onItemStored(RepositoryItemEventStore event) {
+        index(event);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onItemCached(RepositoryItemEventCache event) {
+        index(event);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onItemDeleted(RepositoryItemEventDelete event) {
+        String sha1 = getSha1(event);
+        if (sha1 != null) {
+            locations.asMap().remove(sha1, new ItemLocation(event.getRepository().getId(), event.getItem().getPath()));
+        }
+    }
+
+    /**
+     * Checks content of the file
+     * @param size Expected size in bytes, null if unknown
+     * @return true if the file has the expected checksum and size
+     */
+    public static boolean matches(StorageFileItem item, String sha1, Long size) {
+        return sha1.equals(item.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY))
+                && (size == null || size == item.getLength());
+    }
+
+    private void index(RepositoryItemEvent event) {
+        String sha1 = getSha1(event);
+        if (sha1 != null) {
+            locations.put(sha1, new ItemLocation(event.getRepository().getId(), event.getItem().getPath()));
+        }
+    }
+
+    /**
+     * @return Checksum of the indexed file or null if the file is not indexed
+     */
+    private String getSha1(RepositoryItemEvent event) {
+        if (locations == null || !(event.getItem() instanceof StorageFileItem)
+                || !(event.getRepository() instanceof MavenRepository)
+                || event.getRepository() instanceof GroupRepository
+                || event.getItem().getPath().startsWith("/.")) {
+            return null;
+        }
+        return ((StorageFileItem) event.getItem()).getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY);
+    }
+
+    @EqualsAndHashCode
+    private static class ItemLocation {
+        private final String repositoryId;
+        private final String path;
+
+        private ItemLocation(String repositoryId, String path) {
+            this.repositoryId = repositoryId;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Identifies retrieval of the artifact set by the proxy repository. Retrievals with equal keys download the same files.
+ */
+@ToString
+@EqualsAndHashCode
+public class FetchKey {
+    private final String repositoryId;
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String classifier;
+    private final String extension;
+    private final String sha1;
+    private final List<ArtifactFile> files;
+    private final boolean metadataUpdated;
+
+    public FetchKey(String repositoryId, ArtifactMetaInfo metaInfo) {
+        this.repositoryId = repositoryId;
+        this.groupId = metaInfo.getGroupId();
+        this.artifactId = metaInfo.getArtifactId();
+        this.version = metaInfo.getVersion();
+        this.classifier = metaInfo.getClassifier();
+        this.extension = metaInfo.getExtension();
+        this.sha1 = metaInfo.getSha1();
+        this.files = metaInfo.getFiles();
+        this.metadataUpdated = metaInfo.isMetadataUpdated();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving.impl;
+
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
+import com.griddynamics.cd.nrp.internal.model.api.FetchStatus;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetch;
+import com.griddynamics.cd.nrp.internal.receiving.ChecksumIndex;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.DefaultStorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.item.StorageItem;
+import org.sonatype.nexus.proxy.maven.ArtifactStoreRequest;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+
+import java.util.List;
+
+/**
+ * Scheduled retrieval of the artifact set by the single proxy repository. All files of the set are retrieved
+ * one after another, then maven-metadata.xml is expired in the proxy cache and retrieved again. Failed retrieval
+ * is queued again until maxAttempts are made, then it is failed.
+ * <p/>
+ * File with known sha1 checksum is not downloaded if the proxy already has the same content. If another
+ * local repository has it, the content is copied to the proxy from there.
+ */
+public class FetchTask implements Runnable {
+
+    private final Logger log = LoggerFactory.getLogger(FetchTask.class);
+
+    @Getter
+    private final FetchKey key;
+    @Getter
+    private final ArtifactFetch fetch;
+    @Getter
+    private volatile String state = FetchStatus.QUEUED;
+    @Getter
+    private volatile String message;
+    /**
+     * Time the retrieval was running
+     */
+    @Getter
+    private volatile long durationNanos;
+    /**
+     * Number of the started attempts
+     */
+    @Getter
+    private volatile int attempts;
+    private final int maxAttempts;
+
+    private final ChecksumIndex checksumIndex;
+    private final ReplicationMetrics replicationMetrics;
+
+    /**
+     * @param maxAttempts Number of attempts made before the retrieval is failed
+     */
+    public FetchTask(FetchKey key, ArtifactFetch fetch, int maxAttempts, ChecksumIndex checksumIndex,
+                     ReplicationMetrics replicationMetrics) {
+        this.key = key;
+        this.fetch = fetch;
+        this.maxAttempts = maxAttempts;
+        this.checksumIndex = checksumIndex;
+        this.replicationMetrics = replicationMetrics;
+    }
+
+    public String getRepositoryId() {
+        return fetch.getRepository().getId();
+    }
+
+    @Override
+    public void run() {
+        state = FetchStatus.RUNNING;
+        attempts++;
+        long started = System.nanoTime();
+        String path = null;
+        try {
+            MavenProxyRepository repository = fetch.getRepository();
+            List<ArtifactStoreRequest> requests = fetch.getRequests();
+            for (int i = 0; i < requests.size(); i++) {
+                ArtifactStoreRequest request = requests.get(i);
+                path = request.getRequestPath();
+                if (!resolveLocally(repository, path, fetch.getContents().get(i))) {
+                    repository.getArtifactStoreHelper().retrieveArtifact(request);
+                }
+            }
+            for (String metadataPath : fetch.getMetadataPaths()) {
+                path = metadataPath;
+                repository.expireCaches(new ResourceStoreRequest(metadataPath));
+                repository.retrieveItem(new ResourceStoreRequest(metadataPath));
+            }
+            message = "Artifact is resolved.";
+            state = FetchStatus.SUCCEEDED;
+        } catch (Exception e) {
+            message = "Can not resolve artifact. " + e.getMessage();
+            if (attempts < maxAttempts) {
+                log.warn("Can not resolve artifact " + path + " in " + getRepositoryId() + ", attempt " + attempts
+                        + " of " + maxAttempts + ". Retrieval is retried later.", e);
+                state = FetchStatus.QUEUED;
+            } else {
+                log.error("Can not resolve artifact " + path + " in " + getRepositoryId(), e);
+                state = FetchStatus.FAILED;
+            }
+        } finally {
+            durationNanos = System.nanoTime() - started;
+        }
+    }
+
+    /**
+     * Puts the file content to the proxy without download
+     * @return true if the proxy already had the content or it was copied from another local repository
+     */
+    private boolean resolveLocally(MavenProxyRepository repository, String path, ArtifactFile content) {
+        if (content.getSha1() == null) {
+            return false;
+        }
+        StorageFileItem cached = retrieveLocalItem(repository, path);
+        if (cached != null && ChecksumIndexImpl.matches(cached, content.getSha1(), content.getSize())) {
+            log.debug("Proxy " + repository.getId() + " already has " + path);
+            replicationMetrics.fileUnchanged();
+            return true;
+        }
+        StorageFileItem source = checksumIndex.find(content.getSha1(), content.getSize());
+        if (source == null) {
+            return false;
+        }
+        try {
+            repository.storeItem(false, new DefaultStorageFileItem(repository, new ResourceStoreRequest(path),
+                    true, true, source.getContentLocator()));
+            log.debug("Content of " + path + " is copied to " + repository.getId() + " from " + source.getRepositoryItemUid());
+            replicationMetrics.fileCopiedLocally();
+            return true;
+        } catch (Exception e) {
+            log.warn("Can not copy " + source.getRepositoryItemUid() + " to " + path + " in " + repository.getId()
+                    + ". File is downloaded.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return File cached by the proxy or null if there is none
+     */
+    private StorageFileItem retrieveLocalItem(MavenProxyRepository repository, String path) {
+        try {
+            StorageItem item = repository.retrieveItem(new ResourceStoreRequest(path, true, false));
+            return item instanceof StorageFileItem ? (StorageFileItem) item : null;
+        } catch (ItemNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            log.debug("Can not check cached " + path + " in " + repository.getId(), e);
+            return null;
+        }
+    }
+}
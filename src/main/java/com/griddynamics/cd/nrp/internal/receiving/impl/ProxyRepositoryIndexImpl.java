@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.receiving.impl;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.griddynamics.cd.nrp.internal.receiving.MasterRepository;
+import com.griddynamics.cd.nrp.internal.receiving.ProxyRepositoryIndex;
+import org.sonatype.nexus.proxy.events.RepositoryConfigurationUpdatedEvent;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventAdd;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Index of the proxy repositories by the master nexus URL and repository ID.
+ * Proxies are grouped by the last segment of the remote URL (the repository ID at the master nexus),
+ * resolved lookups are cached. Index is built on the first lookup and then updated from the
+ * repository registry events. Masters of the indexed proxies are derived from their remote URLs, so their
+ * proxies can be reconciled right after start.
+ */
+@Singleton
+@Named(ProxyRepositoryIndexImpl.ID)
+public class ProxyRepositoryIndexImpl extends ComponentSupport implements ProxyRepositoryIndex {
+
+    public static final String ID = "proxyRepositoryIndex";
+
+    /**
+     * Path of the repository content at the master nexus, remote URL of the proxy is nexusUrl + path + repositoryId
+     */
+    private static final String REPOSITORIES_PATH = "/content/repositories/";
+
+    private final RepositoryRegistry repositoryRegistry;
+
+    /**
+     * Proxy repositories grouped by the last segment of the remote URL
+     */
+    private final Map<String, List<MavenProxyRepository>> proxiesByRemoteRepositoryId = new HashMap<>();
+
+    /**
+     * Remote repository ID of the indexed proxy by proxy ID
+     */
+    private final Map<String, String> remoteRepositoryIds = new HashMap<>();
+
+    /**
+     * Resolved lookups. Cleared on every index update
+     */
+    private final ConcurrentMap<MasterRepository, List<MavenProxyRepository>> lookups = new ConcurrentHashMap<>();
+
+    private boolean initialized;
+
+    @Inject
+    public ProxyRepositoryIndexImpl(RepositoryRegistry repositoryRegistry) {
+        this.repositoryRegistry = repositoryRegistry;
+    }
+
+    @Override
+    public List<MavenProxyRepository> findProxies(String nexusUrl, String repositoryId) {
+        MasterRepository key = new MasterRepository(normalizeUrl(nexusUrl), repositoryId);
+        List<MavenProxyRepository> proxies = lookups.get(key);
+        if (proxies != null) {
+            return proxies;
+        }
+        synchronized (this) {
+            initialize();
+            List<MavenProxyRepository> candidates = proxiesByRemoteRepositoryId.get(repositoryId);
+            proxies = new ArrayList<>();
+            if (candidates != null) {
+                for (MavenProxyRepository candidate : candidates) {
+                    if (normalizeUrl(candidate.getRemoteUrl()).startsWith(key.getNexusUrl())) {
+                        proxies.add(candidate);
+                    }
+                }
+            }
+            proxies = Collections.unmodifiableList(proxies);
+            lookups.put(key, proxies);
+            return proxies;
+        }
+    }
+
+    @Override
+    public synchronized Set<MasterRepository> getMasters() {
+        initialize();
+        Set<MasterRepository> masters = new HashSet<>();
+        for (List<MavenProxyRepository> proxies : proxiesByRemoteRepositoryId.values()) {
+            for (MavenProxyRepository proxy : proxies) {
+                MasterRepository master = parseMaster(proxy.getRemoteUrl());
+                if (master != null) {
+                    masters.add(master);
+                }
+            }
+        }
+        return masters;
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onRepositoryAdded(RepositoryRegistryEventAdd event) {
+        update(event.getRepository(), true);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onRepositoryRemoved(RepositoryRegistryEventRemove event) {
+        update(event.getRepository(), false);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onRepositoryUpdated(RepositoryConfigurationUpdatedEvent event) {
+        update(event.getRepository(), true);
+    }
+
+    /**
+     * Reindexes single repository
+     * @param repository Changed repository
+     * @param present false if repository was removed
+     */
+    private synchronized void update(Repository repository, boolean present) {
+        if (!initialized) {
+            // Index is built from the registry on the first lookup
+            return;
+        }
+        remove(repository.getId());
+        if (present && repository instanceof MavenProxyRepository) {
+            add((MavenProxyRepository) repository);
+        }
+        lookups.clear();
+    }
+
+    private void initialize() {
+        if (initialized) {
+            return;
+        }
+        for (Repository repository : repositoryRegistry.getRepositories()) {
+            if (repository instanceof MavenProxyRepository) {
+                add((MavenProxyRepository) repository);
+            }
+        }
+        initialized = true;
+        log.debug("Proxy repository index is built. Indexed proxies: " + remoteRepositoryIds.size());
+    }
+
+    private void add(MavenProxyRepository repository) {
+        if (repository.getRemoteUrl() == null) {
+            return;
+        }
+        String remoteUrl = normalizeUrl(repository.getRemoteUrl());
+        String remoteRepositoryId = remoteUrl.substring(remoteUrl.lastIndexOf('/') + 1);
+        List<MavenProxyRepository> proxies = proxiesByRemoteRepositoryId.get(remoteRepositoryId);
+        if (proxies == null) {
+            proxies = new ArrayList<>(1);
+            proxiesByRemoteRepositoryId.put(remoteRepositoryId, proxies);
+        }
+        proxies.add(repository);
+        remoteRepositoryIds.put(repository.getId(), remoteRepositoryId);
+    }
+
+    private void remove(String repositoryId) {
+        String remoteRepositoryId = remoteRepositoryIds.remove(repositoryId);
+        if (remoteRepositoryId == null) {
+            return;
+        }
+        List<MavenProxyRepository> proxies = proxiesByRemoteRepositoryId.get(remoteRepositoryId);
+        for (int i = proxies.size() - 1; i >= 0; i--) {
+            if (proxies.get(i).getId().equals(repositoryId)) {
+                proxies.remove(i);
+            }
+        }
+        if (proxies.isEmpty()) {
+            proxiesByRemoteRepositoryId.remove(remoteRepositoryId);
+        }
+    }
+
+    /**
+     * @return Master repository of the remote URL or null if the URL does not point to a nexus repository
+     */
+    private static MasterRepository parseMaster(String remoteUrl) {
+        if (remoteUrl == null) {
+            return null;
+        }
+        String url = normalizeUrl(remoteUrl);
+        int index = url.lastIndexOf(REPOSITORIES_PATH);
+        if (index <= 0 || index + REPOSITORIES_PATH.length() == url.length()
+                || url.indexOf('/', index + REPOSITORIES_PATH.length()) >= 0) {
+            return null;
+        }
+        return new MasterRepository(url.substring(0, index), url.substring(index + REPOSITORIES_PATH.length()));
+    }
+
+    /**
+     * Removes trailing slashes
+     */
+    private static String normalizeUrl(String url) {
+        int end = url.length();
+        while (end > 0 && url.charAt(end - 1) == '/') {
+            end--;
+        }
+        return url.substring(0, end);
+    }
+}
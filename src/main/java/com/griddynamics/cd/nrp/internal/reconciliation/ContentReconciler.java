@@ -0,0 +1,25 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.reconciliation;
+
+public interface ContentReconciler {
+    /**
+     * Compares content hash trees of the proxy repositories with the trees of their master repositories
+     * and retrieves files that differ. Trees of the hosted repositories requested by the peers are refreshed first,
+     * so the peers comparing their proxies with them get the current content.
+     */
+    void reconcile();
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.reconciliation;
+
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeNode;
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+
+public interface ContentTreeIndex {
+    /**
+     * Brings content hash tree of the repository up to date. Tree is built on the first call and rebuilt
+     * when it is older than contentTreeRebuildHours, otherwise only changed artifact directories are walked.
+     * @param repositoryId ID of the hosted or proxy Maven repository
+     */
+    void refresh(String repositoryId) throws NoSuchRepositoryException;
+
+    /**
+     * Brings up to date trees of the repositories that were refreshed or requested before.
+     * Hosted repository tree is built after the first request of the peer.
+     */
+    void refreshTrees();
+
+    /**
+     * Returns node of the content hash tree
+     * @param repositoryId ID of the hosted or proxy Maven repository
+     * @param node Hex prefix of the buckets, empty for the root, or artifact directory path
+     * @param filter Files it does not accept are not part of the hashes and are not listed
+     * @return Node with the hashes of its children or null if the tree is not built yet or has no hashes
+     * of the filter yet, they are computed by the next refresh
+     * @throws IllegalArgumentException if the node is unknown
+     */
+    ContentTreeNode getNode(String repositoryId, String node, ArtifactFilter filter) throws NoSuchRepositoryException;
+}
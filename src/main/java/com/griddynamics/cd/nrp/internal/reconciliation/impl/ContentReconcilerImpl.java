@@ -0,0 +1,283 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.reconciliation.impl;
+
+import com.google.common.eventbus.Subscribe;
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeEntry;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeNode;
+import com.griddynamics.cd.nrp.internal.receiving.MasterRepository;
+import com.griddynamics.cd.nrp.internal.receiving.ProxyRepositoryIndex;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ProxyRepositoryIndexImpl;
+import com.griddynamics.cd.nrp.internal.reconciliation.ContentReconciler;
+import com.griddynamics.cd.nrp.internal.reconciliation.ContentTreeIndex;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationChangedEvent;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ConfigurationsManagerImpl;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+import org.sonatype.nexus.proxy.repository.RemoteAuthenticationSettings;
+import org.sonatype.nexus.proxy.repository.UsernamePasswordRemoteAuthenticationSettings;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.ws.rs.core.MediaType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anti-entropy job repairing the drift between the master repositories and their proxies, e.g. after the replication
+ * requests were lost. Job runs every reconciliationIntervalMinutes on every instance: it refreshes the content trees
+ * of the hosted repositories requested by the peers, then compares every proxy which remote URL points to the master
+ * repository (nexusUrl/content/repositories/repositoryId) with its master repository. Root of the master tree is
+ * requested and compared with the local tree of the proxy, only differing nodes are requested further down to
+ * the artifact directories. Files that are missing in the proxy cache or differ from the master are retrieved again, at most
+ * reconciliationMaxRepairs files per proxy and run.
+ * <p/>
+ * Requests are authenticated by the remote credentials of the proxy and pass myUrl, so the master hashes and
+ * lists only the files it replicates to this peer. Files cached by the proxy but deleted at the master are not removed.
+ */
+@Singleton
+@Named(ContentReconcilerImpl.ID)
+public class ContentReconcilerImpl extends ComponentSupport implements ContentReconciler {
+
+    public static final String ID = "contentReconciler";
+
+    private static final String TREE_RESOURCE = "content-tree";
+    private static final String NODE_PARAMETER = "node";
+    private static final String PEER_PARAMETER = "peer";
+    private static final String ROOT_NODE = "";
+    private static final String DIRECTORY_PREFIX = "/";
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+    /**
+     * First run is delayed, so it does not compete with the Nexus start
+     */
+    private static final long INITIAL_DELAY_MINUTES = 1;
+
+    private final ProxyRepositoryIndex proxyRepositoryIndex;
+    private final ContentTreeIndex contentTreeIndex;
+    private final ConfigurationsManager configurationsManager;
+    private final ReplicationMetrics replicationMetrics;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> scheduledRun;
+    private int intervalMinutes;
+
+    @Inject
+    public ContentReconcilerImpl(@Named(ProxyRepositoryIndexImpl.ID) ProxyRepositoryIndex proxyRepositoryIndex,
+                                 @Named(ContentTreeIndexImpl.ID) ContentTreeIndex contentTreeIndex,
+                                 @Named(ConfigurationsManagerImpl.ID) ConfigurationsManager configurationsManager,
+                                 @Named(ReplicationMetricsImpl.ID) ReplicationMetrics replicationMetrics) {
+        this.proxyRepositoryIndex = proxyRepositoryIndex;
+        this.contentTreeIndex = contentTreeIndex;
+        this.configurationsManager = configurationsManager;
+        this.replicationMetrics = replicationMetrics;
+        schedule(configurationsManager.getConfiguration().getReconciliationIntervalMinutes());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Reschedules the job if the interval is changed
+     */
+    @Subscribe
+    public synchronized void onConfigurationChanged(ConfigurationChangedEvent event) {
+        int interval = event.getNewConfiguration().getReconciliationIntervalMinutes();
+        if (interval != intervalMinutes) {
+            schedule(interval);
+        }
+    }
+
+    @Override
+    public void reconcile() {
+        contentTreeIndex.refreshTrees();
+        for (MasterRepository master : proxyRepositoryIndex.getMasters()) {
+            List<MavenProxyRepository> proxies = proxyRepositoryIndex.findProxies(master.getNexusUrl(),
+                    master.getRepositoryId());
+            for (MavenProxyRepository proxy : proxies) {
+                try {
+                    reconcile(proxy, master.getNexusUrl(), master.getRepositoryId());
+                } catch (Exception e) {
+                    log.warn("Can not reconcile " + proxy.getId(), e);
+                }
+            }
+        }
+    }
+
+    private synchronized void schedule(int interval) {
+        if (scheduledRun != null) {
+            scheduledRun.cancel(false);
+            scheduledRun = null;
+        }
+        intervalMinutes = interval;
+        if (interval > 0) {
+            scheduledRun = scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    reconcile();
+                }
+            }, INITIAL_DELAY_MINUTES, interval, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Compares the proxy with its master repository
+     */
+    private void reconcile(MavenProxyRepository proxy, String nexusUrl, String masterRepositoryId)
+            throws NoSuchRepositoryException {
+        Client client = createClient(proxy);
+        try {
+            WebResource tree = client.resource(nexusUrl).path("service").path("local").path("artifact").path("maven")
+                    .path(TREE_RESOURCE).path(masterRepositoryId);
+            String myUrl = configurationsManager.getConfiguration().getMyUrl();
+            if (myUrl != null) {
+                tree = tree.queryParam(PEER_PARAMETER, myUrl);
+            }
+            Reconciliation reconciliation = new Reconciliation(proxy, tree,
+                    configurationsManager.getConfiguration().getReconciliationMaxRepairs());
+            // Proxy is walked only if its remote provides the content tree
+            ContentTreeNode masterRoot = reconciliation.requestNode(ROOT_NODE);
+            contentTreeIndex.refresh(proxy.getId());
+            reconciliation.compare(ROOT_NODE, masterRoot, true);
+            replicationMetrics.reconciliationCompleted();
+            log.debug("Reconciled " + proxy.getId() + " with " + masterRepositoryId + " at " + nexusUrl + ". Nodes compared: "
+                    + reconciliation.nodesCompared + ", files retrieved: " + reconciliation.repairs);
+        } catch (UniformInterfaceException e) {
+            int status = e.getResponse().getStatus();
+            if (status == HTTP_NOT_FOUND) {
+                log.debug("Master " + nexusUrl + " does not provide content tree of " + masterRepositoryId);
+            } else if (status == HTTP_SERVICE_UNAVAILABLE) {
+                log.info("Content tree of " + masterRepositoryId + " at " + nexusUrl + " is not built yet. "
+                        + proxy.getId() + " is reconciled by the next run.");
+            } else {
+                log.warn("Can not request content tree of " + masterRepositoryId + " at " + nexusUrl + ": " + e.getMessage());
+            }
+        } catch (ClientHandlerException e) {
+            log.warn("Can not request content tree of " + masterRepositoryId + " at " + nexusUrl + ": " + e.getMessage());
+        } finally {
+            client.destroy();
+        }
+    }
+
+    private Client createClient(MavenProxyRepository proxy) {
+        ClientConfig config = new DefaultClientConfig();
+        config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, CONNECT_TIMEOUT_MILLIS);
+        config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, READ_TIMEOUT_MILLIS);
+        Client client = Client.create(config);
+        RemoteAuthenticationSettings authentication = proxy.getRemoteAuthenticationSettings();
+        if (authentication instanceof UsernamePasswordRemoteAuthenticationSettings) {
+            UsernamePasswordRemoteAuthenticationSettings credentials = (UsernamePasswordRemoteAuthenticationSettings) authentication;
+            client.addFilter(new HTTPBasicAuthFilter(credentials.getUsername(), credentials.getPassword()));
+        }
+        return client;
+    }
+
+    /**
+     * Comparison of the single proxy with its master repository
+     */
+    private class Reconciliation {
+        private final MavenProxyRepository proxy;
+        private final WebResource tree;
+        private final int maxRepairs;
+        private int nodesCompared;
+        private int repairs;
+
+        private Reconciliation(MavenProxyRepository proxy, WebResource tree, int maxRepairs) {
+            this.proxy = proxy;
+            this.tree = tree;
+            this.maxRepairs = maxRepairs;
+        }
+
+        private ContentTreeNode requestNode(String node) {
+            return tree.queryParam(NODE_PARAMETER, node).accept(MediaType.APPLICATION_XML_TYPE).get(ContentTreeNode.class);
+        }
+
+        /**
+         * Compares children of the master node with the local ones and descends into the differing ones.
+         * Differing children of the artifact directory are the files to retrieve.
+         * @param localKnown false if the proxy has no such artifact directory, all its files are retrieved then
+         */
+        private void compare(String node, ContentTreeNode masterNode, boolean localKnown)
+                throws NoSuchRepositoryException {
+            nodesCompared++;
+            replicationMetrics.reconciliationNodeCompared();
+            Map<String, String> localHashes = new HashMap<>();
+            if (localKnown) {
+                ContentTreeNode localNode = contentTreeIndex.getNode(proxy.getId(), node, ArtifactFilter.ACCEPT_ALL);
+                for (ContentTreeEntry entry : localNode.getEntries()) {
+                    localHashes.put(entry.getKey(), entry.getHash());
+                }
+            }
+            for (ContentTreeEntry entry : masterNode.getEntries()) {
+                if (repairs >= maxRepairs) {
+                    return;
+                }
+                String localHash = localHashes.get(entry.getKey());
+                if (entry.getHash().equals(localHash)) {
+                    continue;
+                }
+                if (node.startsWith(DIRECTORY_PREFIX)) {
+                    repair(entry.getKey(), localHash != null);
+                } else {
+                    // Hex nodes are always known, unknown artifact directories are not walked locally
+                    compare(entry.getKey(), requestNode(entry.getKey()),
+                            localHash != null || !entry.getKey().startsWith(DIRECTORY_PREFIX));
+                }
+            }
+        }
+
+        /**
+         * Retrieves the file from the master, cached copy is expired first
+         */
+        private void repair(String path, boolean cached) {
+            repairs++;
+            try {
+                if (cached) {
+                    proxy.expireCaches(new ResourceStoreRequest(path));
+                }
+                proxy.retrieveItem(new ResourceStoreRequest(path));
+                replicationMetrics.fileRepaired();
+                log.debug("Retrieved " + path + " in " + proxy.getId() + (cached ? ", cached copy differed" : ", it was missing"));
+            } catch (Exception e) {
+                log.warn("Can not retrieve " + path + " in " + proxy.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.reconciliation.impl;
+
+import com.google.common.io.BaseEncoding;
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeEntry;
+import org.sonatype.nexus.proxy.ItemNotFoundException;
+import org.sonatype.nexus.proxy.ResourceStoreRequest;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.maven.gav.Gav;
+import org.sonatype.nexus.proxy.walker.AbstractFileWalkerProcessor;
+import org.sonatype.nexus.proxy.walker.DefaultWalkerContext;
+import org.sonatype.nexus.proxy.walker.Walker;
+import org.sonatype.nexus.proxy.walker.WalkerContext;
+import org.sonatype.nexus.proxy.walker.WalkerException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash tree of the Maven content of the single repository. Artifact directories (groupId/artifactId) are
+ * distributed to 16^3 buckets by the hex prefix of their path hash, inner nodes of the 16-ary tree hash their
+ * 16 children. Digest of the artifact directory is XOR of sha1(path, sha1 checksum) of its files, digest of the
+ * bucket is XOR of its directory digests, so a changed directory updates its bucket without rehashing the others.
+ * <p/>
+ * Only the directory digests are kept in memory. Tree is built by walking the local storage, then changed
+ * directories are marked by the repository item events and walked again on the next refresh.
+ * Checksums, signatures and maven-metadata.xml are not part of the tree.
+ * <p/>
+ * Digests are kept for every peer filter the tree was requested with, so the tree of the files replicated to
+ * the filtered peer matches the tree of its proxy. Digests of the filter requested for the first time are computed
+ * by the next refresh, digests of the filters not requested within the rebuild interval are dropped by the rebuild.
+ */
+public class ContentTree {
+
+    /**
+     * Number of hex digits in the bucket ID
+     */
+    public static final int BUCKET_DEPTH = 3;
+
+    private static final int FAN_OUT = 16;
+    private static final int BUCKETS = 1 << (4 * BUCKET_DEPTH);
+    private static final int DIGEST_LENGTH = 20;
+    private static final String ROOT_PATH = "/";
+    private static final String METADATA_FILE = "/maven-metadata.xml";
+    private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+
+    private final MavenRepository repository;
+    private final Walker walker;
+
+    /**
+     * Digests of the files accepted by the filter by filter, null until the tree is built.
+     * Unfiltered digests are kept by {@link ArtifactFilter#ACCEPT_ALL}.
+     */
+    private Map<ArtifactFilter, FilteredDigests> views;
+
+    /**
+     * Filters requested before their digests are computed
+     */
+    private final Set<ArtifactFilter> pendingFilters =
+            Collections.newSetFromMap(new ConcurrentHashMap<ArtifactFilter, Boolean>());
+
+    /**
+     * Artifact directories changed since they were walked
+     */
+    private final Set<String> changedDirectories = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Artifact directories changed while the tree is being rebuilt, null if it is not. Changes are applied
+     * to the previous tree meanwhile, so they are applied to the rebuilt tree again.
+     */
+    private volatile Set<String> rebuildChanges;
+
+    /**
+     * Time the tree was built, 0 if it is not built yet
+     */
+    private volatile long builtMillis;
+
+    /**
+     * Serializes the refreshes, the tree is built without holding the tree lock
+     */
+    private final Object refreshLock = new Object();
+
+    public ContentTree(MavenRepository repository, Walker walker) {
+        this.repository = repository;
+        this.walker = walker;
+    }
+
+    public boolean isBuilt() {
+        return builtMillis != 0;
+    }
+
+    /**
+     * Marks artifact directory of the stored, cached or deleted file changed
+     */
+    public void fileChanged(String path) {
+        String directory = getArtifactDirectory(path);
+        if (directory != null) {
+            markChanged(directory);
+        }
+    }
+
+    /**
+     * Marks artifact directories under the deleted directory changed
+     */
+    public synchronized void collectionDeleted(String path) {
+        if (views == null) {
+            return;
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        for (Map<String, byte[]> bucket : views.get(ArtifactFilter.ACCEPT_ALL).directories) {
+            for (String directory : bucket.keySet()) {
+                if ((directory + "/").startsWith(prefix)) {
+                    markChanged(directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the tree if it is not built yet, older than rebuildIntervalMillis or was requested with a new filter,
+     * otherwise walks the changed artifact directories
+     */
+    public void refresh(long rebuildIntervalMillis) throws WalkerException {
+        synchronized (refreshLock) {
+            if (!isBuilt() || System.currentTimeMillis() - builtMillis >= rebuildIntervalMillis
+                    || !pendingFilters.isEmpty()) {
+                rebuild(rebuildIntervalMillis);
+            } else {
+                applyChanges();
+            }
+        }
+    }
+
+    /**
+     * Returns children of the tree node
+     * @param node   Hex prefix of the buckets or artifact directory path
+     * @param filter Files it does not accept are not part of the hashes and are not listed
+     * @return Children with their hashes or null if the tree is not built yet or has no digests of the filter yet
+     * @throws IllegalArgumentException if the node is unknown
+     */
+    public synchronized List<ContentTreeEntry> getEntries(String node, ArtifactFilter filter) throws WalkerException {
+        if (!isBuilt()) {
+            return null;
+        }
+        FilteredDigests view = views.get(filter);
+        if (view == null) {
+            pendingFilters.add(filter);
+            return null;
+        }
+        view.requestedMillis = System.currentTimeMillis();
+        applyChanges();
+        List<ContentTreeEntry> entries = new ArrayList<>();
+        if (node.startsWith(ROOT_PATH)) {
+            // Only the artifact directories are walked, not the arbitrary subtrees
+            if (!view.directories.get(getBucket(node)).containsKey(node)) {
+                throw new IllegalArgumentException("Unknown content tree node: " + node);
+            }
+            for (Map.Entry<String, String> file : listFiles(node).entrySet()) {
+                if (accepts(filter, file.getKey())) {
+                    entries.add(new ContentTreeEntry(file.getKey(), file.getValue()));
+                }
+            }
+        } else if (!isHex(node)) {
+            throw new IllegalArgumentException("Unknown content tree node: " + node);
+        } else if (node.length() == BUCKET_DEPTH) {
+            Map<String, byte[]> bucket = new TreeMap<>(view.directories.get(Integer.parseInt(node, 16)));
+            for (Map.Entry<String, byte[]> directory : bucket.entrySet()) {
+                entries.add(new ContentTreeEntry(directory.getKey(), HEX.encode(directory.getValue())));
+            }
+        } else {
+            for (int i = 0; i < FAN_OUT; i++) {
+                String child = node + Character.forDigit(i, 16);
+                entries.add(new ContentTreeEntry(child, HEX.encode(hash(view, child))));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Walks the whole repository and computes digests of the unfiltered tree, the pending filters and the filters
+     * requested within the rebuild interval. Changes made during the walk are applied after it, also those that
+     * were applied to the previous tree meanwhile.
+     */
+    private void rebuild(long rebuildIntervalMillis) throws WalkerException {
+        Set<String> changesDuringWalk = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        rebuildChanges = changesDuringWalk;
+        final Map<ArtifactFilter, FilteredDigests> builtViews = new HashMap<>();
+        builtViews.put(ArtifactFilter.ACCEPT_ALL, new FilteredDigests());
+        Set<ArtifactFilter> builtFilters = new HashSet<>(pendingFilters);
+        synchronized (this) {
+            if (views != null) {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<ArtifactFilter, FilteredDigests> view : views.entrySet()) {
+                    if (now - view.getValue().requestedMillis < rebuildIntervalMillis) {
+                        builtFilters.add(view.getKey());
+                    }
+                }
+            }
+        }
+        for (ArtifactFilter filter : builtFilters) {
+            builtViews.put(filter, new FilteredDigests());
+        }
+        try {
+            walk(ROOT_PATH, new FileVisitor() {
+                @Override
+                public void visit(String directory, String path, String sha1) {
+                    byte[] digest = fileDigest(path, sha1);
+                    int bucket = getBucket(directory);
+                    ArtifactMetaInfo metaInfo = builtViews.size() > 1 ? toMetaInfo(path) : null;
+                    for (Map.Entry<ArtifactFilter, FilteredDigests> view : builtViews.entrySet()) {
+                        if (accepts(view.getKey(), metaInfo)) {
+                            view.getValue().addFile(bucket, directory, digest);
+                        }
+                    }
+                }
+            });
+        } catch (WalkerException | RuntimeException e) {
+            rebuildChanges = null;
+            throw e;
+        }
+        long builtAt = System.currentTimeMillis();
+        for (FilteredDigests view : builtViews.values()) {
+            view.requestedMillis = builtAt;
+        }
+        synchronized (this) {
+            views = builtViews;
+            pendingFilters.removeAll(builtFilters);
+            builtMillis = builtAt;
+            rebuildChanges = null;
+            changedDirectories.addAll(changesDuringWalk);
+            applyChanges();
+        }
+    }
+
+    private void markChanged(String directory) {
+        changedDirectories.add(directory);
+        Set<String> changesDuringWalk = rebuildChanges;
+        if (changesDuringWalk != null) {
+            changesDuringWalk.add(directory);
+        }
+    }
+
+    /**
+     * @return true if the filter accepts the artifact of the file, other files are listed only unfiltered
+     */
+    private boolean accepts(ArtifactFilter filter, String path) {
+        return filter == ArtifactFilter.ACCEPT_ALL || accepts(filter, toMetaInfo(path));
+    }
+
+    /**
+     * @param metaInfo Artifact of the file, null if the file is not an artifact
+     */
+    private static boolean accepts(ArtifactFilter filter, ArtifactMetaInfo metaInfo) {
+        return filter == ArtifactFilter.ACCEPT_ALL || (metaInfo != null && filter.accepts(metaInfo));
+    }
+
+    /**
+     * @return Artifact of the file or null if the file is not an artifact
+     */
+    private ArtifactMetaInfo toMetaInfo(String path) {
+        Gav gav = repository.getGavCalculator().pathToGav(path);
+        if (gav == null) {
+            return null;
+        }
+        ArtifactMetaInfo metaInfo = new ArtifactMetaInfo(null, gav.getGroupId(), gav.getArtifactId(), gav.getVersion(),
+                repository.getId());
+        metaInfo.setClassifier(gav.getClassifier());
+        metaInfo.setExtension(gav.getExtension());
+        return metaInfo;
+    }
+
+    /**
+     * Walks the changed artifact directories again and updates their digests of every filter
+     */
+    private synchronized void applyChanges() throws WalkerException {
+        Iterator<String> iterator = changedDirectories.iterator();
+        while (iterator.hasNext()) {
+            String directory = iterator.next();
+            iterator.remove();
+            Map<String, String> files = listFiles(directory);
+            int bucket = getBucket(directory);
+            for (Map.Entry<ArtifactFilter, FilteredDigests> view : views.entrySet()) {
+                byte[] digest = null;
+                for (Map.Entry<String, String> file : files.entrySet()) {
+                    if (accepts(view.getKey(), file.getKey())) {
+                        if (digest == null) {
+                            digest = new byte[DIGEST_LENGTH];
+                        }
+                        xor(digest, fileDigest(file.getKey(), file.getValue()));
+                    }
+                }
+                view.getValue().setDirectory(bucket, directory, digest);
+            }
+        }
+    }
+
+    /**
+     * @return Sha1 checksums of the files of the artifact directory by path
+     */
+    private Map<String, String> listFiles(final String artifactDirectory) throws WalkerException {
+        final Map<String, String> files = new TreeMap<>();
+        walk(artifactDirectory, new FileVisitor() {
+            @Override
+            public void visit(String directory, String path, String sha1) {
+                // Directory of another artifact may be nested, e.g. groupId com.example.app under com.example:app
+                if (directory.equals(artifactDirectory)) {
+                    files.put(path, sha1);
+                }
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Hash of the inner node is sha1 of its children hashes, hash of the bucket is its digest
+     */
+    private static byte[] hash(FilteredDigests view, String node) {
+        if (node.length() == BUCKET_DEPTH) {
+            return view.bucketDigests[Integer.parseInt(node, 16)];
+        }
+        MessageDigest digest = sha1();
+        for (int i = 0; i < FAN_OUT; i++) {
+            digest.update(hash(view, node + Character.forDigit(i, 16)));
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Visits files of the local storage under the path, the remote storage of the proxy is not touched
+     */
+    private void walk(String path, final FileVisitor visitor) throws WalkerException {
+        DefaultWalkerContext context = new DefaultWalkerContext(repository, new ResourceStoreRequest(path, true, false));
+        context.getProcessors().add(new AbstractFileWalkerProcessor() {
+            @Override
+            protected void processFileItem(WalkerContext context, StorageFileItem item) {
+                String directory = getArtifactDirectory(item.getPath());
+                String sha1 = item.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY);
+                if (directory != null && sha1 != null) {
+                    visitor.visit(directory, item.getPath(), sha1);
+                }
+            }
+        });
+        try {
+            walker.walk(context);
+        } catch (WalkerException e) {
+            if (!(context.getStopCause() instanceof ItemNotFoundException)) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return groupId/artifactId directory of the artifact file or null if the file is not part of the tree
+     */
+    private String getArtifactDirectory(String path) {
+        if (path.startsWith("/.") || path.endsWith(METADATA_FILE)) {
+            return null;
+        }
+        Gav gav = repository.getGavCalculator().pathToGav(path);
+        if (gav == null || gav.isHash() || gav.isSignature()) {
+            return null;
+        }
+        return ROOT_PATH + gav.getGroupId().replace('.', '/') + "/" + gav.getArtifactId();
+    }
+
+    private static int getBucket(String directory) {
+        byte[] digest = sha1().digest(directory.getBytes(StandardCharsets.UTF_8));
+        return ((digest[0] & 0xFF) << 4) | ((digest[1] & 0xFF) >>> 4);
+    }
+
+    private static byte[] fileDigest(String path, String sha1) {
+        MessageDigest digest = sha1();
+        digest.update(path.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return digest.digest(sha1.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void xor(byte[] target, byte[] value) {
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            target[i] ^= value[i];
+        }
+    }
+
+    private static boolean isHex(String node) {
+        if (node.length() > BUCKET_DEPTH) {
+            return false;
+        }
+        for (int i = 0; i < node.length(); i++) {
+            char c = node.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface FileVisitor {
+        void visit(String directory, String path, String sha1);
+    }
+
+    /**
+     * Digests of the files accepted by a single filter
+     */
+    private static class FilteredDigests {
+        /**
+         * Digests of the artifact directories by bucket
+         */
+        private final List<Map<String, byte[]>> directories = new ArrayList<>(BUCKETS);
+        /**
+         * XOR of the directory digests by bucket
+         */
+        private final byte[][] bucketDigests = new byte[BUCKETS][DIGEST_LENGTH];
+        /**
+         * Time the digests were last requested
+         */
+        private volatile long requestedMillis;
+
+        private FilteredDigests() {
+            for (int i = 0; i < BUCKETS; i++) {
+                directories.add(new HashMap<String, byte[]>());
+            }
+        }
+
+        private void addFile(int bucket, String directory, byte[] fileDigest) {
+            byte[] digest = directories.get(bucket).get(directory);
+            if (digest == null) {
+                digest = new byte[DIGEST_LENGTH];
+                directories.get(bucket).put(directory, digest);
+            }
+            xor(digest, fileDigest);
+            xor(bucketDigests[bucket], fileDigest);
+        }
+
+        /**
+         * @param digest Digest of the directory, null if it has no accepted files
+         */
+        private void setDirectory(int bucket, String directory, byte[] digest) {
+            byte[] previous = digest != null ? directories.get(bucket).put(directory, digest)
+                    : directories.get(bucket).remove(directory);
+            if (previous != null) {
+                xor(bucketDigests[bucket], previous);
+            }
+            if (digest != null) {
+                xor(bucketDigests[bucket], digest);
+            }
+        }
+    }
+}
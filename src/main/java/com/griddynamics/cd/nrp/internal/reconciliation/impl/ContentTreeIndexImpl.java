@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.reconciliation.impl;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeEntry;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeNode;
+import com.griddynamics.cd.nrp.internal.reconciliation.ContentTreeIndex;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ConfigurationsManagerImpl;
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.events.RepositoryItemEvent;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventCache;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventDelete;
+import org.sonatype.nexus.proxy.events.RepositoryItemEventStore;
+import org.sonatype.nexus.proxy.events.RepositoryRegistryEventRemove;
+import org.sonatype.nexus.proxy.item.StorageCollectionItem;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
+import org.sonatype.nexus.proxy.maven.MavenHostedRepository;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+import org.sonatype.nexus.proxy.maven.MavenRepository;
+import org.sonatype.nexus.proxy.registry.RepositoryRegistry;
+import org.sonatype.nexus.proxy.repository.Repository;
+import org.sonatype.nexus.proxy.walker.Walker;
+import org.sonatype.nexus.proxy.walker.WalkerException;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link ContentTree} of every hosted and proxy Maven repository that was refreshed or requested at least once,
+ * so repositories nobody reconciles with are never walked. Trees are updated from the repository item events,
+ * trees of removed repositories are dropped.
+ */
+@Singleton
+@Named(ContentTreeIndexImpl.ID)
+public class ContentTreeIndexImpl extends ComponentSupport implements ContentTreeIndex {
+
+    public static final String ID = "contentTreeIndex";
+
+    private final RepositoryRegistry repositoryRegistry;
+    private final Walker walker;
+    private final ConfigurationsManager configurationsManager;
+
+    /**
+     * Content trees by repository ID
+     */
+    private final ConcurrentMap<String, ContentTree> trees = new ConcurrentHashMap<>();
+
+    @Inject
+    public ContentTreeIndexImpl(RepositoryRegistry repositoryRegistry, Walker walker,
+                                @Named(ConfigurationsManagerImpl.ID) ConfigurationsManager configurationsManager) {
+        this.repositoryRegistry = repositoryRegistry;
+        this.walker = walker;
+        this.configurationsManager = configurationsManager;
+    }
+
+    @Override
+    public void refresh(String repositoryId) throws NoSuchRepositoryException {
+        ContentTree tree = getTree(repositoryId);
+        boolean built = tree.isBuilt();
+        long started = System.currentTimeMillis();
+        try {
+            tree.refresh(TimeUnit.HOURS.toMillis(configurationsManager.getConfiguration().getContentTreeRebuildHours()));
+        } catch (WalkerException e) {
+            throw new IllegalStateException("Can not walk repository " + repositoryId, e);
+        }
+        if (!built) {
+            log.info("Content tree of " + repositoryId + " is built in " + (System.currentTimeMillis() - started) + " ms");
+        }
+    }
+
+    @Override
+    public void refreshTrees() {
+        for (String repositoryId : trees.keySet()) {
+            try {
+                refresh(repositoryId);
+            } catch (Exception e) {
+                log.warn("Can not refresh content tree of " + repositoryId, e);
+            }
+        }
+    }
+
+    @Override
+    public ContentTreeNode getNode(String repositoryId, String node, ArtifactFilter filter)
+            throws NoSuchRepositoryException {
+        List<ContentTreeEntry> entries;
+        try {
+            entries = getTree(repositoryId).getEntries(node, filter);
+        } catch (WalkerException e) {
+            throw new IllegalStateException("Can not walk " + node + " in " + repositoryId, e);
+        }
+        if (entries == null) {
+            return null;
+        }
+        ContentTreeNode treeNode = new ContentTreeNode(repositoryId, node);
+        treeNode.setEntries(entries);
+        return treeNode;
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onItemStored(RepositoryItemEventStore event) {
+        itemChanged(event);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onItemCached(RepositoryItemEventCache event) {
+        itemChanged(event);
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onItemDeleted(RepositoryItemEventDelete event) {
+        ContentTree tree = trees.get(event.getRepository().getId());
+        if (tree != null && event.getItem() instanceof StorageCollectionItem) {
+            tree.collectionDeleted(event.getItem().getPath());
+        } else {
+            itemChanged(event);
+        }
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onRepositoryRemoved(RepositoryRegistryEventRemove event) {
+        trees.remove(event.getRepository().getId());
+    }
+
+    private void itemChanged(RepositoryItemEvent event) {
+        ContentTree tree = trees.get(event.getRepository().getId());
+        if (tree != null && event.getItem() instanceof StorageFileItem) {
+            tree.fileChanged(event.getItem().getPath());
+        }
+    }
+
+    private ContentTree getTree(String repositoryId) throws NoSuchRepositoryException {
+        ContentTree tree = trees.get(repositoryId);
+        if (tree != null) {
+            return tree;
+        }
+        Repository repository = repositoryRegistry.getRepository(repositoryId);
+        if (!(repository instanceof MavenHostedRepository) && !(repository instanceof MavenProxyRepository)) {
+            throw new NoSuchRepositoryException(repositoryId);
+        }
+        ContentTree newTree = new ContentTree((MavenRepository) repository, walker);
+        tree = trees.putIfAbsent(repositoryId, newTree);
+        return tree == null ? newTree : tree;
+    }
+}
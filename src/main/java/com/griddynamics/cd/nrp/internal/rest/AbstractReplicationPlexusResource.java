@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.rest;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfoBatch;
+import com.griddynamics.cd.nrp.internal.model.api.BatchRestResponse;
+import com.griddynamics.cd.nrp.internal.model.api.FetchStatus;
+import com.griddynamics.cd.nrp.internal.model.api.RestResponse;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetch;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetchScheduler;
+import com.griddynamics.cd.nrp.internal.receiving.ProxyRepositoryIndex;
+import com.thoughtworks.xstream.XStream;
+import org.restlet.data.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.nexus.proxy.maven.ArtifactStoreRequest;
+import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
+import org.sonatype.nexus.rest.artifact.AbstractArtifactPlexusResource;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Base class of the REST resources forcing proxy repositories to update replicated artifacts
+ */
+public abstract class AbstractReplicationPlexusResource extends AbstractArtifactPlexusResource {
+
+    private static final String METADATA_FILE = "/maven-metadata.xml";
+
+    private Logger log = LoggerFactory.getLogger(AbstractReplicationPlexusResource.class);
+
+    /**
+     * Provides proxy repositories of the master nexus repositories
+     */
+    private final ProxyRepositoryIndex proxyRepositoryIndex;
+
+    /**
+     * Runs artifact retrievals in background
+     */
+    private final ArtifactFetchScheduler artifactFetchScheduler;
+
+    protected AbstractReplicationPlexusResource(ProxyRepositoryIndex proxyRepositoryIndex,
+                                                ArtifactFetchScheduler artifactFetchScheduler) {
+        this.proxyRepositoryIndex = proxyRepositoryIndex;
+        this.artifactFetchScheduler = artifactFetchScheduler;
+        // Allows POST requests
+        setModifiable(true);
+    }
+
+    /**
+     * A permission prefix to be applied when securing the resource.
+     */
+    @Override
+    public PathProtectionDescriptor getResourceProtection() {
+        return new PathProtectionDescriptor(getResourceUri(), "authcBasic,perms[nexus:artifact]");
+    }
+
+    /**
+     * A Resource may add some configuration stuff to the XStream, and control the serialization of the payloads it
+     * uses.
+     */
+    @Override
+    public void configureXStream(XStream xstream) {
+        xstream.processAnnotations(ArtifactMetaInfo.class);
+        xstream.processAnnotations(ArtifactFile.class);
+        xstream.processAnnotations(ArtifactMetaInfoBatch.class);
+        xstream.processAnnotations(RestResponse.class);
+        xstream.processAnnotations(BatchRestResponse.class);
+        xstream.processAnnotations(FetchStatus.class);
+    }
+
+    /**
+     * Schedules update of passed artifact set in the proxy repositories of the passed repository.
+     * Files of the set are retrieved in background by one scheduled operation, response contains tracking ID
+     * of the retrieval.
+     * @param request Incoming request
+     * @param metaInfo Information about artifact that was deployed to the master nexus
+     * @return Result of the scheduling
+     */
+    protected RestResponse resolveArtifact(Request request, ArtifactMetaInfo metaInfo) {
+        if (!metaInfo.isValid()) {
+            return new RestResponse(false,
+                    "At least following request parameters have to be given: nexusUrl, groupId, artifactId, version, repositoryId!");
+        }
+        List<String> metadataPaths = getMetadataPaths(metaInfo);
+        List<ArtifactFile> contents = new ArrayList<>();
+        contents.add(new ArtifactFile(metaInfo.getClassifier(), metaInfo.getExtension(), metaInfo.getSha1(), metaInfo.getSize()));
+        if (metaInfo.getFiles() != null) {
+            contents.addAll(metaInfo.getFiles());
+        }
+        List<ArtifactFetch> fetches = new ArrayList<>();
+        for (MavenProxyRepository mavenProxyRepository : proxyRepositoryIndex.findProxies(metaInfo.getNexusUrl(), metaInfo.getRepositoryId())) {
+            log.trace(String.format("Processing repository: %s. Remote url: %s", mavenProxyRepository.getId(), mavenProxyRepository.getRemoteUrl()));
+            List<ArtifactStoreRequest> gavRequests = new ArrayList<>();
+            gavRequests.add(getResourceStoreRequest(request, false, false,
+                    mavenProxyRepository.getId(), metaInfo.getGroupId(), metaInfo.getArtifactId(),
+                    metaInfo.getVersion(), metaInfo.getPackaging(), metaInfo.getClassifier(), metaInfo.getExtension()));
+            if (metaInfo.getFiles() != null) {
+                for (ArtifactFile file : metaInfo.getFiles()) {
+                    gavRequests.add(getResourceStoreRequest(request, false, false,
+                            mavenProxyRepository.getId(), metaInfo.getGroupId(), metaInfo.getArtifactId(),
+                            metaInfo.getVersion(), null, file.getClassifier(), file.getExtension()));
+                }
+            }
+            fetches.add(new ArtifactFetch(mavenProxyRepository, gavRequests, contents, metadataPaths));
+        }
+        if (fetches.isEmpty()) {
+            return new RestResponse(false, "No proxies for this artifact.");
+        }
+        RestResponse response = new RestResponse(true, "Artifact fetch is scheduled.");
+        response.setTrackingId(artifactFetchScheduler.schedule(metaInfo, fetches));
+        return response;
+    }
+
+    /**
+     * Returns paths of maven-metadata.xml updated by the deployment: metadata of the artifact
+     * and metadata of the SNAPSHOT version
+     */
+    private List<String> getMetadataPaths(ArtifactMetaInfo metaInfo) {
+        if (!metaInfo.isMetadataUpdated()) {
+            return Collections.emptyList();
+        }
+        String artifactPath = "/" + metaInfo.getGroupId().replace('.', '/') + "/" + metaInfo.getArtifactId();
+        List<String> paths = new ArrayList<>(2);
+        paths.add(artifactPath + METADATA_FILE);
+        if (metaInfo.isSnapshot()) {
+            paths.add(artifactPath + "/" + metaInfo.getBaseVersion() + METADATA_FILE);
+        }
+        return paths;
+    }
+}
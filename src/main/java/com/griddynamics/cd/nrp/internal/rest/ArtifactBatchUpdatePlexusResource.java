@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.rest;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfoBatch;
+import com.griddynamics.cd.nrp.internal.model.api.BatchRestResponse;
+import com.griddynamics.cd.nrp.internal.model.api.RestResponse;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetchScheduler;
+import com.griddynamics.cd.nrp.internal.receiving.ProxyRepositoryIndex;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ArtifactFetchSchedulerImpl;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ProxyRepositoryIndexImpl;
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * REST resource force repository update several artifacts sent in one request
+ */
+@Path(ArtifactBatchUpdatePlexusResource.REQUEST_URI)
+@Produces({MediaType.APPLICATION_XML})
+@Consumes({MediaType.APPLICATION_XML})
+@Component(role = PlexusResource.class, hint = ArtifactBatchUpdatePlexusResource.ID)
+public class ArtifactBatchUpdatePlexusResource extends AbstractReplicationPlexusResource {
+    public static final String ID = "artifactBatchUpdatePlexusResource";
+    public static final String REQUEST_URI = "/artifact/maven/batch-update";
+
+    @Inject
+    public ArtifactBatchUpdatePlexusResource(@Named(ProxyRepositoryIndexImpl.ID) ProxyRepositoryIndex proxyRepositoryIndex,
+            @Named(ArtifactFetchSchedulerImpl.ID) ArtifactFetchScheduler artifactFetchScheduler) {
+        super(proxyRepositoryIndex, artifactFetchScheduler);
+    }
+
+    /**
+     * The location to attach this resource to.
+     */
+    @Override
+    public String getResourceUri() {
+        return REQUEST_URI;
+    }
+
+    /**
+     * A factory method to create an instance of DTO (POST request body).
+     */
+    @Override
+    public Object getPayloadInstance() {
+        return new ArtifactMetaInfoBatch();
+    }
+
+    /**
+     * Schedules update of passed artifacts in the proxy repositories. Every artifact is processed separately,
+     * response contains result of every artifact in the order of the request.
+     * Responds with 202 Accepted if at least one update is scheduled.
+     */
+    @POST
+    @Override
+    @ResourceMethodSignature(input = ArtifactMetaInfoBatch.class, output = BatchRestResponse.class)
+    public Object post(Context context, Request request, Response response, Object payload) throws ResourceException {
+        ArtifactMetaInfoBatch batch = (ArtifactMetaInfoBatch) payload;
+        BatchRestResponse batchResponse = new BatchRestResponse();
+        for (ArtifactMetaInfo metaInfo : batch.getArtifactMetaInfos()) {
+            RestResponse restResponse = resolveArtifact(request, metaInfo);
+            if (restResponse.getTrackingId() != null) {
+                response.setStatus(Status.SUCCESS_ACCEPTED);
+            }
+            batchResponse.addResult(restResponse);
+        }
+        return batchResponse;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.rest;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.BatchRestResponse;
+import com.griddynamics.cd.nrp.internal.model.api.RestResponse;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetchScheduler;
+import com.griddynamics.cd.nrp.internal.receiving.ProxyRepositoryIndex;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ArtifactFetchSchedulerImpl;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ProxyRepositoryIndexImpl;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoBatchCodec;
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.Representation;
+import org.restlet.resource.ResourceException;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * REST resource force repository update several artifacts sent in one request encoded
+ * by {@link ArtifactMetaInfoBatchCodec}. Binary batch is parsed without XStream, results are returned the same way
+ * as by {@link ArtifactBatchUpdatePlexusResource}.
+ */
+@Path(ArtifactBinaryBatchUpdatePlexusResource.REQUEST_URI)
+@Produces({MediaType.APPLICATION_XML})
+@Consumes({ArtifactMetaInfoBatchCodec.MEDIA_TYPE})
+@Component(role = PlexusResource.class, hint = ArtifactBinaryBatchUpdatePlexusResource.ID)
+public class ArtifactBinaryBatchUpdatePlexusResource extends AbstractReplicationPlexusResource {
+    public static final String ID = "artifactBinaryBatchUpdatePlexusResource";
+    public static final String REQUEST_URI = "/artifact/maven/binary-batch-update";
+
+    @Inject
+    public ArtifactBinaryBatchUpdatePlexusResource(@Named(ProxyRepositoryIndexImpl.ID) ProxyRepositoryIndex proxyRepositoryIndex,
+            @Named(ArtifactFetchSchedulerImpl.ID) ArtifactFetchScheduler artifactFetchScheduler) {
+        super(proxyRepositoryIndex, artifactFetchScheduler);
+    }
+
+    /**
+     * The location to attach this resource to.
+     */
+    @Override
+    public String getResourceUri() {
+        return REQUEST_URI;
+    }
+
+    /**
+     * Request body is not parsed by XStream, it is decoded from the request entity.
+     */
+    @Override
+    public Object getPayloadInstance() {
+        return null;
+    }
+
+    /**
+     * Schedules update of passed artifacts in the proxy repositories. Responds with 415 Unsupported Media Type
+     * if the request is not encoded by {@link ArtifactMetaInfoBatchCodec}, so the sender falls back to XML.
+     */
+    @POST
+    @Override
+    @ResourceMethodSignature(output = BatchRestResponse.class)
+    public Object post(Context context, Request request, Response response, Object payload) throws ResourceException {
+        List<ArtifactMetaInfo> metaInfos = decode(request.getEntity());
+        BatchRestResponse batchResponse = new BatchRestResponse();
+        for (ArtifactMetaInfo metaInfo : metaInfos) {
+            RestResponse restResponse = resolveArtifact(request, metaInfo);
+            if (restResponse.getTrackingId() != null) {
+                response.setStatus(Status.SUCCESS_ACCEPTED);
+            }
+            batchResponse.addResult(restResponse);
+        }
+        return batchResponse;
+    }
+
+    private List<ArtifactMetaInfo> decode(Representation entity) throws ResourceException {
+        if (entity == null || entity.getMediaType() == null
+                || !ArtifactMetaInfoBatchCodec.MEDIA_TYPE.equals(entity.getMediaType().getName())) {
+            throw new ResourceException(Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE,
+                    "Expected " + ArtifactMetaInfoBatchCodec.MEDIA_TYPE);
+        }
+        try (InputStream in = new BufferedInputStream(entity.getStream())) {
+            return ArtifactMetaInfoBatchCodec.decode(in);
+        } catch (IOException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+                    "Can not decode replication requests: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.rest;
+
+import com.griddynamics.cd.nrp.internal.model.api.FetchStatus;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetchScheduler;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ArtifactFetchSchedulerImpl;
+import com.thoughtworks.xstream.XStream;
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * REST resource returns state of the artifact fetch scheduled by the replication request
+ */
+@Path(ArtifactFetchStatusPlexusResource.REQUEST_URI)
+@Produces({MediaType.APPLICATION_XML})
+@Component(role = PlexusResource.class, hint = ArtifactFetchStatusPlexusResource.ID)
+public class ArtifactFetchStatusPlexusResource extends AbstractNexusPlexusResource {
+    public static final String ID = "artifactFetchStatusPlexusResource";
+    public static final String TRACKING_ID_KEY = "trackingId";
+    public static final String REQUEST_URI = "/artifact/maven/fetch-status/{" + TRACKING_ID_KEY + "}";
+
+    private final ArtifactFetchScheduler artifactFetchScheduler;
+
+    @Inject
+    public ArtifactFetchStatusPlexusResource(@Named(ArtifactFetchSchedulerImpl.ID) ArtifactFetchScheduler artifactFetchScheduler) {
+        this.artifactFetchScheduler = artifactFetchScheduler;
+    }
+
+    /**
+     * The location to attach this resource to.
+     */
+    @Override
+    public String getResourceUri() {
+        return REQUEST_URI;
+    }
+
+    /**
+     * A permission prefix to be applied when securing the resource.
+     */
+    @Override
+    public PathProtectionDescriptor getResourceProtection() {
+        return new PathProtectionDescriptor("/artifact/maven/fetch-status/*", "authcBasic,perms[nexus:artifact]");
+    }
+
+    /**
+     * Resource does not accept request body.
+     */
+    @Override
+    public Object getPayloadInstance() {
+        return null;
+    }
+
+    @Override
+    public void configureXStream(XStream xstream) {
+        xstream.processAnnotations(FetchStatus.class);
+    }
+
+    /**
+     * Returns state of the artifact fetch by tracking ID
+     */
+    @GET
+    @Override
+    @ResourceMethodSignature(pathParams = {@PathParam(TRACKING_ID_KEY)}, output = FetchStatus.class)
+    public Object get(Context context, Request request, Response response, Variant variant) throws ResourceException {
+        String trackingId = (String) request.getAttributes().get(TRACKING_ID_KEY);
+        FetchStatus status = artifactFetchScheduler.getStatus(trackingId);
+        if (status == null) {
+            throw new ResourceException(Status.CLIENT_ERROR_NOT_FOUND, "Unknown or expired tracking ID: " + trackingId);
+        }
+        return status;
+    }
+}
@@ -17,7 +17,10 @@ package com.griddynamics.cd.nrp.internal.rest;
 
 import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
 import com.griddynamics.cd.nrp.internal.model.api.RestResponse;
-import com.thoughtworks.xstream.XStream;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetchScheduler;
+import com.griddynamics.cd.nrp.internal.receiving.ProxyRepositoryIndex;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ArtifactFetchSchedulerImpl;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ProxyRepositoryIndexImpl;
 import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
 import org.codehaus.plexus.component.annotations.Component;
 import org.restlet.Context;
@@ -25,21 +28,10 @@ import org.restlet.data.Request;
 import org.restlet.data.Response;
 import org.restlet.data.Status;
 import org.restlet.resource.ResourceException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.sonatype.nexus.proxy.AccessDeniedException;
-import org.sonatype.nexus.proxy.IllegalOperationException;
-import org.sonatype.nexus.proxy.ItemNotFoundException;
-import org.sonatype.nexus.proxy.StorageException;
-import org.sonatype.nexus.proxy.maven.ArtifactStoreHelper;
-import org.sonatype.nexus.proxy.maven.ArtifactStoreRequest;
-import org.sonatype.nexus.proxy.maven.MavenProxyRepository;
-import org.sonatype.nexus.proxy.repository.Repository;
-import org.sonatype.nexus.rest.artifact.AbstractArtifactPlexusResource;
-import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
 import org.sonatype.plexus.rest.resource.PlexusResource;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -53,16 +45,14 @@ import javax.ws.rs.core.MediaType;
 @Produces({MediaType.APPLICATION_XML})
 @Consumes({MediaType.APPLICATION_XML})
 @Component(role = PlexusResource.class, hint = ArtifactUpdatePlexusResource.ID)
-public class ArtifactUpdatePlexusResource extends AbstractArtifactPlexusResource {
+public class ArtifactUpdatePlexusResource extends AbstractReplicationPlexusResource {
     public static final String ID = "artifactUpdatePlexusResource";
     public static final String REQUEST_URI = "/artifact/maven/update";
 
-    private Logger log = LoggerFactory.getLogger(ArtifactUpdatePlexusResource.class);
-
     @Inject
-    public ArtifactUpdatePlexusResource() {
-        // Allows POST requests
-        setModifiable(true);
+    public ArtifactUpdatePlexusResource(@Named(ProxyRepositoryIndexImpl.ID) ProxyRepositoryIndex proxyRepositoryIndex,
+            @Named(ArtifactFetchSchedulerImpl.ID) ArtifactFetchScheduler artifactFetchScheduler) {
+        super(proxyRepositoryIndex, artifactFetchScheduler);
     }
 
     /**
@@ -73,14 +63,6 @@ public class ArtifactUpdatePlexusResource extends AbstractArtifactPlexusResource
         return REQUEST_URI;
     }
 
-    /**
-     * A permission prefix to be applied when securing the resource.
-     */
-    @Override
-    public PathProtectionDescriptor getResourceProtection() {
-        return new PathProtectionDescriptor(getResourceUri(), "authcBasic,perms[nexus:artifact]");
-    }
-
     /**
      * A factory method to create an instance of DTO (POST request body).
      */
@@ -90,17 +72,8 @@ public class ArtifactUpdatePlexusResource extends AbstractArtifactPlexusResource
     }
 
     /**
-     * A Resource may add some configuration stuff to the XStream, and control the serialization of the payloads it
-     * uses.
-     */
-    @Override
-    public void configureXStream(XStream xstream) {
-        xstream.processAnnotations(ArtifactMetaInfo.class);
-        xstream.processAnnotations(RestResponse.class);
-    }
-
-    /**
-     * Update content of passed artifact in the proxy repositories of the passed repository
+     * Schedules update of passed artifact in the proxy repositories of the passed repository.
+     * Responds with 202 Accepted if the update is scheduled.
      */
     @POST
     @Override
@@ -111,46 +84,10 @@ public class ArtifactUpdatePlexusResource extends AbstractArtifactPlexusResource
             throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
                     "At least following request parameters have to be given: nexusUrl, groupId, artifactId, version, repositoryId!");
         }
-        boolean artifactResolved = false;
-        for (Repository repository : getRepositoryRegistry().getRepositories()) {
-            if (repository instanceof MavenProxyRepository) {
-                MavenProxyRepository mavenProxyRepository = (MavenProxyRepository) repository;
-                log.trace(String.format("Processing repository: %s. Remote url: %s", mavenProxyRepository.getId(), mavenProxyRepository.getRemoteUrl()));
-                if (matchRepository(mavenProxyRepository, metaInfo)) {
-                    ArtifactStoreRequest gavRequest = getResourceStoreRequest(request, false, false,
-                            mavenProxyRepository.getId(), metaInfo.getGroupId(), metaInfo.getArtifactId(),
-                            metaInfo.getVersion(), metaInfo.getPackaging(), metaInfo.getClassifier(), metaInfo.getExtension());
-                    try {
-                        ArtifactStoreHelper helper = mavenProxyRepository.getArtifactStoreHelper();
-                        helper.retrieveArtifact(gavRequest);
-                        artifactResolved = true;
-                    } catch (ItemNotFoundException | IllegalOperationException | StorageException | AccessDeniedException e) {
-                        log.error("Can not resolve artifact", e);
-                        return new RestResponse(false, "Can not resolve artifact. " + e.getMessage());
-                    }
-                }
-            }
-        }
-        if (artifactResolved) {
-            return new RestResponse(true, "Artifact is resolved.");
-        } else {
-            return new RestResponse(false, "No proxies for this artifact.");
-        }
-    }
-
-    /**
-     * Checks if proxy repository should resolve remote artifact
-     * @param mavenProxyRepository Proxy repository
-     * @param metaInfo Information about artifact that was deployed to the master nexus
-     * @return true if repository should resolve artifact
-     */
-    private boolean matchRepository(MavenProxyRepository mavenProxyRepository, ArtifactMetaInfo metaInfo) {
-        if (mavenProxyRepository.getRemoteUrl() == null) {
-            return false;
+        RestResponse restResponse = resolveArtifact(request, metaInfo);
+        if (restResponse.getTrackingId() != null) {
+            response.setStatus(Status.SUCCESS_ACCEPTED);
         }
-        boolean matchRepositoryName = mavenProxyRepository.getRemoteUrl().endsWith("/" + metaInfo.getRepositoryId() + "/") ||
-                mavenProxyRepository.getRemoteUrl().endsWith("/" + metaInfo.getRepositoryId());
-        boolean matchRemoteNexusUrl = mavenProxyRepository.getRemoteUrl().startsWith(metaInfo.getNexusUrl());
-        return  matchRepositoryName && matchRemoteNexusUrl;
+        return restResponse;
     }
 }
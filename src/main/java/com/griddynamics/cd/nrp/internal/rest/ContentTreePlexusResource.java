@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.rest;
+
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeEntry;
+import com.griddynamics.cd.nrp.internal.model.api.ContentTreeNode;
+import com.griddynamics.cd.nrp.internal.reconciliation.ContentTreeIndex;
+import com.griddynamics.cd.nrp.internal.reconciliation.impl.ContentTreeIndexImpl;
+import com.griddynamics.cd.nrp.internal.uploading.ArtifactUpdateApiClient;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ArtifactUpdateApiClientImpl;
+import com.thoughtworks.xstream.XStream;
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.proxy.NoSuchRepositoryException;
+import org.sonatype.nexus.proxy.access.NexusItemAuthorizer;
+import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * REST resource returns node of the repository content hash tree, see {@link ContentTreeNode}.
+ * Peers compare their proxy repositories with it and request only the nodes that differ. Peer passes its URL,
+ * so the hashes and artifact directories cover only the files replicated to it, and must be allowed to view
+ * the repository.
+ */
+@Path(ContentTreePlexusResource.REQUEST_URI)
+@Produces({MediaType.APPLICATION_XML})
+@Component(role = PlexusResource.class, hint = ContentTreePlexusResource.ID)
+public class ContentTreePlexusResource extends AbstractNexusPlexusResource {
+    public static final String ID = "contentTreePlexusResource";
+    public static final String REPOSITORY_ID_KEY = "repositoryId";
+    public static final String NODE_PARAMETER = "node";
+    public static final String PEER_PARAMETER = "peer";
+    public static final String REQUEST_URI = "/artifact/maven/content-tree/{" + REPOSITORY_ID_KEY + "}";
+
+    private final ContentTreeIndex contentTreeIndex;
+    private final ArtifactUpdateApiClient artifactUpdateApiClient;
+    private final NexusItemAuthorizer nexusItemAuthorizer;
+
+    @Inject
+    public ContentTreePlexusResource(@Named(ContentTreeIndexImpl.ID) ContentTreeIndex contentTreeIndex,
+                                     @Named(ArtifactUpdateApiClientImpl.ID) ArtifactUpdateApiClient artifactUpdateApiClient,
+                                     NexusItemAuthorizer nexusItemAuthorizer) {
+        this.contentTreeIndex = contentTreeIndex;
+        this.artifactUpdateApiClient = artifactUpdateApiClient;
+        this.nexusItemAuthorizer = nexusItemAuthorizer;
+    }
+
+    /**
+     * The location to attach this resource to.
+     */
+    @Override
+    public String getResourceUri() {
+        return REQUEST_URI;
+    }
+
+    /**
+     * A permission prefix to be applied when securing the resource.
+     */
+    @Override
+    public PathProtectionDescriptor getResourceProtection() {
+        return new PathProtectionDescriptor("/artifact/maven/content-tree/*", "authcBasic,perms[nexus:artifact]");
+    }
+
+    /**
+     * Resource does not accept request body.
+     */
+    @Override
+    public Object getPayloadInstance() {
+        return null;
+    }
+
+    @Override
+    public void configureXStream(XStream xstream) {
+        xstream.processAnnotations(ContentTreeNode.class);
+        xstream.processAnnotations(ContentTreeEntry.class);
+    }
+
+    /**
+     * Returns node of the content hash tree of the hosted repository. Responds with 503 Service Unavailable
+     * if the tree is not built yet or has no hashes for the filter of the peer, they are computed by the next
+     * reconciliation run. Hashes and files of the artifact directory are filtered by the filter of the peer,
+     * unknown peers get all files.
+     */
+    @GET
+    @Override
+    @ResourceMethodSignature(pathParams = {@PathParam(REPOSITORY_ID_KEY)},
+            queryParams = {@QueryParam(NODE_PARAMETER), @QueryParam(PEER_PARAMETER)}, output = ContentTreeNode.class)
+    public Object get(Context context, Request request, Response response, Variant variant) throws ResourceException {
+        String repositoryId = (String) request.getAttributes().get(REPOSITORY_ID_KEY);
+        if (!nexusItemAuthorizer.isViewable(NexusItemAuthorizer.VIEW_REPOSITORY_KEY, repositoryId)) {
+            throw new ResourceException(Status.CLIENT_ERROR_FORBIDDEN,
+                    "Not allowed to view repository " + repositoryId);
+        }
+        String node = request.getResourceRef().getQueryAsForm().getFirstValue(NODE_PARAMETER);
+        String peer = request.getResourceRef().getQueryAsForm().getFirstValue(PEER_PARAMETER);
+        ArtifactFilter filter = peer == null ? null : artifactUpdateApiClient.getPeerFilter(peer);
+        try {
+            ContentTreeNode treeNode = contentTreeIndex.getNode(repositoryId, node == null ? "" : node,
+                    filter == null ? ArtifactFilter.ACCEPT_ALL : filter);
+            if (treeNode == null) {
+                throw new ResourceException(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                        "Content tree of " + repositoryId + " is not built yet");
+            }
+            return treeNode;
+        } catch (NoSuchRepositoryException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_NOT_FOUND, "No Maven repository: " + repositoryId);
+        } catch (IllegalArgumentException e) {
+            throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST, e.getMessage());
+        }
+    }
+}
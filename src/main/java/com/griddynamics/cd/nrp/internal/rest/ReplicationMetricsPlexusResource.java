@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.rest;
+
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.PeerMetricsReport;
+import com.griddynamics.cd.nrp.internal.model.api.ReplicationMetricsReport;
+import com.thoughtworks.xstream.XStream;
+import org.codehaus.enunciate.contract.jaxrs.ResourceMethodSignature;
+import org.codehaus.plexus.component.annotations.Component;
+import org.restlet.Context;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Variant;
+import org.sonatype.nexus.rest.AbstractNexusPlexusResource;
+import org.sonatype.plexus.rest.resource.PathProtectionDescriptor;
+import org.sonatype.plexus.rest.resource.PlexusResource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * REST resource returns replication metrics of the Nexus instance: sender queues and deliveries per peer,
+ * receiver artifact fetches
+ */
+@Path(ReplicationMetricsPlexusResource.REQUEST_URI)
+@Produces({MediaType.APPLICATION_XML})
+@Component(role = PlexusResource.class, hint = ReplicationMetricsPlexusResource.ID)
+public class ReplicationMetricsPlexusResource extends AbstractNexusPlexusResource {
+    public static final String ID = "replicationMetricsPlexusResource";
+    public static final String REQUEST_URI = "/artifact/maven/replication-metrics";
+
+    private final ReplicationMetrics replicationMetrics;
+
+    @Inject
+    public ReplicationMetricsPlexusResource(@Named(ReplicationMetricsImpl.ID) ReplicationMetrics replicationMetrics) {
+        this.replicationMetrics = replicationMetrics;
+    }
+
+    /**
+     * The location to attach this resource to.
+     */
+    @Override
+    public String getResourceUri() {
+        return REQUEST_URI;
+    }
+
+    /**
+     * A permission prefix to be applied when securing the resource.
+     */
+    @Override
+    public PathProtectionDescriptor getResourceProtection() {
+        return new PathProtectionDescriptor(REQUEST_URI, "authcBasic,perms[nexus:artifact]");
+    }
+
+    /**
+     * Resource does not accept request body.
+     */
+    @Override
+    public Object getPayloadInstance() {
+        return null;
+    }
+
+    @Override
+    public void configureXStream(XStream xstream) {
+        xstream.processAnnotations(ReplicationMetricsReport.class);
+        xstream.processAnnotations(PeerMetricsReport.class);
+    }
+
+    /**
+     * Returns snapshot of the replication metrics
+     */
+    @GET
+    @Override
+    @ResourceMethodSignature(output = ReplicationMetricsReport.class)
+    public Object get(Context context, Request request, Response response, Variant variant) throws ResourceException {
+        return replicationMetrics.getReport();
+    }
+}
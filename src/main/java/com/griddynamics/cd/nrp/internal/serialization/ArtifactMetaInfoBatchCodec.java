@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.serialization;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary wire format of the batch of replication requests, alternative to the XML
+ * {@link com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfoBatch}.
+ * <p/>
+ * Batch starts with the magic number, format version and the number of artifacts. Every string field is
+ * dictionary-coded: it is written as a varint reference to the string that already appeared in the batch,
+ * new strings are written once as a modified UTF-8 literal. Repeated nexusUrl, repositoryId and groupId values
+ * cost one or two bytes, decoded strings are interned so they are shared between requests.
+ * <p/>
+ * Version 2 adds the files of the artifact set and the metadata flag to every artifact. It is written only
+ * if some artifact has them, so batches of single artifacts stay readable by the peers supporting version 1.
+ * Version 3 adds sha1 checksums and sizes of the files, it is written only if some of them are known.
+ */
+public final class ArtifactMetaInfoBatchCodec {
+
+    /**
+     * Content type of the encoded batch
+     */
+    public static final String MEDIA_TYPE = "application/vnd.griddynamics.nrp.artifact-batch";
+
+    private static final int MAGIC = 0x4E525042;
+    private static final int VERSION = 1;
+    private static final int VERSION_ARTIFACT_SETS = 2;
+    private static final int VERSION_CHECKSUMS = 3;
+
+    /**
+     * Reference to the null value, references to the dictionary strings start from 1
+     */
+    private static final int NULL_REFERENCE = 0;
+
+    /**
+     * Upper bound of the artifacts in the batch, protects the receiver from the malformed input
+     */
+    private static final int MAX_BATCH_SIZE = 1000000;
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    private ArtifactMetaInfoBatchCodec() {
+    }
+
+    /**
+     * Encodes replication requests
+     * @param metaInfos Artifacts information
+     * @return Encoded batch
+     */
+    public static byte[] encode(List<ArtifactMetaInfo> metaInfos) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + metaInfos.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(out, metaInfos);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes replication requests
+     * @param in Encoded batch
+     * @return Artifacts information
+     */
+    public static List<ArtifactMetaInfo> decode(InputStream in) throws IOException {
+        return read(new DataInputStream(in));
+    }
+
+    /**
+     * Writes replication requests to the output
+     * @param out Destination
+     * @param metaInfos Artifacts information
+     */
+    public static void write(DataOutput out, List<ArtifactMetaInfo> metaInfos) throws IOException {
+        int version = VERSION;
+        for (ArtifactMetaInfo metaInfo : metaInfos) {
+            if (ArtifactMetaInfoCodec.hasChecksums(metaInfo)) {
+                version = VERSION_CHECKSUMS;
+                break;
+            }
+            if (metaInfo.getFiles() != null || metaInfo.isMetadataUpdated()) {
+                version = VERSION_ARTIFACT_SETS;
+            }
+        }
+        out.writeInt(MAGIC);
+        out.writeByte(version);
+        writeVarInt(out, metaInfos.size());
+        Map<String, Integer> dictionary = new HashMap<>();
+        for (ArtifactMetaInfo metaInfo : metaInfos) {
+            writeString(out, dictionary, metaInfo.getNexusUrl());
+            writeString(out, dictionary, metaInfo.getRepositoryId());
+            writeString(out, dictionary, metaInfo.getGroupId());
+            writeString(out, dictionary, metaInfo.getArtifactId());
+            writeString(out, dictionary, metaInfo.getVersion());
+            writeString(out, dictionary, metaInfo.getPackaging());
+            writeString(out, dictionary, metaInfo.getClassifier());
+            writeString(out, dictionary, metaInfo.getExtension());
+            if (version >= VERSION_ARTIFACT_SETS) {
+                writeFiles(out, dictionary, metaInfo);
+            }
+            if (version >= VERSION_CHECKSUMS) {
+                writeChecksums(out, metaInfo);
+            }
+        }
+    }
+
+    /**
+     * Reads replication requests written by {@link #write(DataOutput, List)}
+     * @param in Source
+     * @return Artifacts information
+     */
+    public static List<ArtifactMetaInfo> read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replication request batch");
+        }
+        int version = in.readUnsignedByte();
+        if (version < VERSION || version > VERSION_CHECKSUMS) {
+            throw new IOException("Unsupported replication request batch version: " + version);
+        }
+        int size = readVarInt(in);
+        if (size > MAX_BATCH_SIZE) {
+            throw new IOException("Replication request batch is too large: " + size);
+        }
+        List<ArtifactMetaInfo> metaInfos = new ArrayList<>(size);
+        List<String> dictionary = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String nexusUrl = readString(in, dictionary);
+            String repositoryId = readString(in, dictionary);
+            String groupId = readString(in, dictionary);
+            String artifactId = readString(in, dictionary);
+            String artifactVersion = readString(in, dictionary);
+            ArtifactMetaInfo metaInfo = new ArtifactMetaInfo(nexusUrl, groupId, artifactId, artifactVersion, repositoryId);
+            metaInfo.setPackaging(readString(in, dictionary));
+            metaInfo.setClassifier(readString(in, dictionary));
+            metaInfo.setExtension(readString(in, dictionary));
+            if (version >= VERSION_ARTIFACT_SETS) {
+                readFiles(in, dictionary, metaInfo);
+            }
+            if (version >= VERSION_CHECKSUMS) {
+                readChecksums(in, metaInfo);
+            }
+            metaInfos.add(metaInfo);
+        }
+        return metaInfos;
+    }
+
+    private static void writeFiles(DataOutput out, Map<String, Integer> dictionary, ArtifactMetaInfo metaInfo)
+            throws IOException {
+        out.writeBoolean(metaInfo.isMetadataUpdated());
+        List<ArtifactFile> files = metaInfo.getFiles();
+        writeVarInt(out, files == null ? 0 : files.size());
+        if (files != null) {
+            for (ArtifactFile file : files) {
+                writeString(out, dictionary, file.getClassifier());
+                writeString(out, dictionary, file.getExtension());
+            }
+        }
+    }
+
+    private static void readFiles(DataInput in, List<String> dictionary, ArtifactMetaInfo metaInfo) throws IOException {
+        metaInfo.setMetadataUpdated(in.readBoolean());
+        int fileCount = readVarInt(in);
+        if (fileCount > MAX_BATCH_SIZE) {
+            throw new IOException("Artifact set is too large: " + fileCount);
+        }
+        if (fileCount > 0) {
+            List<ArtifactFile> files = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                files.add(new ArtifactFile(readString(in, dictionary), readString(in, dictionary)));
+            }
+            metaInfo.setFiles(files);
+        }
+    }
+
+    /**
+     * Writes checksums of the main file and the files of the set. Checksums are unique, so they are not
+     * added to the dictionary.
+     */
+    private static void writeChecksums(DataOutput out, ArtifactMetaInfo metaInfo) throws IOException {
+        writeChecksum(out, metaInfo.getSha1(), metaInfo.getSize());
+        if (metaInfo.getFiles() != null) {
+            for (ArtifactFile file : metaInfo.getFiles()) {
+                writeChecksum(out, file.getSha1(), file.getSize());
+            }
+        }
+    }
+
+    private static void readChecksums(DataInput in, ArtifactMetaInfo metaInfo) throws IOException {
+        metaInfo.setSha1(readChecksum(in));
+        metaInfo.setSize(readSize(in));
+        if (metaInfo.getFiles() != null) {
+            for (ArtifactFile file : metaInfo.getFiles()) {
+                file.setSha1(readChecksum(in));
+                file.setSize(readSize(in));
+            }
+        }
+    }
+
+    private static void writeChecksum(DataOutput out, String sha1, Long size) throws IOException {
+        out.writeBoolean(sha1 != null);
+        if (sha1 != null) {
+            out.writeUTF(sha1);
+        }
+        out.writeLong(size == null ? -1 : size);
+    }
+
+    private static String readChecksum(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static Long readSize(DataInput in) throws IOException {
+        long size = in.readLong();
+        return size < 0 ? null : size;
+    }
+
+    /**
+     * Writes reference to the dictionary string. New string gets the next reference and is followed by its value.
+     */
+    private static void writeString(DataOutput out, Map<String, Integer> dictionary, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, NULL_REFERENCE);
+            return;
+        }
+        Integer reference = dictionary.get(value);
+        if (reference != null) {
+            writeVarInt(out, reference);
+            return;
+        }
+        reference = dictionary.size() + 1;
+        dictionary.put(value, reference);
+        writeVarInt(out, reference);
+        out.writeUTF(value);
+    }
+
+    private static String readString(DataInput in, List<String> dictionary) throws IOException {
+        int reference = readVarInt(in);
+        if (reference == NULL_REFERENCE) {
+            return null;
+        }
+        if (reference <= dictionary.size()) {
+            return dictionary.get(reference - 1);
+        }
+        if (reference != dictionary.size() + 1) {
+            throw new IOException("Invalid string reference: " + reference);
+        }
+        String value = INTERNER.intern(in.readUTF());
+        dictionary.add(value);
+        return value;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
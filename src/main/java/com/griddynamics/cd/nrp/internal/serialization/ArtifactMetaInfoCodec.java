@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.serialization;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of {@link ArtifactMetaInfo} used by the persistent replication queue.
+ * Every field is written as a presence flag followed by a modified UTF-8 string.
+ * <p/>
+ * Files of the artifact set and the metadata flag follow the original fields only if the artifact has them,
+ * sha1 checksums and sizes of the files follow them only if they are known. Record is read till its end,
+ * so records written by the previous versions are read as artifacts without them.
+ */
+public final class ArtifactMetaInfoCodec {
+
+    private ArtifactMetaInfoCodec() {
+    }
+
+    /**
+     * Writes artifact meta info to the output
+     * @param out Destination
+     * @param metaInfo Artifact information
+     */
+    public static void write(DataOutput out, ArtifactMetaInfo metaInfo) throws IOException {
+        writeString(out, metaInfo.getNexusUrl());
+        writeString(out, metaInfo.getGroupId());
+        writeString(out, metaInfo.getArtifactId());
+        writeString(out, metaInfo.getVersion());
+        writeString(out, metaInfo.getRepositoryId());
+        writeString(out, metaInfo.getPackaging());
+        writeString(out, metaInfo.getClassifier());
+        writeString(out, metaInfo.getExtension());
+        List<ArtifactFile> files = metaInfo.getFiles();
+        boolean checksums = hasChecksums(metaInfo);
+        if (files != null || metaInfo.isMetadataUpdated() || checksums) {
+            out.writeBoolean(metaInfo.isMetadataUpdated());
+            out.writeShort(files == null ? 0 : files.size());
+            if (files != null) {
+                for (ArtifactFile file : files) {
+                    writeString(out, file.getClassifier());
+                    writeString(out, file.getExtension());
+                }
+            }
+        }
+        if (checksums) {
+            writeString(out, metaInfo.getSha1());
+            writeSize(out, metaInfo.getSize());
+            if (files != null) {
+                for (ArtifactFile file : files) {
+                    writeString(out, file.getSha1());
+                    writeSize(out, file.getSize());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if checksum or size of some file of the artifact set is known
+     */
+    public static boolean hasChecksums(ArtifactMetaInfo metaInfo) {
+        if (metaInfo.getSha1() != null || metaInfo.getSize() != null) {
+            return true;
+        }
+        if (metaInfo.getFiles() != null) {
+            for (ArtifactFile file : metaInfo.getFiles()) {
+                if (file.getSha1() != null || file.getSize() != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads artifact meta info written by {@link #write(DataOutput, ArtifactMetaInfo)}
+     * @param in Source
+     * @return Artifact information
+     */
+    public static ArtifactMetaInfo read(DataInput in) throws IOException {
+        String nexusUrl = readString(in);
+        String groupId = readString(in);
+        String artifactId = readString(in);
+        String version = readString(in);
+        String repositoryId = readString(in);
+        ArtifactMetaInfo metaInfo = new ArtifactMetaInfo(nexusUrl, groupId, artifactId, version, repositoryId);
+        metaInfo.setPackaging(readString(in));
+        metaInfo.setClassifier(readString(in));
+        metaInfo.setExtension(readString(in));
+        boolean metadataUpdated;
+        try {
+            metadataUpdated = in.readBoolean();
+        } catch (EOFException e) {
+            return metaInfo;
+        }
+        metaInfo.setMetadataUpdated(metadataUpdated);
+        int fileCount = in.readUnsignedShort();
+        List<ArtifactFile> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            files.add(new ArtifactFile(readString(in), readString(in)));
+        }
+        if (!files.isEmpty()) {
+            metaInfo.setFiles(files);
+        }
+        String sha1;
+        try {
+            sha1 = readString(in);
+        } catch (EOFException e) {
+            return metaInfo;
+        }
+        metaInfo.setSha1(sha1);
+        metaInfo.setSize(readSize(in));
+        for (ArtifactFile file : files) {
+            file.setSha1(readString(in));
+            file.setSize(readSize(in));
+        }
+        return metaInfo;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeSize(DataOutput out, Long size) throws IOException {
+        out.writeLong(size == null ? -1 : size);
+    }
+
+    private static Long readSize(DataInput in) throws IOException {
+        long size = in.readLong();
+        return size < 0 ? null : size;
+    }
+}
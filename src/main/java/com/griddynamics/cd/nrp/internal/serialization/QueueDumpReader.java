@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.serialization;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams replication requests from the XML queue dump written by the previous plugin versions
+ * ({@code <artifactMetaInfoBlockingQueueDump><artifactMetaInfos><artifactMetaInfo>...}). Requests are read
+ * in the document order and every {@code artifactMetaInfo} element is unmarshalled separately, so the dump
+ * is never loaded into memory as a whole.
+ */
+public class QueueDumpReader implements Closeable {
+
+    private static final String ARTIFACT_ELEMENT = "artifactMetaInfo";
+
+    private final XmlSerializer xmlSerializer;
+    private final InputStream in;
+    private final XMLStreamReader reader;
+
+    public QueueDumpReader(File file, XmlSerializer xmlSerializer) throws IOException, XMLStreamException {
+        this.xmlSerializer = xmlSerializer;
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            this.reader = factory.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Next request or null at the end of the dump
+     */
+    public ArtifactMetaInfo next() throws XMLStreamException, JAXBException {
+        while (reader.hasNext()) {
+            if (reader.isStartElement() && ARTIFACT_ELEMENT.equals(reader.getLocalName())) {
+                // Leaves the reader after the end of the element
+                return xmlSerializer.unmarshal(reader, ArtifactMetaInfo.class);
+            }
+            reader.next();
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
+}
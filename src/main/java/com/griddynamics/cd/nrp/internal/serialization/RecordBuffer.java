@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Reusable buffer of the queue store record. Store keeps one buffer and uses it under its lock,
+ * so appending the record does not allocate the stream, the body array and the checksum.
+ */
+public class RecordBuffer extends ByteArrayOutputStream {
+
+    private final DataOutputStream out = new DataOutputStream(this);
+    private final CRC32 crc = new CRC32();
+
+    public RecordBuffer(int size) {
+        super(size);
+    }
+
+    /**
+     * Clears the buffer
+     * @return Output the record body is written to
+     */
+    public DataOutputStream start() {
+        reset();
+        return out;
+    }
+
+    /**
+     * @return CRC32 of the written body
+     */
+    public int checksum() {
+        crc.reset();
+        crc.update(buf, 0, count);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return Written body, the buffer is not copied
+     */
+    public ByteBuffer wrap() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    /**
+     * Copies the written body to the buffer
+     */
+    public void copyTo(ByteBuffer target) {
+        target.put(buf, 0, count);
+    }
+}
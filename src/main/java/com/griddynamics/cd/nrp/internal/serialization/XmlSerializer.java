@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.serialization;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Thread-safe JAXB serialization of the plugin DTOs. JAXB contexts are built once,
+ * marshallers and unmarshallers are reused by the calling thread.
+ */
+public interface XmlSerializer {
+
+    /**
+     * Reads the object from the XML file
+     * @param file Source
+     * @param type Type of the root element
+     */
+    <T> T unmarshal(File file, Class<T> type) throws JAXBException;
+
+    /**
+     * Reads the object from the XML stream
+     * @param in   Source
+     * @param type Type of the root element
+     */
+    <T> T unmarshal(InputStream in, Class<T> type) throws JAXBException;
+
+    /**
+     * Reads the object from the current element of the StAX reader, the reader is left after the element end
+     * @param reader Source positioned at the start of the element
+     * @param type   Type of the element
+     */
+    <T> T unmarshal(XMLStreamReader reader, Class<T> type) throws JAXBException;
+
+    /**
+     * Writes the object to XML
+     * @param value JAXB annotated object
+     * @return UTF-8 encoded XML
+     */
+    byte[] marshal(Object value) throws JAXBException;
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.serialization.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfoBatch;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.serialization.XmlSerializer;
+import org.sonatype.sisu.goodies.common.ComponentSupport;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps JAXB contexts of the plugin DTOs, every thread gets its own marshallers, unmarshallers and output buffer
+ * since they are not thread-safe. Contexts of the other types are built on the first use.
+ */
+@Singleton
+@Named(XmlSerializerImpl.ID)
+public class XmlSerializerImpl extends ComponentSupport implements XmlSerializer {
+
+    public static final String ID = "xmlSerializer";
+
+    /**
+     * Output buffer that grew above this size is not kept by the thread
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final ConcurrentMap<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<ThreadState> threadStates = new ThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            return new ThreadState();
+        }
+    };
+
+    public XmlSerializerImpl() {
+        for (Class<?> type : new Class<?>[]{ReplicationPluginConfiguration.class, ArtifactMetaInfo.class,
+                ArtifactMetaInfoBatch.class}) {
+            try {
+                contexts.put(type, JAXBContext.newInstance(type));
+            } catch (JAXBException e) {
+                throw new IllegalStateException("Can not create JAXB context of " + type.getName(), e);
+            }
+        }
+    }
+
+    @Override
+    public <T> T unmarshal(File file, Class<T> type) throws JAXBException {
+        return type.cast(threadStates.get().unmarshaller(type).unmarshal(file));
+    }
+
+    @Override
+    public <T> T unmarshal(InputStream in, Class<T> type) throws JAXBException {
+        return type.cast(threadStates.get().unmarshaller(type).unmarshal(in));
+    }
+
+    @Override
+    public <T> T unmarshal(XMLStreamReader reader, Class<T> type) throws JAXBException {
+        return threadStates.get().unmarshaller(type).unmarshal(reader, type).getValue();
+    }
+
+    @Override
+    public byte[] marshal(Object value) throws JAXBException {
+        ThreadState state = threadStates.get();
+        ByteArrayOutputStream buffer = state.buffer;
+        buffer.reset();
+        state.marshaller(value.getClass()).marshal(value, buffer);
+        byte[] xml = buffer.toByteArray();
+        if (xml.length > MAX_RETAINED_BUFFER_SIZE) {
+            state.buffer = new ByteArrayOutputStream();
+        }
+        return xml;
+    }
+
+    private JAXBContext getContext(Class<?> type) throws JAXBException {
+        JAXBContext context = contexts.get(type);
+        if (context == null) {
+            context = JAXBContext.newInstance(type);
+            JAXBContext existing = contexts.putIfAbsent(type, context);
+            if (existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
+
+    /**
+     * JAXB objects owned by the single thread
+     */
+    private class ThreadState {
+        private final Map<Class<?>, Marshaller> marshallers = new HashMap<>();
+        private final Map<Class<?>, Unmarshaller> unmarshallers = new HashMap<>();
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private Marshaller marshaller(Class<?> type) throws JAXBException {
+            Marshaller marshaller = marshallers.get(type);
+            if (marshaller == null) {
+                marshaller = getContext(type).createMarshaller();
+                marshallers.put(type, marshaller);
+            }
+            return marshaller;
+        }
+
+        private Unmarshaller unmarshaller(Class<?> type) throws JAXBException {
+            Unmarshaller unmarshaller = unmarshallers.get(type);
+            if (unmarshaller == null) {
+                unmarshaller = getContext(type).createUnmarshaller();
+                unmarshallers.put(type, unmarshaller);
+            }
+            return unmarshaller;
+        }
+    }
+}
@@ -15,9 +15,21 @@
  */
 package com.griddynamics.cd.nrp.internal.uploading;
 
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
 import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
 
 public interface ArtifactUpdateApiClient {
     void offerRequest(ArtifactMetaInfo artifactMetaInfo);
 
+    /**
+     * @return true if the artifact passes the filter of at least one peer
+     */
+    boolean isReplicated(ArtifactMetaInfo artifactMetaInfo);
+
+    /**
+     * @param peerUrl URL of the peer nexus
+     * @return Filter of the configured peer or null if the peer is not configured
+     */
+    ArtifactFilter getPeerFilter(String peerUrl);
+
 }
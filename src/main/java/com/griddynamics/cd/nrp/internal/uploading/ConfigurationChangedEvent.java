@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading;
+
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import lombok.Getter;
+
+/**
+ * Posted to the Nexus event bus when the plugin configuration file was changed and parsed successfully
+ */
+public class ConfigurationChangedEvent {
+    @Getter
+    private final ReplicationPluginConfiguration oldConfiguration;
+    @Getter
+    private final ReplicationPluginConfiguration newConfiguration;
+
+    public ConfigurationChangedEvent(ReplicationPluginConfiguration oldConfiguration,
+                                     ReplicationPluginConfiguration newConfiguration) {
+        this.oldConfiguration = oldConfiguration;
+        this.newConfiguration = newConfiguration;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Files received for the single deployment. Set is closed when its notification is sent,
+ * files received after that belong to the next set of the same GAV.
+ */
+public class ArtifactSet {
+
+    private static final String POM_EXTENSION = "pom";
+
+    private final ArtifactMetaInfo artifact;
+    /**
+     * Artifact directory in the repository, e.g. /com/example/app
+     */
+    private final String artifactDirectory;
+    private final String versionDirectory;
+    private final Map<ArtifactFile, ArtifactStatus> files = new LinkedHashMap<>();
+    private boolean metadataUpdated;
+    private long lastUpdateMillis;
+    private boolean closed;
+
+    public ArtifactSet(ArtifactMetaInfo metaInfo) {
+        this.artifact = new ArtifactMetaInfo(metaInfo.getNexusUrl(), metaInfo.getGroupId(), metaInfo.getArtifactId(),
+                metaInfo.getVersion(), metaInfo.getRepositoryId());
+        List<String> metadataDirectories = metadataDirectories(metaInfo);
+        this.artifactDirectory = metadataDirectories.get(0);
+        this.versionDirectory = metadataDirectories.get(1);
+        this.lastUpdateMillis = System.currentTimeMillis();
+    }
+
+    public String getRepositoryId() {
+        return artifact.getRepositoryId();
+    }
+
+    /**
+     * @return Directories of maven-metadata.xml the deployment of the set may update
+     */
+    public List<String> getMetadataDirectories() {
+        return Arrays.asList(artifactDirectory, versionDirectory);
+    }
+
+    /**
+     * @return Artifact directory and version directory of the artifact, e.g. /com/example/app and /com/example/app/1.0
+     */
+    public static List<String> metadataDirectories(ArtifactMetaInfo metaInfo) {
+        String artifactDirectory = "/" + metaInfo.getGroupId().replace('.', '/') + "/" + metaInfo.getArtifactId();
+        return Arrays.asList(artifactDirectory, artifactDirectory + "/" + metaInfo.getBaseVersion());
+    }
+
+    /**
+     * Copies the sent notification flagged as metadata update. Files are listed with their checksums,
+     * so the peer which already has them only refreshes the metadata.
+     */
+    public static ArtifactMetaInfo withMetadataUpdated(ArtifactMetaInfo sent) {
+        ArtifactMetaInfo metaInfo = new ArtifactMetaInfo(sent.getNexusUrl(), sent.getGroupId(), sent.getArtifactId(),
+                sent.getVersion(), sent.getRepositoryId());
+        metaInfo.setPackaging(sent.getPackaging());
+        metaInfo.setClassifier(sent.getClassifier());
+        metaInfo.setExtension(sent.getExtension());
+        metaInfo.setSha1(sent.getSha1());
+        metaInfo.setSize(sent.getSize());
+        metaInfo.setFiles(sent.getFiles());
+        metaInfo.setMetadataUpdated(true);
+        return metaInfo;
+    }
+
+    /**
+     * Marks file binary or its sha1 checksum received
+     * @param metaInfo Meta info of the deployed file
+     * @return false if the set is already closed
+     */
+    public synchronized boolean receive(ArtifactMetaInfo metaInfo, boolean sha1) {
+        if (closed) {
+            return false;
+        }
+        ArtifactFile file = new ArtifactFile(metaInfo.getClassifier(), metaInfo.getExtension());
+        ArtifactStatus status = files.get(file);
+        if (status == null) {
+            status = new ArtifactStatus(metaInfo);
+            files.put(file, status);
+        }
+        if (sha1) {
+            status.setSha1Received(true);
+        } else {
+            status.setSha1(metaInfo.getSha1());
+            status.setSize(metaInfo.getSize());
+            status.setFileReceived(true);
+        }
+        lastUpdateMillis = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Marks maven-metadata.xml updated if it belongs to the artifact of the set
+     * @param metadataDirectory Directory of the updated maven-metadata.xml
+     * @return false if the set is closed or the metadata belongs to another artifact
+     */
+    public synchronized boolean metadataReceived(String metadataDirectory) {
+        if (closed || !(artifactDirectory.equals(metadataDirectory) || versionDirectory.equals(metadataDirectory))) {
+            return false;
+        }
+        metadataUpdated = true;
+        lastUpdateMillis = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Closes the set if all its files have checksums and nothing was received within the quiet period
+     * @return true if the caller closed the set and has to send its notification
+     */
+    public synchronized boolean closeIfComplete(long quietMillis) {
+        if (closed || System.currentTimeMillis() - lastUpdateMillis < quietMillis || files.isEmpty()) {
+            return false;
+        }
+        for (ArtifactStatus status : files.values()) {
+            if (!status.isReadyForReplication()) {
+                return false;
+            }
+        }
+        closed = true;
+        return true;
+    }
+
+    /**
+     * Closes the set regardless of its files
+     * @return true if the caller closed the set and has to decide what to do with its files
+     */
+    public synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    /**
+     * Builds notification of the set. Main artifact (binary without classifier if there is one) is described
+     * by the notification itself, the other files are listed in {@link ArtifactMetaInfo#getFiles()}.
+     * @param includePartial true if files which checksum was not received are included
+     * @return Notification or null if there are no files to replicate
+     */
+    public synchronized ArtifactMetaInfo toMetaInfo(boolean includePartial) {
+        List<ArtifactFile> received = new ArrayList<>(files.size());
+        for (Map.Entry<ArtifactFile, ArtifactStatus> file : files.entrySet()) {
+            ArtifactStatus status = file.getValue();
+            if (status.isFileReceived() && (includePartial || status.isSha1Received())) {
+                received.add(new ArtifactFile(file.getKey().getClassifier(), file.getKey().getExtension(),
+                        status.getSha1(), status.getSize()));
+            }
+        }
+        if (received.isEmpty()) {
+            return null;
+        }
+        ArtifactFile main = received.get(0);
+        for (ArtifactFile file : received) {
+            if (file.getClassifier() == null && !POM_EXTENSION.equals(file.getExtension())) {
+                main = file;
+                break;
+            }
+        }
+        received.remove(main);
+        ArtifactMetaInfo metaInfo = new ArtifactMetaInfo(artifact.getNexusUrl(), artifact.getGroupId(),
+                artifact.getArtifactId(), artifact.getVersion(), artifact.getRepositoryId());
+        metaInfo.setClassifier(main.getClassifier());
+        metaInfo.setExtension(main.getExtension());
+        metaInfo.setSha1(main.getSha1());
+        metaInfo.setSize(main.getSize());
+        if (!received.isEmpty()) {
+            metaInfo.setFiles(received);
+        }
+        metaInfo.setMetadataUpdated(metadataUpdated);
+        return metaInfo;
+    }
+
+    /**
+     * @return true if some received binary has no checksum
+     */
+    public synchronized boolean isPartial() {
+        for (ArtifactStatus status : files.values()) {
+            if (!status.isReadyForReplication()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion() + " in "
+                + artifact.getRepositoryId() + " " + files.values();
+    }
+}
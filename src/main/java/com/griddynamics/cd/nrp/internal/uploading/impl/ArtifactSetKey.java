@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Identifies the deployment: files deployed to the same repository under the same GAV belong to one artifact set
+ */
+@ToString
+@EqualsAndHashCode
+public class ArtifactSetKey {
+    private final String repositoryId;
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+
+    public ArtifactSetKey(ArtifactMetaInfo metaInfo) {
+        this.repositoryId = metaInfo.getRepositoryId();
+        this.groupId = metaInfo.getGroupId();
+        this.artifactId = metaInfo.getArtifactId();
+        this.version = metaInfo.getVersion();
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.uploading.ArtifactUpdateApiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups files of the single deployment into the {@link ArtifactSet}: binaries and checksums of the artifact,
+ * its POM, sources, javadoc and other classified files and the maven-metadata.xml update. Set is replicated
+ * by one notification once all its binaries have sha1 checksums and no file was received within
+ * artifactSetQuietMillis.
+ * <p/>
+ * Number of tracked sets is limited by trackedArtifactsMaxCount, set which checksums did not arrive within
+ * partialArtifactTimeoutSeconds is considered partial. Partial set is replicated with the files that have
+ * no checksum or without them according to partialArtifactPolicy.
+ * <p/>
+ * Sets are indexed by the repository and the directories of their maven-metadata.xml, so the metadata update
+ * is attached without scanning the tracked sets. Metadata updated after the set was sent is replicated by
+ * the notification of the sent set flagged as metadata update, peer skips the files it already has.
+ */
+public class ArtifactSetTracker {
+
+    /**
+     * Lower bound of the interval between the checks of the tracked sets
+     */
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 50;
+
+    private final Logger log = LoggerFactory.getLogger(ArtifactSetTracker.class);
+
+    private final ArtifactUpdateApiClient artifactUpdateApiClient;
+    private final boolean replicatePartialArtifacts;
+    private final long quietMillis;
+    private final Cache<ArtifactSetKey, ArtifactSet> openSets;
+    /**
+     * Open sets by the repository and the directory of their maven-metadata.xml, guarded by itself
+     */
+    private final Map<String, List<ArtifactSet>> openSetsByDirectory = new HashMap<>();
+    /**
+     * Last notification sent for the repository and the directory of the maven-metadata.xml
+     */
+    private final Cache<String, ArtifactMetaInfo> sentSets;
+    private final ScheduledExecutorService sweeper;
+    private final ReplicationMetrics replicationMetrics;
+
+    public ArtifactSetTracker(ReplicationPluginConfiguration configuration, ArtifactUpdateApiClient artifactUpdateApiClient,
+                              ReplicationMetrics replicationMetrics) {
+        this.artifactUpdateApiClient = artifactUpdateApiClient;
+        this.replicationMetrics = replicationMetrics;
+        this.replicatePartialArtifacts = ReplicationPluginConfiguration.PARTIAL_ARTIFACT_REPLICATE
+                .equals(configuration.getPartialArtifactPolicy());
+        this.quietMillis = configuration.getArtifactSetQuietMillis();
+        this.openSets = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getTrackedArtifactsMaxCount())
+                .expireAfterWrite(configuration.getPartialArtifactTimeoutSeconds(), TimeUnit.SECONDS)
+                .removalListener(new RemovalListener<ArtifactSetKey, ArtifactSet>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<ArtifactSetKey, ArtifactSet> notification) {
+                        if (notification.wasEvicted()) {
+                            onPartialSet(notification);
+                        }
+                        unindex(notification.getValue());
+                    }
+                })
+                .build();
+        this.sentSets = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getTrackedArtifactsMaxCount())
+                .expireAfterWrite(configuration.getPartialArtifactTimeoutSeconds(), TimeUnit.SECONDS)
+                .build();
+        long sweepIntervalMillis = Math.max(quietMillis / 2, MIN_SWEEP_INTERVAL_MILLIS);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor();
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sweep(quietMillis);
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+        }, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers received binary or sha1 checksum of the deployed file
+     * @param metaInfo Meta info of the deployed file
+     * @param sha1     true if the checksum was received
+     */
+    public void fileReceived(ArtifactMetaInfo metaInfo, boolean sha1) {
+        ArtifactSetKey key = new ArtifactSetKey(metaInfo);
+        while (true) {
+            ArtifactSet artifactSet = getArtifactSet(key, metaInfo);
+            if (artifactSet.receive(metaInfo, sha1)) {
+                return;
+            }
+            // Set was closed concurrently, the file belongs to the next deployment
+            openSets.asMap().remove(key, artifactSet);
+        }
+    }
+
+    /**
+     * Attaches maven-metadata.xml update to the tracked sets of the artifact. Metadata received after the set
+     * of the artifact was sent is replicated by the sent notification flagged as metadata update. Metadata
+     * of the artifact which set is not known, e.g. rebuilt by the scheduled task, is not replicated.
+     * @param repositoryId      Repository ID
+     * @param metadataDirectory Directory of the updated maven-metadata.xml
+     */
+    public void metadataReceived(String repositoryId, String metadataDirectory) {
+        String directoryKey = directoryKey(repositoryId, metadataDirectory);
+        ArtifactMetaInfo lateMetadata = null;
+        synchronized (openSetsByDirectory) {
+            boolean attached = false;
+            List<ArtifactSet> artifactSets = openSetsByDirectory.get(directoryKey);
+            if (artifactSets != null) {
+                for (ArtifactSet artifactSet : artifactSets) {
+                    attached |= artifactSet.metadataReceived(metadataDirectory);
+                }
+            }
+            ArtifactMetaInfo sent = attached ? null : sentSets.getIfPresent(directoryKey);
+            if (sent != null) {
+                lateMetadata = ArtifactSet.withMetadataUpdated(sent);
+                rememberSent(lateMetadata);
+            }
+            if (!attached && sent == null) {
+                log.debug("Metadata " + metadataDirectory + " in " + repositoryId
+                        + " does not belong to the tracked artifact");
+            }
+        }
+        if (lateMetadata != null) {
+            log.debug("Metadata " + metadataDirectory + " in " + repositoryId + " was updated after the artifact set"
+                    + " was sent. Sending request");
+            artifactUpdateApiClient.offerRequest(lateMetadata);
+        }
+    }
+
+    /**
+     * Stops the sweeper and sends the sets which are complete but still within the quiet period
+     */
+    public void close() {
+        sweeper.shutdownNow();
+        sweep(0);
+    }
+
+    private ArtifactSet getArtifactSet(ArtifactSetKey key, final ArtifactMetaInfo metaInfo) {
+        try {
+            return openSets.get(key, new Callable<ArtifactSet>() {
+                @Override
+                public ArtifactSet call() {
+                    ArtifactSet artifactSet = new ArtifactSet(metaInfo);
+                    index(artifactSet);
+                    return artifactSet;
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Sends notifications of the complete sets and expires the partial ones
+     * @param quietMillis Time since the last file of the set was received, sets received later are not sent
+     */
+    private void sweep(long quietMillis) {
+        ConcurrentMap<ArtifactSetKey, ArtifactSet> sets = openSets.asMap();
+        for (Map.Entry<ArtifactSetKey, ArtifactSet> entry : sets.entrySet()) {
+            ArtifactSet artifactSet = entry.getValue();
+            ArtifactMetaInfo metaInfo = null;
+            synchronized (openSetsByDirectory) {
+                if (artifactSet.closeIfComplete(quietMillis)) {
+                    metaInfo = artifactSet.toMetaInfo(false);
+                    rememberSent(metaInfo);
+                }
+            }
+            if (metaInfo != null) {
+                sets.remove(entry.getKey(), artifactSet);
+                log.debug("Artifact set is complete: " + artifactSet + " Sending request");
+                artifactUpdateApiClient.offerRequest(metaInfo);
+            }
+        }
+        openSets.cleanUp();
+    }
+
+    /**
+     * Handles the set removed before it was complete and quiet. Set evicted before the quiet period ended
+     * is sent as is, files without checksum are sent according to partialArtifactPolicy.
+     */
+    private void onPartialSet(RemovalNotification<ArtifactSetKey, ArtifactSet> notification) {
+        ArtifactSet artifactSet = notification.getValue();
+        ArtifactMetaInfo metaInfo;
+        synchronized (openSetsByDirectory) {
+            if (!artifactSet.close()) {
+                return;
+            }
+            metaInfo = artifactSet.toMetaInfo(replicatePartialArtifacts);
+            if (metaInfo != null) {
+                rememberSent(metaInfo);
+            }
+        }
+        boolean partial = artifactSet.isPartial();
+        if (partial) {
+            if (notification.getCause() == RemovalCause.EXPIRED) {
+                replicationMetrics.partialArtifactExpired();
+            } else {
+                replicationMetrics.partialArtifactEvicted();
+            }
+        }
+        if (metaInfo == null) {
+            log.warn("Partial artifact is not replicated: " + artifactSet);
+            return;
+        }
+        if (partial && replicatePartialArtifacts) {
+            log.warn("Checksum was not received for " + artifactSet + ". Sending request without checksum");
+            replicationMetrics.partialArtifactReplicated();
+        } else if (partial) {
+            log.warn("Files without checksum are not replicated: " + artifactSet);
+        }
+        artifactUpdateApiClient.offerRequest(metaInfo);
+    }
+
+    private void index(ArtifactSet artifactSet) {
+        synchronized (openSetsByDirectory) {
+            for (String directory : artifactSet.getMetadataDirectories()) {
+                String directoryKey = directoryKey(artifactSet.getRepositoryId(), directory);
+                List<ArtifactSet> artifactSets = openSetsByDirectory.get(directoryKey);
+                if (artifactSets == null) {
+                    artifactSets = new ArrayList<>(1);
+                    openSetsByDirectory.put(directoryKey, artifactSets);
+                }
+                artifactSets.add(artifactSet);
+            }
+        }
+    }
+
+    private void unindex(ArtifactSet artifactSet) {
+        synchronized (openSetsByDirectory) {
+            for (String directory : artifactSet.getMetadataDirectories()) {
+                String directoryKey = directoryKey(artifactSet.getRepositoryId(), directory);
+                List<ArtifactSet> artifactSets = openSetsByDirectory.get(directoryKey);
+                if (artifactSets != null && artifactSets.remove(artifactSet) && artifactSets.isEmpty()) {
+                    openSetsByDirectory.remove(directoryKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remembers the sent notification, so the metadata updated later is replicated with it
+     */
+    private void rememberSent(ArtifactMetaInfo metaInfo) {
+        for (String directory : ArtifactSet.metadataDirectories(metaInfo)) {
+            sentSets.put(directoryKey(metaInfo.getRepositoryId(), directory), metaInfo);
+        }
+    }
+
+    private static String directoryKey(String repositoryId, String directory) {
+        return repositoryId + ":" + directory;
+    }
+}
@@ -15,39 +15,64 @@
  */
 package com.griddynamics.cd.nrp.internal.uploading.impl;
 
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.metrics.PeerMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactFile;
 import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfoBatch;
+import com.griddynamics.cd.nrp.internal.model.api.BatchRestResponse;
 import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
-import com.griddynamics.cd.nrp.internal.model.internal.ArtifactMetaInfoQueueDump;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoBatchCodec;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoCodec;
+import com.griddynamics.cd.nrp.internal.serialization.QueueDumpReader;
+import com.griddynamics.cd.nrp.internal.serialization.XmlSerializer;
+import com.griddynamics.cd.nrp.internal.serialization.impl.XmlSerializerImpl;
 import com.griddynamics.cd.nrp.internal.model.api.RestResponse;
 import com.griddynamics.cd.nrp.internal.model.config.NexusServer;
+import com.google.common.eventbus.Subscribe;
 import com.griddynamics.cd.nrp.internal.uploading.ArtifactUpdateApiClient;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationChangedEvent;
 import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
-import com.sun.jersey.api.client.AsyncWebResource;
 import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.GenericType;
-import com.sun.jersey.api.client.async.ITypeListener;
-import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.WebResource;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
-import java.util.concurrent.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Responsible to send request to other Nexus instances to notify them about new artifacts.
- * There are 2 separate thread pools working along:
- * - Usual sending threads that work when new artifacts are uploaded to Nexus Sender
- * - Threads that read queue of artifacts from file. That file is filled with new
- * artifacts if Nexus Receiver was not available and our Nexus was
- * shut down. It then reads artifacts from the file and tries to send them to Receiver
+ * Every configured peer has its own delivery lane: a durable queue of requests and a set of sending threads.
+ * Requests that do not fit into the lane queue are spilled to disk and delivered once the queue drains.
+ * New requests are handed over to the single writer thread through the lock-free {@link RequestHandOff} ring,
+ * so the caller does not wait for the queue store. Writer appends them in batches to the queues of all lanes,
+ * every lane delivers them to its peer independently.
+ * Queues are persisted to the files, so requests that were not delivered before Nexus was
+ * shut down are restored and sent on the next start.
+ * <p/>
+ * Lanes follow the configuration changes: lanes of added peers are started, lanes of removed peers are stopped
+ * keeping their undelivered requests in the store, sending threads and queue capacity are resized.
  */
 
 @Singleton
@@ -62,160 +87,903 @@ public class ArtifactUpdateApiClientImpl extends ComponentSupport implements Art
      */
     public static final int QUEUE_TIMEOUT_IN_SECOND = 1;
 
+    /**
+     * Suffix of the XML queue dump after it was imported to the journal
+     */
+    private static final String IMPORTED_QUEUE_DUMP_SUFFIX = ".imported";
+
+    /**
+     * Number of requests of the XML queue dump appended to the lane queues at once
+     */
+    private static final int IMPORT_BATCH_SIZE = 256;
+
+    private static final String UPDATE_RESOURCE = "update";
+    private static final String BATCH_UPDATE_RESOURCE = "batch-update";
+    private static final String BINARY_BATCH_UPDATE_RESOURCE = "binary-batch-update";
+    private static final MediaType BINARY_BATCH_TYPE = MediaType.valueOf(ArtifactMetaInfoBatchCodec.MEDIA_TYPE);
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+    private static final int HTTP_UNAUTHORIZED = 401;
+    private static final int HTTP_FORBIDDEN = 403;
+    private static final int HTTP_REQUEST_TIMEOUT = 408;
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    /**
+     * Pause of the sending thread after unexpected error, prevents busy loop
+     */
+    private static final long ERROR_PAUSE_MILLIS = 1000;
+
+    /**
+     * Time the sending threads of the removed peer lane are given to finish current delivery
+     */
+    private static final long LANE_CLOSE_TIMEOUT_SECONDS = 5;
+
+    /**
+     * Time the writer thread is given to pass the published requests to the lane queues
+     */
+    private static final long HAND_OFF_FLUSH_TIMEOUT_SECONDS = 5;
+
     /**
      * Provides access to the plugin configurations
      */
     private final ConfigurationsManager configurationsManager;
 
     /**
-     * ExecutorService shares between clients. All treads are created in the same executor
+     * Delivery lanes of the configured peers
      */
-    private final ExecutorService jerseyHttpClientExecutor;
-    private final FileBlockingQueue fileBlockingQueue;
+    private final List<PeerLane> peerLanes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Keep-alive HTTP clients of the peers
+     */
+    private final PeerClientCache peerClientCache;
+
+    /**
+     * Schedules next delivery attempts of the failed requests
+     */
+    private final RetryScheduler retryScheduler;
+
+    /**
+     * Holds SNAPSHOT notifications for snapshotCoalescingWindowMillis, so only the latest deploy is enqueued
+     */
+    private final SnapshotCoalescer snapshotCoalescer;
+
+    /**
+     * Passes requests to the writer thread, null if requests are appended on the calling thread
+     */
+    private final RequestHandOff requestHandOff;
+
+    private final ReplicationMetrics replicationMetrics;
+
+    /**
+     * Writes XML requests with the pooled marshallers
+     */
+    private final XmlSerializer xmlSerializer;
 
     @Inject
-    public ArtifactUpdateApiClientImpl(ConfigurationsManager configurationsManager) {
+    public ArtifactUpdateApiClientImpl(ConfigurationsManager configurationsManager,
+                                       @Named(ReplicationMetricsImpl.ID) ReplicationMetrics replicationMetrics,
+                                       @Named(XmlSerializerImpl.ID) XmlSerializer xmlSerializer) {
         this.configurationsManager = configurationsManager;
-        this.fileBlockingQueue = initFileBlockingQueue(configurationsManager.getConfiguration());
-        this.jerseyHttpClientExecutor = new ThreadPoolExecutor(
-                configurationsManager.getConfiguration().getRequestsSendingThreadsCount(),
-                configurationsManager.getConfiguration().getRequestsSendingThreadsCount(),
-                30,
-                TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(
-                        configurationsManager.getConfiguration().getRequestsQueueSize())
-        );
-        initBackgroundWorkers(configurationsManager.getConfiguration());
-    }
-
-    private void initBackgroundWorkers(ReplicationPluginConfiguration replicationPluginConfiguration) {
-        int requestsSendingThreadsCount = replicationPluginConfiguration.getRequestsSendingThreadsCount();
-        ExecutorService executorService = Executors.newFixedThreadPool(requestsSendingThreadsCount);
-        for (int i = 0; i < requestsSendingThreadsCount; i++) {
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    while (!Thread.currentThread().isInterrupted()) {
+        this.replicationMetrics = replicationMetrics;
+        this.xmlSerializer = xmlSerializer;
+        this.peerClientCache = new PeerClientCache(configurationsManager, replicationMetrics);
+        ReplicationPluginConfiguration configuration = configurationsManager.getConfiguration();
+        this.retryScheduler = new RetryScheduler(configuration.getRetryInitialDelayMillis(),
+                configuration.getRetryMaxDelayMillis());
+        this.snapshotCoalescer = new SnapshotCoalescer(new SnapshotCoalescer.Sink() {
+            @Override
+            public void enqueue(ArtifactMetaInfo artifactMetaInfo) {
+                handOff(artifactMetaInfo);
+            }
+        });
+        for (NexusServer server : configuration.getServers()) {
+            peerLanes.add(initPeerLane(server, configuration));
+        }
+        this.requestHandOff = configuration.getHandOffBufferSize() > 0
+                ? new RequestHandOff(configuration.getHandOffBufferSize(), new RequestHandOff.Sink() {
+                    @Override
+                    public boolean enqueue(List<ArtifactMetaInfo> artifactMetaInfos,
+                                           Map<PeerLane, Integer> progress) {
+                        enqueueRequests(artifactMetaInfos, progress);
+                        return isAppended(progress, artifactMetaInfos.size());
+                    }
+                })
+                : null;
+        for (PeerLane peerLane : peerLanes) {
+            resizeWorkers(peerLane, configuration.getRequestsSendingThreadsCount());
+        }
+        startQueueDumpImport(new File(configuration.getQueueDumpFileName()));
+    }
+
+    /**
+     * Stops the background threads when the plugin is stopped. SNAPSHOT notifications held in the coalescing window
+     * are enqueued, requests in the hand-off ring are appended to the lane queues. Then the sending threads of all
+     * lanes are stopped before the retry timer, and the lane queues and the HTTP clients of the peers are closed.
+     * Undelivered requests stay in the queue stores and are restored on the next start.
+     */
+    @PreDestroy
+    public void destroy() {
+        snapshotCoalescer.close();
+        if (requestHandOff != null && !requestHandOff.close(HAND_OFF_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Replication requests are still being handed off, some of them may be lost");
+        }
+        for (PeerLane peerLane : peerLanes) {
+            peerLane.stopRouting();
+            peerLane.getWorkers().shutdownNow();
+        }
+        for (PeerLane peerLane : peerLanes) {
+            awaitWorkers(peerLane);
+        }
+        retryScheduler.close();
+        for (PeerLane peerLane : peerLanes) {
+            closeQueue(peerLane);
+        }
+        peerClientCache.close();
+    }
+
+    /**
+     * Applies changed configuration to the peer lanes. Queue store settings are applied after restart.
+     */
+    @Subscribe
+    public synchronized void onConfigurationChanged(ConfigurationChangedEvent event) {
+        ReplicationPluginConfiguration oldConfiguration = event.getOldConfiguration();
+        ReplicationPluginConfiguration configuration = event.getNewConfiguration();
+        if (!oldConfiguration.getQueueDumpFileName().equals(configuration.getQueueDumpFileName())
+                || !oldConfiguration.getQueueStoreType().equals(configuration.getQueueStoreType())) {
+            log.warn("Replication queue store settings are changed. Nexus has to be restarted to apply them.");
+        }
+        if (!oldConfiguration.getHandOffBufferSize().equals(configuration.getHandOffBufferSize())) {
+            log.warn("handOffBufferSize is changed. Nexus has to be restarted to apply it.");
+        }
+        boolean snapshotCoalescing = configuration.getSnapshotCoalescingWindowMillis() > 0;
+        if (!snapshotCoalescing) {
+            snapshotCoalescer.flush();
+        }
+        Map<String, NexusServer> servers = new HashMap<>();
+        for (NexusServer server : configuration.getServers()) {
+            servers.put(PeerLane.laneId(server), server);
+        }
+        for (PeerLane peerLane : peerLanes) {
+            NexusServer server = servers.remove(peerLane.getId());
+            if (server == null) {
+                closePeerLane(peerLane);
+                continue;
+            }
+            if (!server.equals(peerLane.getServer())) {
+                log.info("Settings of peer " + server.getUrl() + " are changed");
+                peerLane.setServer(server);
+                peerLane.setFilter(ArtifactFilter.compile(server.getFilter()));
+            }
+            if (!oldConfiguration.getRequestsQueueSize().equals(configuration.getRequestsQueueSize())) {
+                peerLane.getQueue().setCapacity(configuration.getRequestsQueueSize());
+            }
+            peerLane.getQueue().setSnapshotCoalescing(snapshotCoalescing);
+            resizeWorkers(peerLane, configuration.getRequestsSendingThreadsCount());
+        }
+        for (NexusServer server : servers.values()) {
+            log.info("Peer " + server.getUrl() + " is added");
+            PeerLane peerLane = initPeerLane(server, configuration);
+            peerLanes.add(peerLane);
+            resizeWorkers(peerLane, configuration.getRequestsSendingThreadsCount());
+        }
+    }
+
+    /**
+     * Starts or stops lane sending threads. Extra threads stop after their current delivery.
+     */
+    private void resizeWorkers(PeerLane peerLane, int requestsSendingThreadsCount) {
+        peerLane.setTargetWorkers(requestsSendingThreadsCount);
+        while (peerLane.getActiveWorkers() < requestsSendingThreadsCount) {
+            peerLane.workerStarted();
+            startWorker(peerLane);
+        }
+    }
+
+    /**
+     * Stops lane sending threads and closes the lane queue. Requests published to the hand-off before the peer was
+     * removed are appended to the lane queue first, then the lane stops accepting requests. Undelivered requests
+     * stay in the queue store and are sent if the peer is configured again. Waiting retries are cancelled, and
+     * the closed store rejects acknowledgements of the threads that did not stop in time, so their requests are
+     * sent again. Metrics of the peer are unregistered.
+     */
+    private void closePeerLane(PeerLane peerLane) {
+        if (requestHandOff != null && !requestHandOff.flush(HAND_OFF_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Replication requests are still being handed off, some of them are not sent to "
+                    + peerLane.getServer().getUrl());
+        }
+        peerLanes.remove(peerLane);
+        peerLane.stopRouting();
+        log.info("Peer " + peerLane.getServer().getUrl() + " is removed. " + peerLane.getQueue().size()
+                + " undelivered requests are kept in the queue store");
+        peerLane.getWorkers().shutdownNow();
+        awaitWorkers(peerLane);
+        retryScheduler.cancel(peerLane);
+        peerLane.getMetrics().setQueueGauge(null);
+        closeQueue(peerLane);
+        replicationMetrics.removePeerMetrics(peerLane.getServer().getUrl());
+    }
+
+    /**
+     * Waits for the sending threads of the lane stopped by {@link ExecutorService#shutdownNow()}
+     */
+    private void awaitWorkers(PeerLane peerLane) {
+        try {
+            if (!peerLane.getWorkers().awaitTermination(LANE_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Sending threads of " + peerLane.getServer().getUrl() + " did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeQueue(PeerLane peerLane) {
+        try {
+            peerLane.getQueue().close();
+        } catch (IOException e) {
+            log.error("Can not close replication queue store of " + peerLane.getServer().getUrl(), e);
+        }
+    }
+
+    /**
+     * Starts lane sending thread. Every thread takes its own batch of requests from the lane queue,
+     * so concurrent threads never send the same request twice. Threads wait while the lane circuit breaker
+     * is open, the probing thread sends a single request. Batch settings are read before every batch,
+     * so their changes are applied immediately.
+     */
+    private void startWorker(final PeerLane peerLane) {
+        peerLane.getWorkers().submit(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted() && !peerLane.retireWorker()) {
+                    try {
+                        ReplicationPluginConfiguration configuration = configurationsManager.getConfiguration();
+                        boolean probe = peerLane.getCircuitBreaker().acquire();
+                        List<QueueEntry> entries = probe
+                                ? peerLane.getQueue().take(1, 0)
+                                : peerLane.getQueue().take(configuration.getBatchSize(),
+                                        configuration.getBatchLingerMillis());
+                        deliver(peerLane, entries);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        log.error(e.getMessage(), e);
+                        // Releases the breaker if the probe failed unexpectedly
+                        peerLane.getCircuitBreaker().onFailure();
                         try {
-                            ArtifactMetaInfo artifactMetaInfo = fileBlockingQueue.peek();
-                            sendRequest(artifactMetaInfo);
-                            fileBlockingQueue.take();
-                        } catch (Exception e) {
-                            log.error(e.getMessage(), e);
+                            Thread.sleep(ERROR_PAUSE_MILLIS);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
                         }
                     }
                 }
-            });
-        }
+            }
+        });
     }
 
-    private FileBlockingQueue initFileBlockingQueue(ReplicationPluginConfiguration replicationPluginConfiguration) {
-        BlockingQueue<ArtifactMetaInfo> blockingQueue =
-                new LinkedBlockingQueue<>(replicationPluginConfiguration.getRequestsQueueSize());
-        String queueFileName = replicationPluginConfiguration.getQueueDumpFileName();
-        FileBlockingQueue retVal = new FileBlockingQueue(blockingQueue,
-                queueFileName);
+    /**
+     * Opens lane queue store and restores pending requests
+     */
+    private PeerLane initPeerLane(NexusServer server, ReplicationPluginConfiguration replicationPluginConfiguration) {
+        String laneId = PeerLane.laneId(server);
+        String queueFileName = replicationPluginConfiguration.getQueueDumpFileName() + "." + laneId;
+        QueueStore queueStore = createQueueStore(queueFileName, replicationPluginConfiguration);
+        SpillQueue spillQueue = new SpillQueue(new File(queueFileName + SpillQueue.DIRECTORY_SUFFIX));
+        List<QueueEntry> entries;
         try {
-            File queueFile = new File(queueFileName);
-            if (queueFile.exists()) {
-                JAXBContext jaxbContext = JAXBContext.newInstance(ArtifactMetaInfoQueueDump.class);
-                Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-                ArtifactMetaInfoQueueDump unmarshal = (ArtifactMetaInfoQueueDump) unmarshaller.unmarshal(queueFile);
-                for (ArtifactMetaInfo artifactMetaInfo : unmarshal.getArtifactMetaInfos()) {
-                    offerRequest(artifactMetaInfo);
+            entries = queueStore.recover();
+            spillQueue.recover();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not open replication queue store for " + queueFileName, e);
+        }
+        long leaseMillis = TimeUnit.SECONDS.toMillis(replicationPluginConfiguration.getLeaseTimeoutSeconds());
+        FileBlockingQueue queue = new FileBlockingQueue(replicationPluginConfiguration.getRequestsQueueSize(), entries,
+                queueStore, spillQueue, leaseMillis);
+        queue.setSnapshotCoalescing(replicationPluginConfiguration.getSnapshotCoalescingWindowMillis() > 0);
+        ExecutorService workers = Executors.newCachedThreadPool();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(server.getUrl(),
+                replicationPluginConfiguration.getCircuitBreakerFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(replicationPluginConfiguration.getCircuitBreakerOpenSeconds()));
+        PeerMetrics peerMetrics = replicationMetrics.getPeerMetrics(server.getUrl());
+        peerMetrics.setQueueGauge(queue);
+        PeerLane peerLane = new PeerLane(laneId, server, queue, workers, circuitBreaker, peerMetrics);
+        peerLane.setFilter(ArtifactFilter.compile(server.getFilter()));
+        peerLane.setBinarySupported(ReplicationPluginConfiguration.WIRE_FORMAT_BINARY
+                .equals(replicationPluginConfiguration.getWireFormat()));
+        return peerLane;
+    }
+
+    /**
+     * Creates replication queue store of the configured type
+     *
+     * @param queueFileName Base name of the store files
+     */
+    private QueueStore createQueueStore(String queueFileName, ReplicationPluginConfiguration replicationPluginConfiguration) {
+        if (ReplicationPluginConfiguration.QUEUE_STORE_MAPPED_RING.equals(replicationPluginConfiguration.getQueueStoreType())) {
+            return new MappedRingQueueStore(new File(queueFileName + MappedRingQueueStore.FILE_SUFFIX),
+                    replicationPluginConfiguration.getQueueRingFileSize(),
+                    replicationPluginConfiguration.getGroupCommitWindowMillis());
+        }
+        return new JournalQueueStore(new File(queueFileName + JournalQueueStore.DIRECTORY_SUFFIX));
+    }
+
+    /**
+     * Imports the XML queue dump written by the previous plugin versions in background, so a large dump does not
+     * delay Nexus startup and the sending threads deliver imported requests while the rest of the dump is read
+     *
+     * @param queueFile XML queue dump
+     */
+    private void startQueueDumpImport(final File queueFile) {
+        if (!queueFile.isFile()) {
+            return;
+        }
+        Thread importer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                importQueueDump(queueFile);
+            }
+        }, "replication-queue-dump-import");
+        importer.setDaemon(true);
+        importer.start();
+    }
+
+    /**
+     * Streams requests from the XML queue dump to the queues of all lanes in the dump order. Requests are appended
+     * in batches on the import thread, so they are durable before the dump is renamed. Requests that do not fit
+     * into the lane queues are spilled. If the import is interrupted, some lane did not accept the requests or
+     * there are no lanes, the dump is kept and the whole dump is imported again on the next start.
+     *
+     * @param queueFile XML queue dump
+     */
+    private void importQueueDump(File queueFile) {
+        if (peerLanes.isEmpty()) {
+            log.warn("No peers are configured, replication queue dump is imported on the next start: "
+                    + queueFile.getAbsolutePath());
+            return;
+        }
+        int imported = 0;
+        boolean accepted = true;
+        try (QueueDumpReader reader = new QueueDumpReader(queueFile, xmlSerializer)) {
+            List<ArtifactMetaInfo> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            for (ArtifactMetaInfo artifactMetaInfo = reader.next(); artifactMetaInfo != null;
+                 artifactMetaInfo = reader.next()) {
+                batch.add(artifactMetaInfo);
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    accepted &= enqueueRequests(batch, new HashMap<PeerLane, Integer>());
+                    imported += batch.size();
+                    batch.clear();
                 }
             }
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
+            accepted &= enqueueRequests(batch, new HashMap<PeerLane, Integer>());
+            imported += batch.size();
+        } catch (IOException | XMLStreamException | JAXBException e) {
+            log.error("Can not import replication queue dump: " + queueFile.getAbsolutePath() + ". " + imported
+                    + " requests were imported, the dump is imported again on the next start", e);
+            return;
         }
-        return retVal;
+        if (!accepted) {
+            log.error("Some of " + imported + " requests of replication queue dump " + queueFile.getAbsolutePath()
+                    + " were not accepted by the lane queues, the dump is imported again on the next start");
+            return;
+        }
+        File importedFile = new File(queueFile.getPath() + IMPORTED_QUEUE_DUMP_SUFFIX);
+        if (!queueFile.renameTo(importedFile)) {
+            log.warn("Can not rename imported replication queue dump: " + queueFile.getAbsolutePath());
+        }
+        log.info("Imported " + imported + " requests from replication queue dump: " + queueFile.getAbsolutePath());
     }
 
+    /**
+     * Enqueues replication request. SNAPSHOT notification is held for the coalescing window if it is enabled.
+     */
     @Override
     public void offerRequest(ArtifactMetaInfo artifactMetaInfo) {
-        try {
-            fileBlockingQueue.offer(artifactMetaInfo, QUEUE_TIMEOUT_IN_SECOND, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
+        long windowMillis = configurationsManager.getConfiguration().getSnapshotCoalescingWindowMillis();
+        SnapshotKey key = windowMillis > 0 ? SnapshotKey.of(artifactMetaInfo) : null;
+        if (key == null) {
+            handOff(artifactMetaInfo);
+        } else if (snapshotCoalescer.offer(key, artifactMetaInfo, windowMillis)) {
+            replicationMetrics.snapshotCoalesced();
+        }
+    }
+
+    /**
+     * Passes replication request to the writer thread, or appends it on the calling thread if the hand-off is disabled
+     */
+    private void handOff(ArtifactMetaInfo artifactMetaInfo) {
+        if (requestHandOff == null) {
+            enqueueRequests(Collections.singletonList(artifactMetaInfo), new HashMap<PeerLane, Integer>());
+        } else if (requestHandOff.offer(artifactMetaInfo)) {
+            replicationMetrics.handOffStalled();
         }
     }
 
     /**
-     * Sends replication requests to all nexus servers configured in XML file
+     * Appends replication requests to the queues of the peer lanes which filters accept the artifacts.
+     * Requests accepted by the lane are persisted by one queue store write. Requests are appended again
+     * only to the lanes that failed to append them on the previous attempts, see {@link #isAppended(Map, int)}.
+     * Requests rejected by the full lane queue are not appended again.
      *
-     * @param metaInfo Artifact information
+     * @param progress Index of the first request not appended to the queue of every lane, updated by the call.
+     *                 Empty map for the first attempt.
+     * @return true if every lane durably accepted the requests it filters in, false if some requests failed
+     * to be appended or were rejected
      */
-    public void sendRequest(ArtifactMetaInfo metaInfo) {
-        for (NexusServer server : configurationsManager.getConfiguration().getServers()) {
-            AsyncWebResource.Builder service = getService(server.getUrl(), server.getUser(), server.getPassword());
-            try {
-                service.post(new ITypeListener<RestResponse>() {
-                    @Override
-                    public void onComplete(Future<RestResponse> future) throws InterruptedException {
-                        RestResponse response = null;
-                        try {
-                            response = future.get();
-                        } catch (ExecutionException e) {
-                            log.error("Can not get REST response", e);
-                        }
-                        if (response != null && !response.isSuccess()) {
-                            log.error("Can not send replication request: " + response.getMessage());
-                        }
+    private boolean enqueueRequests(List<ArtifactMetaInfo> artifactMetaInfos, Map<PeerLane, Integer> progress) {
+        if (progress.isEmpty()) {
+            for (int i = 0; i < artifactMetaInfos.size(); i++) {
+                replicationMetrics.artifactEnqueued();
+            }
+        }
+        boolean enqueued = true;
+        for (PeerLane peerLane : peerLanes) {
+            Integer start = progress.get(peerLane);
+            int from = start == null ? 0 : start;
+            List<ArtifactMetaInfo> accepted = new ArrayList<>(artifactMetaInfos.size() - from);
+            int[] indexes = new int[artifactMetaInfos.size() - from];
+            for (int i = from; i < artifactMetaInfos.size(); i++) {
+                ArtifactMetaInfo artifactMetaInfo = artifactMetaInfos.get(i);
+                if (peerLane.getFilter().accepts(artifactMetaInfo)) {
+                    indexes[accepted.size()] = i;
+                    accepted.add(artifactMetaInfo);
+                } else if (start == null) {
+                    peerLane.getMetrics().filtered();
+                }
+            }
+            int reached = artifactMetaInfos.size();
+            if (!accepted.isEmpty() && peerLane.beginOffer()) {
+                try {
+                    int offered = peerLane.getQueue().offerAll(accepted, QUEUE_TIMEOUT_IN_SECOND, TimeUnit.SECONDS);
+                    if (offered < accepted.size()) {
+                        enqueued = false;
                     }
-
-                    @Override
-                    public Class<RestResponse> getType() {
-                        return RestResponse.class;
+                    for (int i = offered; i < accepted.size(); i++) {
+                        peerLane.getMetrics().rejectedByQueue();
                     }
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                    reached = indexes[0];
+                } finally {
+                    peerLane.endOffer();
+                }
+            }
+            progress.put(peerLane, reached);
+            if (reached < artifactMetaInfos.size()) {
+                enqueued = false;
+            }
+        }
+        return enqueued;
+    }
 
-                    @Override
-                    public GenericType<RestResponse> getGenericType() {
-                        return null;
+    /**
+     * @param progress Progress of {@link #enqueueRequests(List, Map)}
+     * @return false if some lane failed to append the requests and they have to be enqueued again
+     */
+    private static boolean isAppended(Map<PeerLane, Integer> progress, int size) {
+        for (int reached : progress.values()) {
+            if (reached < size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isReplicated(ArtifactMetaInfo artifactMetaInfo) {
+        for (PeerLane peerLane : peerLanes) {
+            if (peerLane.getFilter().accepts(artifactMetaInfo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ArtifactFilter getPeerFilter(String peerUrl) {
+        String url = peerUrl.replaceAll("/+$", "");
+        for (PeerLane peerLane : peerLanes) {
+            if (peerLane.getServer().getUrl().replaceAll("/+$", "").equals(url)) {
+                return peerLane.getFilter();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends replication requests to the lane peer. Requests are sent as one binary batch if the binary wire format
+     * is enabled, several requests are sent as one XML batch if the peer supports batch API. Delivered requests
+     * are acknowledged, requests that were not delivered because the peer is unavailable are scheduled for retry.
+     * Requests the peer responded to with failure are retried one by one, see
+     * {@link #onDelivered(PeerLane, List, List)}. Checksums of the files are not sent to the peer that rejected them,
+     * files of the artifact set are sent by separate requests to the peer that rejected sets.
+     * Send latency and the outcome of every HTTP request are registered in the lane metrics.
+     *
+     * @param peerLane Peer lane
+     * @param entries  Replication requests
+     */
+    private void deliver(PeerLane peerLane, List<QueueEntry> entries) {
+        PeerMetrics metrics = peerLane.getMetrics();
+        boolean checksumsSupported = peerLane.isChecksumsSupported();
+        List<ArtifactMetaInfo> metaInfos = new ArrayList<>(entries.size());
+        for (QueueEntry entry : entries) {
+            ArtifactMetaInfo metaInfo = entry.getArtifactMetaInfo();
+            metaInfos.add(checksumsSupported ? metaInfo : withoutChecksums(metaInfo));
+        }
+        if (peerLane.isBinarySupported() || (entries.size() > 1 && peerLane.isBatchSupported())) {
+            long started = System.nanoTime();
+            try {
+                List<RestResponse> results = null;
+                if (peerLane.isBinarySupported()) {
+                    results = sendBatchRequest(peerLane, metaInfos, true);
+                }
+                if (results == null && entries.size() > 1 && peerLane.isBatchSupported()) {
+                    results = sendBatchRequest(peerLane, metaInfos, false);
+                }
+                if (results != null) {
+                    metrics.sent(entries.size(), countRejected(results), System.nanoTime() - started);
+                    onDelivered(peerLane, entries, results);
+                    return;
+                }
+            } catch (PeerUnavailableException e) {
+                metrics.failed(entries.size(), System.nanoTime() - started);
+                onFailed(peerLane, entries, e);
+                return;
+            }
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            QueueEntry entry = entries.get(i);
+            long started = System.nanoTime();
+            try {
+                RestResponse result = sendRequest(peerLane.getServer(), metaInfos.get(i), peerLane);
+                metrics.sent(1, result.isSuccess() ? 0 : 1, System.nanoTime() - started);
+                onDelivered(peerLane, Collections.singletonList(entry), Collections.singletonList(result));
+            } catch (PeerUnavailableException e) {
+                metrics.failed(1, System.nanoTime() - started);
+                // The rest of entries would fail the same way
+                onFailed(peerLane, entries.subList(i, entries.size()), e);
+                return;
+            }
+        }
+    }
+
+    private int countRejected(List<RestResponse> results) {
+        int rejected = 0;
+        for (RestResponse result : results) {
+            if (!result.isSuccess()) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Acknowledges requests the peer accepted. Rejected requests are scheduled for retry, so the peer may
+     * accept them once e.g. its proxy repository is created, and dropped after rejectedRequestRetries attempts.
+     *
+     * @param entries Delivered requests
+     * @param results Results of the requests in the same order
+     */
+    private void onDelivered(PeerLane peerLane, List<QueueEntry> entries, List<RestResponse> results) {
+        boolean recovered = peerLane.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED;
+        peerLane.getCircuitBreaker().onSuccess();
+        int maxRetries = configurationsManager.getConfiguration().getRejectedRequestRetries();
+        for (int i = 0; i < entries.size(); i++) {
+            QueueEntry entry = entries.get(i);
+            if (results.get(i).isSuccess()) {
+                peerLane.getQueue().ack(entry);
+                peerLane.getMetrics().acknowledged(entry.getEnqueuedMillis());
+            } else if (entry.rejected() <= maxRetries) {
+                retryScheduler.schedule(peerLane, entry);
+            } else {
+                log.error("Replication request was rejected by " + peerLane.getServer().getUrl() + " "
+                        + entry.getRejections() + " times and is dropped: " + entry.getArtifactMetaInfo());
+                peerLane.getQueue().ack(entry);
+            }
+        }
+        if (recovered) {
+            retryScheduler.flush(peerLane);
+        }
+    }
+
+    private void onFailed(PeerLane peerLane, List<QueueEntry> entries, PeerUnavailableException e) {
+        log.warn("Can not send " + entries.size() + " replication requests to " + peerLane.getServer().getUrl()
+                + ". Requests will be sent again later. " + e.getMessage());
+        log.debug(e.getMessage(), e);
+        peerLane.getCircuitBreaker().onFailure();
+        for (QueueEntry entry : entries) {
+            retryScheduler.schedule(peerLane, entry);
+        }
+    }
+
+    /**
+     * Sends several replication requests to the nexus server in one batch
+     *
+     * @param peerLane  Peer lane
+     * @param metaInfos Artifacts information
+     * @param binary    true to encode the batch by {@link ArtifactMetaInfoBatchCodec}, false to send XML
+     * @return Result of every artifact or null if the peer does not support the batch API of the format
+     * @throws PeerUnavailableException If the requests have to be sent again later
+     */
+    private List<RestResponse> sendBatchRequest(PeerLane peerLane, List<ArtifactMetaInfo> metaInfos, boolean binary)
+            throws PeerUnavailableException {
+        if (!peerLane.isArtifactSetsSupported() && hasArtifactSets(metaInfos)) {
+            return sendSplitBatchRequest(peerLane, metaInfos, binary);
+        }
+        NexusServer server = peerLane.getServer();
+        RestResponse failure;
+        try {
+            BatchRestResponse response = binary
+                    ? getService(server, BINARY_BATCH_UPDATE_RESOURCE, BINARY_BATCH_TYPE)
+                            .post(BatchRestResponse.class, ArtifactMetaInfoBatchCodec.encode(metaInfos))
+                    : getService(server, BATCH_UPDATE_RESOURCE, MediaType.APPLICATION_XML_TYPE)
+                            .post(BatchRestResponse.class, xmlSerializer.marshal(new ArtifactMetaInfoBatch(metaInfos)));
+            if (response.getResults().size() == metaInfos.size()) {
+                for (int i = 0; i < metaInfos.size(); i++) {
+                    RestResponse result = response.getResults().get(i);
+                    if (!result.isSuccess()) {
+                        log.error("Can not send replication request " + metaInfos.get(i) + " to " + server.getUrl()
+                                + ": " + result.getMessage());
                     }
+                }
+                return response.getResults();
+            }
+            failure = new RestResponse(false, "Unexpected number of batch results: " + response.getResults().size());
+            log.error("Can not send replication requests to " + server.getUrl() + ": " + failure.getMessage());
+        } catch (UniformInterfaceException e) {
+            int status = e.getResponse().getStatus();
+            if (status == HTTP_BAD_REQUEST
+                    && (rejectsChecksums(peerLane, metaInfos) || rejectsArtifactSets(peerLane, metaInfos))) {
+                return sendBatchRequest(peerLane, withoutChecksums(metaInfos), binary);
+            }
+            if (binary && (status == HTTP_NOT_FOUND || status == HTTP_METHOD_NOT_ALLOWED
+                    || status == HTTP_UNSUPPORTED_MEDIA_TYPE)) {
+                log.warn("Peer " + server.getUrl() + " does not support binary replication requests. Requests are sent as XML.");
+                peerLane.setBinarySupported(false);
+                return null;
+            }
+            if (status == HTTP_NOT_FOUND || status == HTTP_METHOD_NOT_ALLOWED) {
+                log.warn("Peer " + server.getUrl() + " does not support batch replication requests. Requests are sent one by one.");
+                peerLane.setBatchSupported(false);
+                return null;
+            }
+            if (isRetryable(status)) {
+                throw new PeerUnavailableException("Peer responded with status " + status, e);
+            }
+            log.error("Can not send replication requests to " + server.getUrl(), e);
+            failure = new RestResponse(false, e.getMessage());
+        } catch (ClientHandlerException e) {
+            throw new PeerUnavailableException(e.getMessage(), e);
+        } catch (IOException | JAXBException e) {
+            throw new IllegalStateException("Can not encode replication requests", e);
+        }
+        return Collections.nCopies(metaInfos.size(), failure);
+    }
+
+    /**
+     * Sends every file of the artifact sets as a separate request of one batch
+     *
+     * @return Result of every artifact set, failure if any of its files failed, or null if the peer does not
+     * support the batch API of the format
+     */
+    private List<RestResponse> sendSplitBatchRequest(PeerLane peerLane, List<ArtifactMetaInfo> metaInfos,
+                                                     boolean binary) throws PeerUnavailableException {
+        List<ArtifactMetaInfo> fileRequests = new ArrayList<>();
+        int[] fileCounts = new int[metaInfos.size()];
+        for (int i = 0; i < metaInfos.size(); i++) {
+            List<ArtifactMetaInfo> split = splitArtifactSet(metaInfos.get(i));
+            fileCounts[i] = split.size();
+            fileRequests.addAll(split);
+        }
+        List<RestResponse> fileResults = sendBatchRequest(peerLane, fileRequests, binary);
+        if (fileResults == null) {
+            return null;
+        }
+        List<RestResponse> results = new ArrayList<>(metaInfos.size());
+        int next = 0;
+        for (int fileCount : fileCounts) {
+            RestResponse result = fileResults.get(next);
+            for (int i = next; i < next + fileCount; i++) {
+                if (!fileResults.get(i).isSuccess()) {
+                    result = fileResults.get(i);
+                    break;
+                }
+            }
+            results.add(result);
+            next += fileCount;
+        }
+        return results;
+    }
 
-                }, metaInfo);
-            } catch (RejectedExecutionException e) {
-                log.warn("Requests queue is full. Request to " + server.getUrl() + " is rejected");
+    /**
+     * Sends replication request to the nexus server
+     *
+     * @param server   Peer configuration
+     * @param metaInfo Artifact information
+     * @return Result of the request
+     * @throws PeerUnavailableException If the request has to be sent again later
+     */
+    public RestResponse sendRequest(NexusServer server, ArtifactMetaInfo metaInfo) throws PeerUnavailableException {
+        return sendRequest(server, metaInfo, null);
+    }
+
+    /**
+     * Sends replication request to the nexus server
+     *
+     * @param server   Peer configuration
+     * @param metaInfo Artifact information
+     * @param peerLane Lane of the peer, request rejected because of the checksums is sent again without them,
+     *                 rejected artifact set is sent by a request per file. Null to send the request as is.
+     * @return Result of the request
+     * @throws PeerUnavailableException If the request has to be sent again later
+     */
+    private RestResponse sendRequest(NexusServer server, ArtifactMetaInfo metaInfo, PeerLane peerLane)
+            throws PeerUnavailableException {
+        if (peerLane != null && !peerLane.isArtifactSetsSupported() && isArtifactSet(metaInfo)) {
+            RestResponse result = null;
+            for (ArtifactMetaInfo fileRequest : splitArtifactSet(metaInfo)) {
+                result = sendRequest(server, fileRequest, peerLane);
+                if (!result.isSuccess()) {
+                    break;
+                }
+            }
+            return result;
+        }
+        WebResource.Builder service = getService(server, UPDATE_RESOURCE, MediaType.APPLICATION_XML_TYPE);
+        try {
+            RestResponse response = service.post(RestResponse.class, xmlSerializer.marshal(metaInfo));
+            if (response != null && !response.isSuccess()) {
+                log.error("Can not send replication request to " + server.getUrl() + ": " + response.getMessage());
+            }
+            return response != null ? response : new RestResponse(false, "Empty response");
+        } catch (UniformInterfaceException e) {
+            int status = e.getResponse().getStatus();
+            if (status == HTTP_BAD_REQUEST && peerLane != null
+                    && (rejectsChecksums(peerLane, Collections.singletonList(metaInfo))
+                    || rejectsArtifactSets(peerLane, Collections.singletonList(metaInfo)))) {
+                return sendRequest(server, withoutChecksums(metaInfo), peerLane);
             }
+            if (isRetryable(status)) {
+                throw new PeerUnavailableException("Peer responded with status " + status, e);
+            }
+            log.error("Can not send replication request to " + server.getUrl(), e);
+            return new RestResponse(false, e.getMessage());
+        } catch (ClientHandlerException e) {
+            throw new PeerUnavailableException(e.getMessage(), e);
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Can not encode replication request", e);
         }
     }
 
     /**
-     * Returns jersey HTTP resource to access to the remote replication servers
+     * Peers running the plugin versions without checksum support respond to the unknown sha1 and size
+     * with 400 Bad Request. Lane stops sending checksums to the peer once it happens.
      *
-     * @param nexusUrl URL of the remote server
-     * @param login    Username on the remote server
-     * @param password User's password
-     * @return Jersey HTTP client
-     */
-    private AsyncWebResource.Builder getService(String nexusUrl, String login, String password) {
-        Client client = getClient(login, password);
-        client.setExecutorService(jerseyHttpClientExecutor);
-        AsyncWebResource webResource = client.asyncResource(UriBuilder.fromUri(nexusUrl).build());
-        webResource = webResource.path("service").path("local").path("artifact").path("maven").path("update");
-        return webResource.accept(MediaType.APPLICATION_XML_TYPE)
-                .type(MediaType.APPLICATION_XML_TYPE);
+     * @return true if the rejected requests had checksums and have to be sent again without them
+     */
+    private boolean rejectsChecksums(PeerLane peerLane, List<ArtifactMetaInfo> metaInfos) {
+        for (ArtifactMetaInfo metaInfo : metaInfos) {
+            if (ArtifactMetaInfoCodec.hasChecksums(metaInfo)) {
+                if (peerLane.isChecksumsSupported()) {
+                    log.warn("Peer " + peerLane.getServer().getUrl() + " does not support file checksums."
+                            + " Requests are sent without them.");
+                    peerLane.setChecksumsSupported(false);
+                }
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Creates jersey HTTP client
+     * Peers running the plugin versions without artifact sets reject the unknown files and metadataUpdated fields
+     * with 400 Bad Request, binary batch of version 2 is rejected as unsupported. Lane sends every file of the set
+     * by a separate request to the peer once it happens. Checksums are stripped first, since the peer may accept
+     * the set without them.
      *
-     * @param login    Username on the remote server
-     * @param password User's password
-     * @return HTTP client
-     */
-    private Client getClient(String login, String password) {
-        ClientConfig config = new DefaultClientConfig();
-        config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, 1000);
-        config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, 2000);
-        Client client = Client.create(config);
-        client.setExecutorService(jerseyHttpClientExecutor);
-        if (login != null && !login.isEmpty() && password != null) {
-            log.debug("Creating HTTP client with authorized HTTPBasicAuthFilter.");
-            client.addFilter(new HTTPBasicAuthFilter(login, password));
-        } else {
-            log.debug("Creating HTTP client with anonymous HTTPBasicAuthFilter.");
-        }
-        return client;
+     * @return true if the rejected requests had artifact sets and have to be sent again split
+     */
+    private boolean rejectsArtifactSets(PeerLane peerLane, List<ArtifactMetaInfo> metaInfos) {
+        if (!peerLane.isArtifactSetsSupported() || !hasArtifactSets(metaInfos)) {
+            return false;
+        }
+        log.warn("Peer " + peerLane.getServer().getUrl() + " does not support artifact sets."
+                + " Every file is sent by a separate request.");
+        peerLane.setArtifactSetsSupported(false);
+        return true;
+    }
+
+    private static boolean hasArtifactSets(List<ArtifactMetaInfo> metaInfos) {
+        for (ArtifactMetaInfo metaInfo : metaInfos) {
+            if (isArtifactSet(metaInfo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isArtifactSet(ArtifactMetaInfo metaInfo) {
+        return metaInfo.getFiles() != null || metaInfo.isMetadataUpdated();
+    }
+
+    /**
+     * @return Request of the main file followed by the request of every other file of the set, without
+     * checksums and the metadata flag
+     */
+    private static List<ArtifactMetaInfo> splitArtifactSet(ArtifactMetaInfo metaInfo) {
+        List<ArtifactMetaInfo> split = new ArrayList<>();
+        split.add(fileRequest(metaInfo, metaInfo.getClassifier(), metaInfo.getExtension()));
+        if (metaInfo.getFiles() != null) {
+            for (ArtifactFile file : metaInfo.getFiles()) {
+                split.add(fileRequest(metaInfo, file.getClassifier(), file.getExtension()));
+            }
+        }
+        return split;
+    }
+
+    private static ArtifactMetaInfo fileRequest(ArtifactMetaInfo metaInfo, String classifier, String extension) {
+        ArtifactMetaInfo fileRequest = new ArtifactMetaInfo(metaInfo.getNexusUrl(), metaInfo.getGroupId(),
+                metaInfo.getArtifactId(), metaInfo.getVersion(), metaInfo.getRepositoryId());
+        fileRequest.setPackaging(metaInfo.getPackaging());
+        fileRequest.setClassifier(classifier);
+        fileRequest.setExtension(extension);
+        return fileRequest;
+    }
+
+    private static List<ArtifactMetaInfo> withoutChecksums(List<ArtifactMetaInfo> metaInfos) {
+        List<ArtifactMetaInfo> stripped = new ArrayList<>(metaInfos.size());
+        for (ArtifactMetaInfo metaInfo : metaInfos) {
+            stripped.add(withoutChecksums(metaInfo));
+        }
+        return stripped;
+    }
+
+    /**
+     * @return Copy of the request without sha1 checksums and sizes of the files
+     */
+    private static ArtifactMetaInfo withoutChecksums(ArtifactMetaInfo metaInfo) {
+        if (!ArtifactMetaInfoCodec.hasChecksums(metaInfo)) {
+            return metaInfo;
+        }
+        ArtifactMetaInfo stripped = new ArtifactMetaInfo(metaInfo.getNexusUrl(), metaInfo.getGroupId(),
+                metaInfo.getArtifactId(), metaInfo.getVersion(), metaInfo.getRepositoryId());
+        stripped.setPackaging(metaInfo.getPackaging());
+        stripped.setClassifier(metaInfo.getClassifier());
+        stripped.setExtension(metaInfo.getExtension());
+        stripped.setMetadataUpdated(metaInfo.isMetadataUpdated());
+        if (metaInfo.getFiles() != null) {
+            List<ArtifactFile> files = new ArrayList<>(metaInfo.getFiles().size());
+            for (ArtifactFile file : metaInfo.getFiles()) {
+                files.add(new ArtifactFile(file.getClassifier(), file.getExtension()));
+            }
+            stripped.setFiles(files);
+        }
+        return stripped;
+    }
+
+    /**
+     * Peer errors and authorization failures may pass, other client errors are permanent
+     */
+    private boolean isRetryable(int status) {
+        return status >= HTTP_SERVER_ERROR || status == HTTP_UNAUTHORIZED || status == HTTP_FORBIDDEN
+                || status == HTTP_REQUEST_TIMEOUT || status == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Returns jersey HTTP resource to access to the remote replication server
+     *
+     * @param server   Peer configuration
+     * @param resource Name of the replication resource
+     * @param type     Content type of the request
+     * @return Jersey HTTP resource
+     */
+    private WebResource.Builder getService(NexusServer server, String resource, MediaType type) {
+        Client client = peerClientCache.getClient(server);
+        WebResource webResource = client.resource(UriBuilder.fromUri(server.getUrl()).build());
+        webResource = webResource.path("service").path("local").path("artifact").path("maven").path(resource);
+        return webResource.accept(MediaType.APPLICATION_XML_TYPE)
+                .type(type);
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.metrics.PeerMetrics;
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Jersey client filter counts bytes of the request entities sent to the peer and bytes of the responses
+ * reported by their Content-Length
+ */
+public class ByteCountingFilter extends ClientFilter {
+
+    private final PeerMetrics peerMetrics;
+
+    public ByteCountingFilter(PeerMetrics peerMetrics) {
+        this.peerMetrics = peerMetrics;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        request.setAdapter(new CountingAdapter(request.getAdapter()));
+        ClientResponse response = getNext().handle(request);
+        if (response.getLength() > 0) {
+            peerMetrics.bytesReceived(response.getLength());
+        }
+        return response;
+    }
+
+    private class CountingAdapter extends AbstractClientRequestAdapter {
+
+        private CountingAdapter(ClientRequestAdapter adapter) {
+            super(adapter);
+        }
+
+        @Override
+        public OutputStream adapt(ClientRequest request, OutputStream out) throws IOException {
+            return new FilterOutputStream(getAdapter().adapt(request, out)) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    peerMetrics.bytesSent(1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    peerMetrics.bytesSent(len);
+                }
+            };
+        }
+    }
+}
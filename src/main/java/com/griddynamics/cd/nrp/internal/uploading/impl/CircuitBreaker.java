@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pauses delivery to the peer after several consecutive failures. When the pause elapses a single probe
+ * request is let through: success resumes delivery at full speed, failure pauses the peer again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String peerUrl;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    /**
+     * @param peerUrl          URL of the peer, used in log messages
+     * @param failureThreshold Number of consecutive failures that pauses the peer
+     * @param openMillis       Pause before the probe request
+     */
+    public CircuitBreaker(String peerUrl, int failureThreshold, long openMillis) {
+        this.peerUrl = peerUrl;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Waits while delivery to the peer is paused
+     * @return true if the caller is the probe and has to send a single request
+     */
+    public synchronized boolean acquire() throws InterruptedException {
+        while (true) {
+            if (state == State.CLOSED) {
+                return false;
+            }
+            if (state == State.OPEN) {
+                long remaining = openedAt + openMillis - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    state = State.HALF_OPEN;
+                    log.info("Probing peer " + peerUrl);
+                    return true;
+                }
+                wait(remaining);
+            } else {
+                // Probe is in flight
+                wait();
+            }
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Peer " + peerUrl + " is available. Delivery is resumed.");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        notifyAll();
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Peer " + peerUrl + " is unavailable. Delivery is paused for " + openMillis + " ms.");
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            notifyAll();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the configuration file with NIO {@link WatchService} and runs the callback when the file is changed.
+ * Events arriving within the quiet period are coalesced, so the file is reloaded once after the editor
+ * has finished writing it.
+ */
+public class ConfigurationWatcher implements Closeable {
+
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final Logger log = LoggerFactory.getLogger(ConfigurationWatcher.class);
+
+    private final File file;
+    private final Runnable callback;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param file     Watched file
+     * @param callback Runs on the watcher thread when the file is created or modified
+     */
+    public ConfigurationWatcher(File file, Runnable callback) throws IOException {
+        this.file = file;
+        this.callback = callback;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        file.getAbsoluteFile().getParentFile().toPath().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "replication-configuration-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = isChanged(key);
+                // Coalesces events of the same write
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= isChanged(key);
+                }
+                if (changed) {
+                    log.info("Configuration file changed: " + file.getAbsolutePath());
+                    try {
+                        callback.run();
+                    } catch (RuntimeException e) {
+                        log.error("Can not apply changed configuration", e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Configuration watcher stopped");
+        }
+    }
+
+    private boolean isChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || context instanceof Path && file.getName().equals(context.toString())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
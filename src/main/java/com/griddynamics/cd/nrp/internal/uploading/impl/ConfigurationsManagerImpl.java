@@ -16,22 +16,27 @@
 package com.griddynamics.cd.nrp.internal.uploading.impl;
 
 import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.serialization.XmlSerializer;
+import com.griddynamics.cd.nrp.internal.serialization.impl.XmlSerializerImpl;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationChangedEvent;
 import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
 import org.sonatype.nexus.configuration.application.NexusConfiguration;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
+import org.sonatype.sisu.goodies.eventbus.EventBus;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Class provides access to plugin configurations
- * parsed from {@link ConfigurationsManagerImpl#CONFIG_FILENAME} file
+ * parsed from {@link ConfigurationsManagerImpl#CONFIG_FILENAME} file.
+ * File is watched for changes, every successfully parsed change is posted as {@link ConfigurationChangedEvent}.
  */
 @Singleton
 @Named(value = ConfigurationsManagerImpl.ID)
@@ -49,14 +54,29 @@ public class ConfigurationsManagerImpl extends ComponentSupport implements Confi
      */
     private NexusConfiguration nexusConfiguration;
 
+    /**
+     * Global nexus event bus the configuration changes are posted to
+     */
+    private EventBus eventBus;
+
+    /**
+     * Parses the configuration file with the prebuilt JAXB context
+     */
+    private XmlSerializer xmlSerializer;
+
     /**
      * DTO contains plugin configurations
      */
     private volatile ReplicationPluginConfiguration config;
 
+    private ConfigurationWatcher configurationWatcher;
+
     @Inject
-    public ConfigurationsManagerImpl(NexusConfiguration nexusConfiguration) {
+    public ConfigurationsManagerImpl(NexusConfiguration nexusConfiguration, EventBus eventBus,
+                                     @Named(XmlSerializerImpl.ID) XmlSerializer xmlSerializer) {
         this.nexusConfiguration = nexusConfiguration;
+        this.eventBus = eventBus;
+        this.xmlSerializer = xmlSerializer;
     }
 
     /**
@@ -66,7 +86,25 @@ public class ConfigurationsManagerImpl extends ComponentSupport implements Confi
     @PostConstruct
     public void init() {
         log.trace("Initializing plugin configurations");
-        reloadConfigurations();
+        getConfiguration();
+        try {
+            configurationWatcher = new ConfigurationWatcher(getConfigurationFile(), new Runnable() {
+                @Override
+                public void run() {
+                    reloadConfigurations();
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Can not watch configuration file, changes are applied after restart: "
+                    + getConfigurationFile().getAbsolutePath(), e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (configurationWatcher != null) {
+            configurationWatcher.close();
+        }
     }
 
     /**
@@ -87,17 +125,19 @@ public class ConfigurationsManagerImpl extends ComponentSupport implements Confi
 
     /**
      * Reloads {@link ConfigurationsManagerImpl#config}
-     * from XML plugin configurations file
+     * from XML plugin configurations file. Previous configuration is kept if the file can not be parsed.
      */
-    public void reloadConfigurations() {
+    public synchronized void reloadConfigurations() {
         File file = getConfigurationFile();
+        ReplicationPluginConfiguration oldConfig = config;
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(ReplicationPluginConfiguration.class);
-
-            Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-            config = (ReplicationPluginConfiguration) jaxbUnmarshaller.unmarshal(file);
+            config = xmlSerializer.unmarshal(file, ReplicationPluginConfiguration.class);
         } catch (JAXBException e) {
             log.error("Can not deserialize xml configuration file: " + file.getAbsolutePath(), e);
+            return;
+        }
+        if (oldConfig != null) {
+            eventBus.post(new ConfigurationChangedEvent(oldConfig, config));
         }
     }
 
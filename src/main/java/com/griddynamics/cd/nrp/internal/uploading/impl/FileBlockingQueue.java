@@ -1,84 +1,542 @@
 package com.griddynamics.cd.nrp.internal.uploading.impl;
 
-import com.google.common.collect.Sets;
+import com.griddynamics.cd.nrp.internal.metrics.QueueGauge;
 import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
-import com.griddynamics.cd.nrp.internal.model.internal.ArtifactMetaInfoQueueDump;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import java.io.File;
-import java.util.concurrent.BlockingQueue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Stores artifacts that Plugin failed to send to another Nexus instance. If that happens, we don't want
  * to loose the history of updates and therefore we'll retry sending the requests even if Nexus Sender
- * was restarted.
+ * was restarted. Every queue operation is persisted to the {@link QueueStore}.
+ * <p/>
+ * Taken entry is leased: it is invisible to other consumers until it is acknowledged or its lease expires.
+ * Queue has no global lock: entries ready to be taken are kept in the lock-free {@link LinkedTransferQueue},
+ * capacity is a {@link Semaphore} permit held by every entry until it is acknowledged.
+ * <p/>
+ * If the queue has a {@link SpillQueue}, requests that do not fit into the capacity are spilled to disk instead of
+ * being rejected. While there are spilled requests new requests are spilled too, so the order is kept. Spilled
+ * requests are moved back in batches once enough capacity is released by acknowledgements.
+ * <p/>
+ * If SNAPSHOT coalescing is enabled, offered SNAPSHOT notification supersedes the waiting notification about
+ * the same artifact: the waiting one is acknowledged without being sent.
  */
-public class FileBlockingQueue {
+public class FileBlockingQueue implements QueueGauge {
 
-    private final BlockingQueue<ArtifactMetaInfo> internalBlockingQueue;
-    private final String blockingQueueDumpFileName;
+    /**
+     * Lease deadline of the entry that is not taken
+     */
+    private static final long NOT_LEASED = Long.MAX_VALUE;
+
+    /**
+     * Lease deadline of the taken entry waiting outside of the queue for the next delivery attempt
+     */
+    private static final long DEFERRED = Long.MAX_VALUE - 1;
+
+    /**
+     * Maximum number of spilled requests moved back to the queue at once
+     */
+    private static final int REFILL_BATCH_SIZE = 256;
+
+    private final LinkedTransferQueue<QueueEntry> readyEntries = new LinkedTransferQueue<>();
+    /**
+     * Unacknowledged entries and their lease deadlines
+     */
+    private final ConcurrentMap<QueueEntry, Long> unackedEntries = new ConcurrentHashMap<>();
+    private final ResizableSemaphore capacity;
+    /**
+     * Configured capacity. Available permits are negative while more entries are unacknowledged than it allows.
+     */
+    private volatile int capacityLimit;
+    private final QueueStore queueStore;
+    /**
+     * Overflow tier, null if requests that do not fit are rejected
+     */
+    private final SpillQueue spillQueue;
+    /**
+     * True while there are spilled requests, offered requests are spilled too
+     */
+    private volatile boolean spilling;
+    private final AtomicLong spilled = new AtomicLong();
+    private final long leaseMillis;
+    private final AtomicLong nextLeaseCheck = new AtomicLong();
+    /**
+     * Latest unacknowledged entry of every SNAPSHOT artifact
+     */
+    private final ConcurrentMap<SnapshotKey, QueueEntry> snapshotEntries = new ConcurrentHashMap<>();
+    private final AtomicLong superseded = new AtomicLong();
+    private volatile boolean snapshotCoalescing;
 
     private final Logger log = LoggerFactory.getLogger(FileBlockingQueue.class);
 
-    public FileBlockingQueue(BlockingQueue<ArtifactMetaInfo> blockingQueue, String blockingQueueDumpFileName) {
-        this.internalBlockingQueue = blockingQueue;
-        this.blockingQueueDumpFileName = blockingQueueDumpFileName;
+    /**
+     * @param capacity         Maximum number of unacknowledged entries
+     * @param recoveredEntries Entries recovered from the store
+     * @param queueStore       Durable storage the queue operations are persisted to
+     * @param leaseMillis      Time the taken entry stays invisible if it is not acknowledged
+     */
+    public FileBlockingQueue(int capacity, List<QueueEntry> recoveredEntries, QueueStore queueStore, long leaseMillis) {
+        this(capacity, recoveredEntries, queueStore, null, leaseMillis);
     }
 
+    /**
+     * If more entries are recovered than the capacity allows, new entries are accepted (or spilled requests moved
+     * back) only after enough recovered entries are acknowledged.
+     *
+     * @param capacity         Maximum number of unacknowledged entries kept in memory
+     * @param recoveredEntries Entries recovered from the store
+     * @param queueStore       Durable storage the queue operations are persisted to
+     * @param spillQueue       Recovered overflow tier or null if requests that do not fit are rejected
+     * @param leaseMillis      Time the taken entry stays invisible if it is not acknowledged
+     */
+    public FileBlockingQueue(int capacity, List<QueueEntry> recoveredEntries, QueueStore queueStore,
+                             SpillQueue spillQueue, long leaseMillis) {
+        this.spillQueue = spillQueue;
+        this.spilling = spillQueue != null && spillQueue.size() > 0;
+        this.capacity = new ResizableSemaphore(capacity - recoveredEntries.size());
+        this.capacityLimit = capacity;
+        this.queueStore = queueStore;
+        this.leaseMillis = leaseMillis;
+        for (QueueEntry entry : recoveredEntries) {
+            unackedEntries.put(entry, NOT_LEASED);
+            readyEntries.offer(entry);
+            SnapshotKey key = SnapshotKey.of(entry.getArtifactMetaInfo());
+            if (key != null) {
+                snapshotEntries.put(key, entry);
+            }
+        }
+        refillIfReady();
+    }
+
+    /**
+     * @param snapshotCoalescing true if offered SNAPSHOT notifications supersede the waiting ones
+     */
+    public void setSnapshotCoalescing(boolean snapshotCoalescing) {
+        this.snapshotCoalescing = snapshotCoalescing;
+    }
+
+    /**
+     * Offers the request. Request that does not fit is spilled at once if the queue has a spill,
+     * otherwise it waits up to the timeout for the capacity.
+     * @return false if the request is rejected
+     */
     public boolean offer(ArtifactMetaInfo e, long timeout, TimeUnit timeUnit) throws InterruptedException {
-        synchronized (internalBlockingQueue) {
-            boolean retVal = internalBlockingQueue.offer(e, timeout, timeUnit);
-            saveQueueToFile();
-            internalBlockingQueue.notify();
-            return retVal;
+        if (!spilling && capacity.tryAcquire(spillQueue == null ? timeout : 0, timeUnit)) {
+            try {
+                enqueue(queueStore.append(e));
+                return true;
+            } catch (IOException ex) {
+                log.error("Can not persist replication request: " + e, ex);
+                capacity.release();
+                if (spillQueue == null) {
+                    return false;
+                }
+            }
+        } else if (spillQueue == null) {
+            log.warn("Replication queue is full. Request is rejected: " + e);
+            return false;
         }
+        return spill(Collections.singletonList(e));
     }
 
-    public ArtifactMetaInfo peek() throws InterruptedException {
-        synchronized (internalBlockingQueue) {
-            while (internalBlockingQueue.isEmpty()) {
-                internalBlockingQueue.wait();
+    /**
+     * Offers several requests and persists them with a single queue store write. Requests that do not fit
+     * are spilled at once if the queue has a spill, otherwise they wait up to the timeout for the capacity
+     * and are rejected starting from the last one. If the store write fails, all requests are spilled
+     * or rejected.
+     * @return Number of accepted requests
+     */
+    public int offerAll(List<ArtifactMetaInfo> artifactMetaInfos, long timeout, TimeUnit timeUnit)
+            throws InterruptedException {
+        int accepted = 0;
+        if (!spilling) {
+            long deadline = System.nanoTime() + (spillQueue == null ? timeUnit.toNanos(timeout) : 0);
+            while (accepted < artifactMetaInfos.size()
+                    && capacity.tryAcquire(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+                accepted++;
+            }
+        }
+        if (accepted > 0) {
+            try {
+                for (QueueEntry entry : queueStore.appendAll(artifactMetaInfos.subList(0, accepted))) {
+                    enqueue(entry);
+                }
+            } catch (IOException e) {
+                log.error("Can not persist " + accepted + " replication requests", e);
+                capacity.release(accepted);
+                if (spillQueue == null) {
+                    return 0;
+                }
+                accepted = 0;
             }
-            return internalBlockingQueue.peek();
         }
+        if (accepted == artifactMetaInfos.size()) {
+            return accepted;
+        }
+        if (spillQueue == null) {
+            log.warn("Replication queue is full. " + (artifactMetaInfos.size() - accepted) + " requests are rejected");
+            return accepted;
+        }
+        return spill(artifactMetaInfos.subList(accepted, artifactMetaInfos.size()))
+                ? artifactMetaInfos.size() : accepted;
     }
 
-    public ArtifactMetaInfo take() throws InterruptedException {
-        synchronized (internalBlockingQueue) {
-            while (internalBlockingQueue.isEmpty()) {
-                internalBlockingQueue.wait();
+    /**
+     * Retrieves and leases the head of the queue, waiting if necessary until an element becomes available.
+     * The entry stays in the store until it is acknowledged, so it is restored if Nexus stops before
+     * the request is delivered.
+     */
+    public QueueEntry take() throws InterruptedException {
+        while (true) {
+            QueueEntry entry = poll(leaseMillis, TimeUnit.MILLISECONDS);
+            if (entry != null) {
+                return entry;
             }
-            ArtifactMetaInfo retVal = internalBlockingQueue.take();
-            saveQueueToFile();
-            return retVal;
+        }
+    }
 
+    /**
+     * Retrieves and leases the head of the queue, waiting up to the timeout until an element becomes available
+     * @return Leased entry or null if the timeout elapsed
+     */
+    public QueueEntry poll(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (true) {
+            expireLeases();
+            long remaining = deadline - System.nanoTime();
+            QueueEntry entry = remaining > 0
+                    ? readyEntries.poll(remaining, TimeUnit.NANOSECONDS)
+                    : readyEntries.poll();
+            if (entry == null) {
+                return null;
+            }
+            if (lease(entry)) {
+                return entry;
+            }
         }
     }
 
-    private synchronized void saveQueueToFile() {
+    /**
+     * Retrieves and leases up to maxEntries from the head of the queue. Waits until the first entry becomes
+     * available and then up to lingerMillis for more entries to arrive.
+     * @param maxEntries Maximum number of returned entries
+     * @param lingerMillis Time to wait for more entries after the first one is taken
+     */
+    public List<QueueEntry> take(int maxEntries, long lingerMillis) throws InterruptedException {
+        List<QueueEntry> entries = new ArrayList<>(maxEntries);
+        entries.add(take());
+        long deadline = System.currentTimeMillis() + lingerMillis;
+        while (entries.size() < maxEntries) {
+            QueueEntry entry = readyEntries.poll();
+            if (entry == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                entry = readyEntries.poll(remaining, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    break;
+                }
+            }
+            if (lease(entry)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
 
-        try {
-            String backupBlockingQueueDumpFileName = blockingQueueDumpFileName + ".bak";
-            File blockingQueueDumpFile = new File(blockingQueueDumpFileName);
-            if (blockingQueueDumpFile.exists() && !blockingQueueDumpFile.isDirectory()) {
-                FileUtils.copyFile(blockingQueueDumpFile, new File(backupBlockingQueueDumpFileName));
+    /**
+     * Releases the lease of the taken entry, so it does not expire while the entry waits for the next
+     * delivery attempt outside of the queue. Entry is returned by {@link #requeue(QueueEntry)}.
+     * Entry which lease has already expired is left in the queue.
+     * @param entry Entry returned by {@link #take()}
+     */
+    public void defer(QueueEntry entry) {
+        while (true) {
+            Long deadline = unackedEntries.get(entry);
+            if (deadline == null || deadline == NOT_LEASED || deadline == DEFERRED
+                    || unackedEntries.replace(entry, deadline, DEFERRED)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns deferred entry back to the queue to be delivered again
+     * @param entry Entry passed to {@link #defer(QueueEntry)}
+     * @return false if the entry is already acknowledged or returned to the queue
+     */
+    public boolean requeue(QueueEntry entry) {
+        if (!unackedEntries.replace(entry, DEFERRED, NOT_LEASED)) {
+            return false;
+        }
+        readyEntries.offer(entry);
+        return true;
+    }
+
+    /**
+     * Removes delivered entry from the store
+     * @param entry Entry returned by {@link #take()}
+     */
+    public void ack(QueueEntry entry) {
+        if (unackedEntries.remove(entry) != null) {
+            forget(entry);
+            ackInStore(entry);
+            capacity.release();
+            refillIfReady();
+        }
+    }
+
+    /**
+     * Changes maximum number of unacknowledged entries. If the capacity is reduced below the number
+     * of unacknowledged entries, new entries are accepted only after enough entries are acknowledged.
+     * @param newCapacity Maximum number of unacknowledged entries
+     */
+    public synchronized void setCapacity(int newCapacity) {
+        int delta = newCapacity - capacityLimit;
+        if (delta > 0) {
+            capacity.release(delta);
+        } else if (delta < 0) {
+            capacity.reducePermits(-delta);
+        }
+        capacityLimit = newCapacity;
+        refillIfReady();
+    }
+
+    /**
+     * Closes the queue store. Unacknowledged entries stay in the store and are restored when it is opened again.
+     */
+    public void close() throws IOException {
+        queueStore.close();
+        if (spillQueue != null) {
+            spillQueue.close();
+        }
+    }
+
+    /**
+     * @return Number of unacknowledged entries, including taken and spilled ones
+     */
+    public int size() {
+        return (int) Math.min(unackedEntries.size() + getSpillDepth(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getDepth() {
+        return size();
+    }
+
+    @Override
+    public long getSuperseded() {
+        return superseded.get();
+    }
+
+    @Override
+    public long getSpillDepth() {
+        return spillQueue == null ? 0 : spillQueue.size();
+    }
+
+    @Override
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    /**
+     * Scans unacknowledged entries, so it is not intended for the hot path. Spilled entries are not scanned,
+     * they are newer than the entries in memory.
+     */
+    @Override
+    public long getOldestEntryAgeMillis() {
+        long oldest = Long.MAX_VALUE;
+        for (QueueEntry entry : unackedEntries.keySet()) {
+            oldest = Math.min(oldest, entry.getEnqueuedMillis());
+        }
+        return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * Makes the entry invisible to other consumers. Entry may be in the ready entries more than once, e.g. returned
+     * by the expired lease while its delivery is being retried, only the first copy is leased.
+     * @return false if the entry is acknowledged, leased or deferred
+     */
+    private boolean lease(QueueEntry entry) {
+        return unackedEntries.replace(entry, NOT_LEASED, System.currentTimeMillis() + leaseMillis);
+    }
+
+    /**
+     * Returns entries with expired leases to the queue. Check runs at most once per half of the lease time.
+     */
+    private void expireLeases() {
+        long now = System.currentTimeMillis();
+        long check = nextLeaseCheck.get();
+        if (now < check || !nextLeaseCheck.compareAndSet(check, now + leaseMillis / 2)) {
+            return;
+        }
+        for (Map.Entry<QueueEntry, Long> unacked : unackedEntries.entrySet()) {
+            Long deadline = unacked.getValue();
+            if (deadline < now && unackedEntries.replace(unacked.getKey(), deadline, NOT_LEASED)) {
+                log.warn("Lease of the replication request expired, request is returned to the queue: "
+                        + unacked.getKey().getArtifactMetaInfo());
+                readyEntries.offer(unacked.getKey());
             }
-            JAXBContext jaxbContext = JAXBContext.newInstance(ArtifactMetaInfoQueueDump.class);
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            ArtifactMetaInfoQueueDump artifactMetaInfoBlockingQueueDump =
-                    new ArtifactMetaInfoQueueDump();
-            artifactMetaInfoBlockingQueueDump.addAllArtifactMetaInfo(Sets.newHashSet(internalBlockingQueue));
-            marshaller.marshal(artifactMetaInfoBlockingQueueDump, blockingQueueDumpFile);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
         }
+    }
 
+    private void enqueue(QueueEntry entry) {
+        unackedEntries.put(entry, NOT_LEASED);
+        readyEntries.offer(entry);
+        if (snapshotCoalescing) {
+            supersede(entry);
+        }
+    }
 
+    /**
+     * Appends requests to the spill and moves spilled requests back if the capacity was released meanwhile
+     * @return false if the requests could not be written
+     */
+    private boolean spill(List<ArtifactMetaInfo> artifactMetaInfos) {
+        synchronized (spillQueue) {
+            try {
+                spillQueue.append(artifactMetaInfos);
+            } catch (IOException e) {
+                log.error("Can not spill " + artifactMetaInfos.size() + " replication requests to disk", e);
+                return false;
+            }
+            spilling = true;
+        }
+        spilled.addAndGet(artifactMetaInfos.size());
+        refillIfReady();
+        return true;
     }
 
+    /**
+     * Moves spilled requests back once the released capacity is enough for a batch
+     */
+    private void refillIfReady() {
+        if (spilling && capacity.availablePermits() >= Math.max(Math.min(REFILL_BATCH_SIZE, capacityLimit / 2), 1)) {
+            refill();
+        }
+    }
+
+    /**
+     * Moves spilled requests to the queue store while there is free capacity. Read position of the spill is
+     * committed after the requests are durable in the store, so a crash in between restores them twice.
+     * If the store write fails, the read position is rolled back and the requests stay spilled.
+     */
+    private void refill() {
+        synchronized (spillQueue) {
+            while (spilling) {
+                int permits = 0;
+                while (permits < REFILL_BATCH_SIZE && capacity.tryAcquire()) {
+                    permits++;
+                }
+                if (permits == 0) {
+                    return;
+                }
+                List<SpillQueue.SpilledRequest> requests;
+                try {
+                    requests = spillQueue.poll(permits);
+                } catch (IOException e) {
+                    log.error("Can not read spilled replication requests", e);
+                    capacity.release(permits);
+                    rollbackSpill();
+                    return;
+                }
+                if (requests.size() < permits) {
+                    capacity.release(permits - requests.size());
+                }
+                List<ArtifactMetaInfo> artifactMetaInfos = new ArrayList<>(requests.size());
+                for (SpillQueue.SpilledRequest request : requests) {
+                    artifactMetaInfos.add(request.getArtifactMetaInfo());
+                }
+                List<QueueEntry> entries;
+                try {
+                    entries = queueStore.appendAll(artifactMetaInfos);
+                } catch (IOException e) {
+                    log.error("Can not persist " + artifactMetaInfos.size() + " spilled replication requests,"
+                            + " they stay spilled", e);
+                    capacity.release(requests.size());
+                    rollbackSpill();
+                    return;
+                }
+                for (int i = 0; i < entries.size(); i++) {
+                    enqueue(new QueueEntry(entries.get(i).getSequence(), artifactMetaInfos.get(i),
+                            requests.get(i).getEnqueuedMillis()));
+                }
+                try {
+                    spillQueue.commit();
+                } catch (IOException e) {
+                    log.error("Can not persist spill read position, requests may be sent twice after restart", e);
+                }
+                spilling = spillQueue.size() > 0;
+            }
+        }
+    }
+
+    /**
+     * Acknowledges the waiting entry of the same SNAPSHOT artifact, taken entry is being delivered and stays
+     * in the queue. Superseded entry left in the ready entries or waiting for retry is dropped since it can
+     * be neither leased nor requeued.
+     */
+    private void supersede(QueueEntry entry) {
+        SnapshotKey key = SnapshotKey.of(entry.getArtifactMetaInfo());
+        if (key == null) {
+            return;
+        }
+        QueueEntry previous = snapshotEntries.put(key, entry);
+        if (previous != null
+                && (unackedEntries.remove(previous, NOT_LEASED) || unackedEntries.remove(previous, DEFERRED))) {
+            ackInStore(previous);
+            capacity.release();
+            superseded.incrementAndGet();
+        }
+    }
+
+    private void forget(QueueEntry entry) {
+        SnapshotKey key = SnapshotKey.of(entry.getArtifactMetaInfo());
+        if (key != null) {
+            snapshotEntries.remove(key, entry);
+        }
+    }
+
+    private void rollbackSpill() {
+        try {
+            spillQueue.rollback();
+        } catch (IOException e) {
+            log.error("Can not roll back spill read position, requests are read again after restart", e);
+        }
+    }
+
+    private void ackInStore(QueueEntry entry) {
+        try {
+            queueStore.ack(entry.getSequence());
+        } catch (IOException e) {
+            log.error("Can not persist replication request acknowledgement: " + entry.getArtifactMetaInfo(), e);
+        }
+    }
+
+    /**
+     * Exposes {@link Semaphore#reducePermits(int)}
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        private ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoCodec;
+import com.griddynamics.cd.nrp.internal.serialization.RecordBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the replication queue. Every {@link #append(ArtifactMetaInfo)} writes an enqueue record and
+ * every {@link #ack(long)} writes an acknowledgement record, so persisting a queue operation costs O(1) disk I/O.
+ * The journal is split into segments. Head segments without pending records are deleted and sparse head
+ * segments are compacted by moving their pending records into the active segment.
+ */
+public class JournalQueueStore implements QueueStore {
+
+    /**
+     * Suffix appended to the queue dump file name to get the journal directory
+     */
+    public static final String DIRECTORY_SUFFIX = ".journal";
+
+    /**
+     * Default size of the single journal segment
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SEGMENT_NAME_FORMAT = "%019d" + SEGMENT_SUFFIX;
+
+    /**
+     * Head segment is compacted when less than 1/COMPACTION_RATIO of its records is still pending
+     */
+    private static final int COMPACTION_RATIO = 10;
+
+    private static final byte ENQUEUE_RECORD = 1;
+    private static final byte ACK_RECORD = 2;
+
+    /**
+     * Record body length and CRC32 of the record body
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Logger log = LoggerFactory.getLogger(JournalQueueStore.class);
+
+    private final File directory;
+    private final long segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final TreeMap<Long, PendingRecord> pendingRecords = new TreeMap<>();
+    private Segment activeSegment;
+    private FileChannel activeChannel;
+    private long nextSequence = 1;
+    private final RecordBuffer recordBuffer = new RecordBuffer(256);
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+    public JournalQueueStore(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public JournalQueueStore(File directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Replays journal segments and opens the journal for writing. Torn record at the tail of the last segment
+     * (e.g. after the crash) is truncated.
+     */
+    @Override
+    public synchronized List<QueueEntry> recover() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create journal directory: " + directory.getAbsolutePath());
+        }
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(segmentId(o1), segmentId(o2));
+            }
+        });
+        for (int i = 0; i < files.length; i++) {
+            Segment segment = new Segment(segmentId(files[i]), files[i]);
+            segments.put(segment.id, segment);
+            replaySegment(segment, i == files.length - 1);
+        }
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+            activeChannel = openChannel(activeSegment.file);
+        }
+        compact();
+        log.info("Replication queue journal " + directory.getAbsolutePath() + " recovered. Pending requests: "
+                + pendingRecords.size());
+
+        List<QueueEntry> entries = new ArrayList<>(pendingRecords.size());
+        for (Map.Entry<Long, PendingRecord> pendingRecord : pendingRecords.entrySet()) {
+            entries.add(new QueueEntry(pendingRecord.getKey(), pendingRecord.getValue().artifactMetaInfo));
+        }
+        return entries;
+    }
+
+    /**
+     * Appends enqueue record to the journal
+     */
+    @Override
+    public synchronized QueueEntry append(ArtifactMetaInfo artifactMetaInfo) throws IOException {
+        ensureOpen();
+        long sequence = nextSequence++;
+        boolean rolled = writeRecord(ENQUEUE_RECORD, sequence, artifactMetaInfo, true);
+        activeChannel.force(false);
+        pendingRecords.put(sequence, new PendingRecord(artifactMetaInfo, activeSegment));
+        activeSegment.pendingCount++;
+        if (rolled) {
+            compact();
+        }
+        return new QueueEntry(sequence, artifactMetaInfo);
+    }
+
+    /**
+     * Appends enqueue records of all requests and forces the journal once
+     */
+    @Override
+    public synchronized List<QueueEntry> appendAll(List<ArtifactMetaInfo> artifactMetaInfos) throws IOException {
+        ensureOpen();
+        List<QueueEntry> entries = new ArrayList<>(artifactMetaInfos.size());
+        boolean rolled = false;
+        for (ArtifactMetaInfo artifactMetaInfo : artifactMetaInfos) {
+            long sequence = nextSequence++;
+            rolled |= writeRecord(ENQUEUE_RECORD, sequence, artifactMetaInfo, true);
+            pendingRecords.put(sequence, new PendingRecord(artifactMetaInfo, activeSegment));
+            activeSegment.pendingCount++;
+            entries.add(new QueueEntry(sequence, artifactMetaInfo));
+        }
+        activeChannel.force(false);
+        if (rolled) {
+            compact();
+        }
+        return entries;
+    }
+
+    /**
+     * Appends acknowledgement record, so the entry is not replayed any more
+     */
+    @Override
+    public synchronized void ack(long sequence) throws IOException {
+        ensureOpen();
+        PendingRecord pendingRecord = pendingRecords.remove(sequence);
+        if (pendingRecord == null) {
+            return;
+        }
+        pendingRecord.segment.pendingCount--;
+        boolean rolled = writeRecord(ACK_RECORD, sequence, null, true);
+        activeChannel.force(false);
+        if (rolled) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.force(true);
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    /**
+     * Rejects writes after the journal is closed, e.g. a late acknowledgement of the removed peer lane
+     */
+    private void ensureOpen() throws IOException {
+        if (activeChannel == null) {
+            throw new IOException("Replication queue journal is closed: " + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Deletes head segments without pending records and moves pending records of the sparse head segment
+     * to the active one. Only head segments are removed, so acknowledgement records never outlive
+     * the enqueue records they refer to.
+     */
+    private void compact() throws IOException {
+        while (segments.size() > 1) {
+            Segment head = segments.firstEntry().getValue();
+            if (head.pendingCount > 0) {
+                if (head.pendingCount * COMPACTION_RATIO > head.recordCount) {
+                    break;
+                }
+                relocatePendingRecords(head);
+            }
+            if (!head.file.delete()) {
+                log.warn("Can not delete journal segment: " + head.file.getAbsolutePath());
+                break;
+            }
+            segments.remove(head.id);
+        }
+    }
+
+    private void relocatePendingRecords(Segment segment) throws IOException {
+        for (Map.Entry<Long, PendingRecord> pendingRecord : pendingRecords.entrySet()) {
+            PendingRecord record = pendingRecord.getValue();
+            if (record.segment == segment) {
+                writeRecord(ENQUEUE_RECORD, pendingRecord.getKey(), record.artifactMetaInfo, false);
+                segment.pendingCount--;
+                record.segment = activeSegment;
+                activeSegment.pendingCount++;
+            }
+        }
+        activeChannel.force(false);
+    }
+
+    /**
+     * @return true if new active segment was started before writing
+     */
+    private boolean writeRecord(byte type, long sequence, ArtifactMetaInfo artifactMetaInfo, boolean allowRoll)
+            throws IOException {
+        DataOutputStream out = recordBuffer.start();
+        out.writeByte(type);
+        out.writeLong(sequence);
+        if (artifactMetaInfo != null) {
+            ArtifactMetaInfoCodec.write(out, artifactMetaInfo);
+        }
+        out.flush();
+        int length = recordBuffer.size();
+
+        boolean rolled = false;
+        if (allowRoll && activeChannel.size() > 0 && activeChannel.size() + RECORD_HEADER_SIZE + length > segmentSize) {
+            activeChannel.force(false);
+            activeChannel.close();
+            openSegment(activeSegment.id + 1);
+            rolled = true;
+        }
+        recordHeader.clear();
+        recordHeader.putInt(length).putInt(recordBuffer.checksum());
+        recordHeader.flip();
+        ByteBuffer[] record = {recordHeader, recordBuffer.wrap()};
+        while (record[1].hasRemaining()) {
+            activeChannel.write(record);
+        }
+        activeSegment.recordCount++;
+        return rolled;
+    }
+
+    private void replaySegment(Segment segment, boolean lastSegment) throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = in.readInt();
+                if (length <= 0 || length > segmentSize) {
+                    throw new IOException("Invalid record length " + length);
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("Record checksum mismatch");
+                }
+                replayRecord(segment, body);
+                validLength += RECORD_HEADER_SIZE + length;
+            }
+        } catch (IOException e) {
+            log.warn("Journal segment " + segment.file.getAbsolutePath() + " is damaged at offset " + validLength, e);
+        }
+        // Torn tail, even a partial record header, is cut off so new records start at the record boundary
+        if (lastSegment && validLength < segment.file.length()) {
+            try (FileChannel channel = openChannel(segment.file)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    private void replayRecord(Segment segment, byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        long sequence = in.readLong();
+        nextSequence = Math.max(nextSequence, sequence + 1);
+        segment.recordCount++;
+        if (type == ENQUEUE_RECORD) {
+            ArtifactMetaInfo artifactMetaInfo = ArtifactMetaInfoCodec.read(in);
+            PendingRecord previous = pendingRecords.put(sequence, new PendingRecord(artifactMetaInfo, segment));
+            if (previous != null) {
+                // Record was relocated by compaction, the older copy is going to be deleted
+                previous.segment.pendingCount--;
+            }
+            segment.pendingCount++;
+        } else if (type == ACK_RECORD) {
+            PendingRecord pendingRecord = pendingRecords.remove(sequence);
+            if (pendingRecord != null) {
+                pendingRecord.segment.pendingCount--;
+            }
+        } else {
+            throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        Segment segment = new Segment(id, new File(directory, String.format(SEGMENT_NAME_FORMAT, id)));
+        segments.put(id, segment);
+        activeSegment = segment;
+        activeChannel = openChannel(segment.file);
+    }
+
+    private static FileChannel openChannel(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static long segmentId(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static class Segment {
+        private final long id;
+        private final File file;
+        private int recordCount;
+        private int pendingCount;
+
+        private Segment(long id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+    }
+
+    private static class PendingRecord {
+        private final ArtifactMetaInfo artifactMetaInfo;
+        private Segment segment;
+
+        private PendingRecord(ArtifactMetaInfo artifactMetaInfo, Segment segment) {
+            this.artifactMetaInfo = artifactMetaInfo;
+            this.segment = segment;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoCodec;
+import com.griddynamics.cd.nrp.internal.serialization.RecordBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Replication queue persisted to the memory-mapped ring file of the fixed size.
+ * Records are written to the mapped buffer and made durable by the group commit: the first {@link #append}
+ * waits for the commit window, so concurrent appends arriving within the window share one {@code force()}.
+ * Acknowledgement only flips the record state in place and is flushed with the next commit.
+ * <p/>
+ * File layout: header page (magic, version, ring capacity, head offset, head sequence) followed by the ring.
+ * Ring offsets are logical and grow monotonically, the physical position is offset modulo capacity.
+ */
+public class MappedRingQueueStore implements QueueStore {
+
+    /**
+     * Suffix appended to the queue dump file name to get the ring file
+     */
+    public static final String FILE_SUFFIX = ".ring";
+
+    private static final int MAGIC = 0x4E525052;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4096;
+    private static final int MAGIC_POSITION = 0;
+    private static final int VERSION_POSITION = 4;
+    private static final int CAPACITY_POSITION = 8;
+    private static final int HEAD_POSITION = 16;
+    private static final int HEAD_SEQUENCE_POSITION = 24;
+
+    /**
+     * Record: body length, CRC32 of the body, state, padding. Body is sequence followed by the encoded request
+     */
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int RECORD_ALIGNMENT = 8;
+    private static final int PADDING_MARKER = -1;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_ACKED = 2;
+
+    private final Logger log = LoggerFactory.getLogger(MappedRingQueueStore.class);
+
+    private final File file;
+    private final long groupCommitWindowMillis;
+    private long capacity;
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Sequence -> logical offset of the pending record
+     */
+    private final Map<Long, Long> pendingOffsets = new HashMap<>();
+    private long head;
+    private long headSequence;
+    private long tail;
+    private long nextSequence;
+    private final RecordBuffer recordBuffer = new RecordBuffer(256);
+
+    private final Object commitLock = new Object();
+    private long committedTail;
+    private boolean committing;
+
+    /**
+     * @param file                    Ring file
+     * @param capacity                Ring size in bytes, used when the file is created
+     * @param groupCommitWindowMillis Time the commit leader waits for other appends before {@code force()}
+     */
+    public MappedRingQueueStore(File file, int capacity, long groupCommitWindowMillis) {
+        this.file = file;
+        this.capacity = capacity;
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    /**
+     * Maps the ring file and scans records from the head. Scan stops on the first damaged record or
+     * record left from the previous lap of the ring.
+     */
+    @Override
+    public synchronized List<QueueEntry> recover() throws IOException {
+        boolean exists = file.isFile() && file.length() > HEADER_SIZE;
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        if (exists) {
+            long fileCapacity = file.length() - HEADER_SIZE;
+            if (fileCapacity != capacity) {
+                log.warn("Ring file " + file.getAbsolutePath() + " has size " + fileCapacity
+                        + " that differs from configured " + capacity + ". File size is used.");
+                capacity = fileCapacity;
+            }
+        } else {
+            randomAccessFile.setLength(HEADER_SIZE + capacity);
+        }
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        if (exists) {
+            if (buffer.getInt(MAGIC_POSITION) != MAGIC || buffer.getInt(VERSION_POSITION) != VERSION
+                    || buffer.getLong(CAPACITY_POSITION) != capacity) {
+                throw new IOException("Unsupported replication queue ring file: " + file.getAbsolutePath());
+            }
+            head = buffer.getLong(HEAD_POSITION);
+            headSequence = buffer.getLong(HEAD_SEQUENCE_POSITION);
+        } else {
+            buffer.putInt(MAGIC_POSITION, MAGIC);
+            buffer.putInt(VERSION_POSITION, VERSION);
+            buffer.putLong(CAPACITY_POSITION, capacity);
+            head = 0;
+            headSequence = 1;
+            writeHead();
+            buffer.force();
+        }
+
+        List<QueueEntry> entries = new ArrayList<>();
+        long lastSequence = headSequence - 1;
+        long offset = head;
+        tail = head;
+        while (offset - head < capacity) {
+            int index = index(offset);
+            long remaining = capacity - index;
+            if (remaining < RECORD_HEADER_SIZE) {
+                offset += remaining;
+                continue;
+            }
+            int length = buffer.getInt(HEADER_SIZE + index);
+            if (length == PADDING_MARKER) {
+                offset += remaining;
+                continue;
+            }
+            if (length <= 0 || RECORD_HEADER_SIZE + length > remaining) {
+                break;
+            }
+            byte[] body = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(HEADER_SIZE + index + RECORD_HEADER_SIZE);
+            view.get(body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(HEADER_SIZE + index + 4)) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            long sequence = in.readLong();
+            if (sequence <= lastSequence) {
+                break;
+            }
+            if (buffer.get(HEADER_SIZE + index + 8) == STATE_PENDING) {
+                entries.add(new QueueEntry(sequence, ArtifactMetaInfoCodec.read(in)));
+                pendingOffsets.put(sequence, offset);
+            }
+            lastSequence = sequence;
+            offset += align(RECORD_HEADER_SIZE + length);
+            tail = offset;
+        }
+        nextSequence = lastSequence + 1;
+        committedTail = tail;
+        advanceHead();
+        log.info("Replication queue ring " + file.getAbsolutePath() + " recovered. Pending requests: " + entries.size());
+        return entries;
+    }
+
+    /**
+     * Writes the record to the ring and waits for the group commit
+     */
+    @Override
+    public QueueEntry append(ArtifactMetaInfo artifactMetaInfo) throws IOException {
+        QueueEntry entry;
+        long recordEnd;
+        synchronized (this) {
+            entry = writeRecord(artifactMetaInfo);
+            recordEnd = tail;
+        }
+        awaitCommit(recordEnd);
+        return entry;
+    }
+
+    /**
+     * Writes all records to the ring and waits for one group commit covering them
+     */
+    @Override
+    public List<QueueEntry> appendAll(List<ArtifactMetaInfo> artifactMetaInfos) throws IOException {
+        List<QueueEntry> entries = new ArrayList<>(artifactMetaInfos.size());
+        long recordEnd;
+        synchronized (this) {
+            for (ArtifactMetaInfo artifactMetaInfo : artifactMetaInfos) {
+                entries.add(writeRecord(artifactMetaInfo));
+            }
+            recordEnd = tail;
+        }
+        awaitCommit(recordEnd);
+        return entries;
+    }
+
+    @Override
+    public synchronized void ack(long sequence) throws IOException {
+        ensureOpen();
+        Long offset = pendingOffsets.remove(sequence);
+        if (offset == null) {
+            return;
+        }
+        buffer.put(HEADER_SIZE + index(offset) + 8, STATE_ACKED);
+        advanceHead();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (randomAccessFile != null) {
+            buffer.force();
+            randomAccessFile.close();
+            randomAccessFile = null;
+        }
+    }
+
+    /**
+     * Rejects writes after the ring file is closed, e.g. a late acknowledgement of the removed peer lane
+     */
+    private void ensureOpen() throws IOException {
+        if (randomAccessFile == null) {
+            throw new IOException("Replication queue ring file is closed: " + file.getAbsolutePath());
+        }
+    }
+
+    private QueueEntry writeRecord(ArtifactMetaInfo artifactMetaInfo) throws IOException {
+        ensureOpen();
+        long sequence = nextSequence;
+        DataOutputStream out = recordBuffer.start();
+        out.writeLong(sequence);
+        ArtifactMetaInfoCodec.write(out, artifactMetaInfo);
+        out.flush();
+        int length = recordBuffer.size();
+
+        int size = align(RECORD_HEADER_SIZE + length);
+        int index = index(tail);
+        long remaining = capacity - index;
+        long required = remaining < size ? remaining + size : size;
+        if (tail - head + required > capacity) {
+            throw new IOException("Replication queue ring file is full: " + file.getAbsolutePath());
+        }
+        if (remaining < size) {
+            if (remaining >= 4) {
+                buffer.putInt(HEADER_SIZE + index, PADDING_MARKER);
+            }
+            tail += remaining;
+            index = 0;
+        }
+        buffer.putInt(HEADER_SIZE + index, length);
+        buffer.putInt(HEADER_SIZE + index + 4, recordBuffer.checksum());
+        buffer.put(HEADER_SIZE + index + 8, STATE_PENDING);
+        ByteBuffer view = buffer.duplicate();
+        view.position(HEADER_SIZE + index + RECORD_HEADER_SIZE);
+        recordBuffer.copyTo(view);
+
+        pendingOffsets.put(sequence, tail);
+        tail += size;
+        nextSequence++;
+        return new QueueEntry(sequence, artifactMetaInfo);
+    }
+
+    /**
+     * Moves the head over acknowledged records and ring padding
+     */
+    private void advanceHead() {
+        while (head < tail) {
+            int index = index(head);
+            long remaining = capacity - index;
+            if (remaining < RECORD_HEADER_SIZE || buffer.getInt(HEADER_SIZE + index) == PADDING_MARKER) {
+                head += remaining;
+                continue;
+            }
+            if (buffer.get(HEADER_SIZE + index + 8) != STATE_ACKED) {
+                break;
+            }
+            headSequence = buffer.getLong(HEADER_SIZE + index + RECORD_HEADER_SIZE) + 1;
+            head += align(RECORD_HEADER_SIZE + buffer.getInt(HEADER_SIZE + index));
+        }
+        writeHead();
+    }
+
+    /**
+     * Blocks until the ring is forced at least up to the given offset. The first waiting thread becomes
+     * the commit leader, sleeps for the commit window and forces the buffer on behalf of all waiting threads.
+     */
+    private void awaitCommit(long recordEnd) throws IOException {
+        synchronized (commitLock) {
+            while (committedTail < recordEnd) {
+                if (!committing) {
+                    committing = true;
+                    break;
+                }
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the replication queue commit", e);
+                }
+            }
+            if (committedTail >= recordEnd) {
+                return;
+            }
+        }
+        long forcedTail = committedTailSnapshot();
+        try {
+            if (groupCommitWindowMillis > 0) {
+                try {
+                    Thread.sleep(groupCommitWindowMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            long tailToForce;
+            synchronized (this) {
+                tailToForce = tail;
+            }
+            buffer.force();
+            forcedTail = tailToForce;
+        } finally {
+            synchronized (commitLock) {
+                committedTail = Math.max(committedTail, forcedTail);
+                committing = false;
+                commitLock.notifyAll();
+            }
+        }
+    }
+
+    private long committedTailSnapshot() {
+        synchronized (commitLock) {
+            return committedTail;
+        }
+    }
+
+    private void writeHead() {
+        buffer.putLong(HEAD_POSITION, head);
+        buffer.putLong(HEAD_SEQUENCE_POSITION, headSequence);
+    }
+
+    private int index(long offset) {
+        return (int) (offset % capacity);
+    }
+
+    private static int align(int size) {
+        return (size + RECORD_ALIGNMENT - 1) & -RECORD_ALIGNMENT;
+    }
+}
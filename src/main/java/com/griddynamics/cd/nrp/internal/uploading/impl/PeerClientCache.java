@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.model.config.NexusServer;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
+import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches Jersey HTTP clients of the peers. Every client is backed by the pooled connection manager, so TCP/TLS
+ * connections to the peer are kept alive and reused by the subsequent requests. Idle connections are evicted
+ * periodically. Clients are rebuilt only when {@link ConfigurationsManager} returns new configuration
+ * with changed server settings.
+ */
+public class PeerClientCache {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int READ_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * Interval of the idle connections check, the idle timeout is read from the current configuration by every check
+     */
+    private static final long EVICTION_INTERVAL_SECONDS = 5;
+
+    private final Logger log = LoggerFactory.getLogger(PeerClientCache.class);
+
+    private final ConfigurationsManager configurationsManager;
+    private final ReplicationMetrics replicationMetrics;
+    private final ConcurrentMap<NexusServer, PooledClient> clients = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService idleConnectionsEvictor;
+    private volatile ReplicationPluginConfiguration knownConfiguration;
+
+    public PeerClientCache(ConfigurationsManager configurationsManager, ReplicationMetrics replicationMetrics) {
+        this.configurationsManager = configurationsManager;
+        this.replicationMetrics = replicationMetrics;
+        this.knownConfiguration = configurationsManager.getConfiguration();
+        this.idleConnectionsEvictor = Executors.newSingleThreadScheduledExecutor();
+        idleConnectionsEvictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                long idleTimeout = configurationsManager.getConfiguration().getConnectionIdleTimeoutSeconds();
+                for (PooledClient client : clients.values()) {
+                    client.connectionManager.closeExpiredConnections();
+                    client.connectionManager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+                }
+            }
+        }, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns cached HTTP client of the peer
+     *
+     * @param server Peer configuration
+     * @return HTTP client
+     */
+    public Client getClient(NexusServer server) {
+        evictChangedServers();
+        PooledClient client = clients.get(server);
+        if (client == null) {
+            PooledClient newClient = createClient(server, knownConfiguration);
+            client = clients.putIfAbsent(server, newClient);
+            if (client == null) {
+                client = newClient;
+            } else {
+                newClient.client.destroy();
+            }
+        }
+        return client.client;
+    }
+
+    /**
+     * Releases clients and their connections
+     */
+    public void close() {
+        idleConnectionsEvictor.shutdownNow();
+        for (PooledClient client : clients.values()) {
+            client.client.destroy();
+        }
+        clients.clear();
+    }
+
+    /**
+     * Destroys clients of the servers that are not configured any more. All clients are rebuilt
+     * if the connection pool size is changed.
+     */
+    private void evictChangedServers() {
+        ReplicationPluginConfiguration configuration = configurationsManager.getConfiguration();
+        if (configuration == knownConfiguration) {
+            return;
+        }
+        boolean poolChanged = !configuration.getMaxConnectionsPerRoute().equals(knownConfiguration.getMaxConnectionsPerRoute());
+        knownConfiguration = configuration;
+        Iterator<Map.Entry<NexusServer, PooledClient>> iterator = clients.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<NexusServer, PooledClient> entry = iterator.next();
+            if (poolChanged || !configuration.getServers().contains(entry.getKey())) {
+                log.debug("Server settings changed. Destroying HTTP client of " + entry.getKey().getUrl());
+                iterator.remove();
+                entry.getValue().client.destroy();
+            }
+        }
+    }
+
+    private PooledClient createClient(NexusServer server, ReplicationPluginConfiguration configuration) {
+        ThreadSafeClientConnManager connectionManager = new ThreadSafeClientConnManager();
+        connectionManager.setDefaultMaxPerRoute(configuration.getMaxConnectionsPerRoute());
+        connectionManager.setMaxTotal(configuration.getMaxConnectionsPerRoute());
+
+        ApacheHttpClient4Config config = new DefaultApacheHttpClient4Config();
+        config.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connectionManager);
+        config.getProperties().put(ClientConfig.PROPERTY_CONNECT_TIMEOUT, CONNECT_TIMEOUT_MILLIS);
+        config.getProperties().put(ClientConfig.PROPERTY_READ_TIMEOUT, READ_TIMEOUT_MILLIS);
+        Client client = ApacheHttpClient4.create(config);
+        client.addFilter(new ByteCountingFilter(replicationMetrics.getPeerMetrics(server.getUrl())));
+        String login = server.getUser();
+        String password = server.getPassword();
+        if (login != null && !login.isEmpty() && password != null) {
+            log.debug("Creating HTTP client with authorized HTTPBasicAuthFilter for " + server.getUrl());
+            client.addFilter(new HTTPBasicAuthFilter(login, password));
+        } else {
+            log.debug("Creating HTTP client with anonymous HTTPBasicAuthFilter for " + server.getUrl());
+        }
+        return new PooledClient(client, connectionManager);
+    }
+
+    private static class PooledClient {
+        private final Client client;
+        private final ThreadSafeClientConnManager connectionManager;
+
+        private PooledClient(Client client, ThreadSafeClientConnManager connectionManager) {
+            this.client = client;
+            this.connectionManager = connectionManager;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.metrics.PeerMetrics;
+import com.griddynamics.cd.nrp.internal.model.config.NexusServer;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Delivery lane of the single peer. Every lane has its own durable queue and its own sending threads,
+ * so peers drain replication requests independently and a slow peer does not throttle the others.
+ */
+public class PeerLane {
+    @Getter
+    private final String id;
+    /**
+     * Peer settings, replaced when the peer credentials are changed
+     */
+    @Getter
+    @Setter
+    private volatile NexusServer server;
+    /**
+     * Artifacts replicated to the peer, replaced when the peer filter is changed
+     */
+    @Getter
+    @Setter
+    private volatile ArtifactFilter filter = ArtifactFilter.ACCEPT_ALL;
+    @Getter
+    private final FileBlockingQueue queue;
+    @Getter
+    private final ExecutorService workers;
+    @Getter
+    private final CircuitBreaker circuitBreaker;
+    @Getter
+    private final PeerMetrics metrics;
+    /**
+     * Undelivered entries waiting for the next attempt in {@link RetryScheduler}
+     */
+    @Getter
+    private final ConcurrentMap<QueueEntry, Runnable> scheduledRetries = new ConcurrentHashMap<>();
+    /**
+     * Becomes false if the peer runs the plugin version without batch replication API
+     */
+    @Getter
+    @Setter
+    private volatile boolean batchSupported = true;
+    /**
+     * Becomes false if the peer runs the plugin version that rejects sha1 checksums and sizes of the files
+     */
+    @Getter
+    @Setter
+    private volatile boolean checksumsSupported = true;
+    /**
+     * Becomes false if the peer runs the plugin version that rejects artifact sets, every file of the set
+     * is sent to it by a separate request
+     */
+    @Getter
+    @Setter
+    private volatile boolean artifactSetsSupported = true;
+    /**
+     * True if requests are sent in the binary format, becomes false if the peer does not support it
+     */
+    @Getter
+    @Setter
+    private volatile boolean binarySupported;
+    /**
+     * Configured number of the sending threads
+     */
+    @Getter
+    @Setter
+    private volatile int targetWorkers;
+    /**
+     * Number of the running sending threads
+     */
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    /**
+     * Offers hold the read lock, closing the lane takes the write lock, so the queue store is never closed
+     * while a request is being appended to it
+     */
+    private final ReentrantReadWriteLock routingLock = new ReentrantReadWriteLock();
+    private boolean routingStopped;
+
+    public PeerLane(String id, NexusServer server, FileBlockingQueue queue, ExecutorService workers,
+                    CircuitBreaker circuitBreaker, PeerMetrics metrics) {
+        this.id = id;
+        this.server = server;
+        this.queue = queue;
+        this.workers = workers;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers started sending thread
+     */
+    public void workerStarted() {
+        activeWorkers.incrementAndGet();
+    }
+
+    /**
+     * Called by the sending thread between deliveries
+     * @return true if the thread has to stop because the number of the sending threads was reduced
+     */
+    public boolean retireWorker() {
+        int active = activeWorkers.get();
+        while (active > targetWorkers) {
+            if (activeWorkers.compareAndSet(active, active - 1)) {
+                return true;
+            }
+            active = activeWorkers.get();
+        }
+        return false;
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
+    /**
+     * Starts offering requests to the lane queue, every successful call has to be followed by {@link #endOffer()}
+     * @return false if the lane is closed and does not accept requests
+     */
+    public boolean beginOffer() {
+        routingLock.readLock().lock();
+        if (routingStopped) {
+            routingLock.readLock().unlock();
+            return false;
+        }
+        return true;
+    }
+
+    public void endOffer() {
+        routingLock.readLock().unlock();
+    }
+
+    /**
+     * Waits for the running offers and rejects the following ones
+     */
+    public void stopRouting() {
+        routingLock.writeLock().lock();
+        try {
+            routingStopped = true;
+        } finally {
+            routingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds lane identifier safe to be used in file names
+     * @param server Peer configuration
+     * @return Lane identifier
+     */
+    public static String laneId(NexusServer server) {
+        return server.getUrl().replaceAll("[^A-Za-z0-9]+", "_");
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+/**
+ * Replication request was not delivered because the peer is not reachable or can not process requests now.
+ * Request has to be sent again later.
+ */
+public class PeerUnavailableException extends Exception {
+    public PeerUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public PeerUnavailableException(String message) {
+        super(message);
+    }
+}
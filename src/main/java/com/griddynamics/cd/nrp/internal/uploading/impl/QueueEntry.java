@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Replication request stored in {@link FileBlockingQueue} together with its journal sequence number
+ */
+@ToString
+public class QueueEntry {
+    @Getter
+    private final long sequence;
+    @Getter
+    private final ArtifactMetaInfo artifactMetaInfo;
+    /**
+     * Number of failed delivery attempts since the entry was restored or offered
+     */
+    @Getter
+    private int attempts;
+    /**
+     * Number of times the peer responded to the entry with failure
+     */
+    @Getter
+    private int rejections;
+    /**
+     * Time the entry was offered or restored from the store
+     */
+    @Getter
+    private final long enqueuedMillis;
+
+    public QueueEntry(long sequence, ArtifactMetaInfo artifactMetaInfo) {
+        this(sequence, artifactMetaInfo, System.currentTimeMillis());
+    }
+
+    /**
+     * @param enqueuedMillis Time the request was spilled, if the entry is moved back from {@link SpillQueue}
+     */
+    public QueueEntry(long sequence, ArtifactMetaInfo artifactMetaInfo, long enqueuedMillis) {
+        this.sequence = sequence;
+        this.artifactMetaInfo = artifactMetaInfo;
+        this.enqueuedMillis = enqueuedMillis;
+    }
+
+    /**
+     * Registers failed delivery attempt
+     * @return Number of failed attempts
+     */
+    public int failedAttempt() {
+        return ++attempts;
+    }
+
+    /**
+     * Registers failure response of the peer. Rejected entry is also a failed delivery attempt.
+     * @return Number of rejections
+     */
+    public int rejected() {
+        return ++rejections;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Durable storage of the {@link FileBlockingQueue} operations
+ */
+public interface QueueStore extends Closeable {
+
+    /**
+     * Opens the store and restores requests that were not acknowledged
+     * @return Pending entries ordered by enqueue sequence
+     */
+    List<QueueEntry> recover() throws IOException;
+
+    /**
+     * Persists new replication request. Returns when the request is durable.
+     * @param artifactMetaInfo Replication request
+     * @return Entry with the assigned sequence number
+     */
+    QueueEntry append(ArtifactMetaInfo artifactMetaInfo) throws IOException;
+
+    /**
+     * Persists several replication requests with a single sync. Returns when all requests are durable.
+     * @param artifactMetaInfos Replication requests
+     * @return Entries with the assigned sequence numbers, ordered as the requests
+     */
+    List<QueueEntry> appendAll(List<ArtifactMetaInfo> artifactMetaInfos) throws IOException;
+
+    /**
+     * Marks the request as processed, so it is not restored any more
+     * @param sequence Sequence number of the processed entry
+     */
+    void ack(long sequence) throws IOException;
+}
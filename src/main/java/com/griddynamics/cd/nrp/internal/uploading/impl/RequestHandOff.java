@@ -0,0 +1,313 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands replication requests over from the calling threads to the single writer thread, which passes them
+ * to the {@link Sink} in batches. Requests are published to the pre-allocated ring: producer claims the slot
+ * by CAS of the claim sequence and stores the request into it, so offering takes no lock and does not wait
+ * for the queue store. Producer waits only while the writer is behind by the whole ring.
+ * <p/>
+ * Writer reads the slots in sequence order, the non-null slot at the consumed sequence is the published request.
+ * Slot is cleared before the consumed sequence passes it, so producers never overwrite requests that were not read.
+ * <p/>
+ * Batch the sink failed to accept is passed to it again after a pause together with the progress of the previous
+ * attempts, so the requests are not lost and lanes that already accepted them do not get them twice. If the writer
+ * is closed or dies, the remaining requests and the requests offered later are passed to the sink on the calling
+ * thread.
+ */
+public class RequestHandOff {
+
+    /**
+     * Receives batches of the published requests on the writer thread
+     */
+    public interface Sink {
+        /**
+         * @param progress Index of the first request not accepted by every peer lane, filled by the sink and kept
+         *                 between the attempts to pass the same batch
+         * @return false if some lane did not accept the requests and the batch has to be passed again
+         */
+        boolean enqueue(List<ArtifactMetaInfo> artifactMetaInfos, Map<PeerLane, Integer> progress);
+    }
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Pause of the producer waiting for a free slot
+     */
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Longest sleep of the idle writer. Producers wake the writer up, the timeout only bounds a lost wake-up.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Pause before the batch the sink failed to accept is passed again, doubled with every failure up to the maximum
+     */
+    private static final long SINK_RETRY_MIN_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SINK_RETRY_MAX_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final AtomicReferenceArray<ArtifactMetaInfo> slots;
+    private final int mask;
+    /**
+     * Next sequence to be claimed by a producer
+     */
+    private final AtomicLong claimSequence = new AtomicLong();
+    /**
+     * Next sequence to be read by the writer, written by the writer only or under the lock after it stopped
+     */
+    private volatile long consumedSequence;
+    /**
+     * Requests below this sequence are passed to the sink, written by the writer only or under the lock after
+     * it stopped
+     */
+    private volatile long writtenSequence;
+    private volatile boolean writerParked;
+    /**
+     * Set when the writer should exit once the published requests are passed to the sink
+     */
+    private volatile boolean closed;
+    /**
+     * Set when the writer exited, producers pass the requests to the sink themselves then
+     */
+    private volatile boolean writerStopped;
+    /**
+     * Requests read by the writer and not accepted by the sink yet, accessed by the writer only
+     */
+    private final List<ArtifactMetaInfo> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    private final Sink sink;
+    private final Thread writer;
+
+    private final Logger log = LoggerFactory.getLogger(RequestHandOff.class);
+
+    /**
+     * @param size Number of the ring slots, rounded up to a power of two
+     * @param sink Receiver of the published requests
+     */
+    public RequestHandOff(int size, Sink sink) {
+        int capacity = Integer.highestOneBit(Math.min(Math.max(size, 2) - 1, MAX_CAPACITY - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.sink = sink;
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    drain();
+                } catch (Throwable e) {
+                    log.error("Replication request writer failed, requests are enqueued on the calling threads", e);
+                } finally {
+                    stopWriter();
+                }
+            }
+        }, "replication-request-hand-off");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Publishes the request to the writer. Request is passed to the sink on the calling thread if the writer stopped.
+     * @return true if the caller had to wait for a free slot
+     */
+    public boolean offer(ArtifactMetaInfo artifactMetaInfo) {
+        boolean stalled = false;
+        long sequence = claimSequence.get();
+        while (true) {
+            if (writerStopped) {
+                enqueueOnCallerThread(Collections.singletonList(artifactMetaInfo));
+                return stalled;
+            }
+            if (sequence - consumedSequence >= slots.length()) {
+                stalled = true;
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+            } else if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+            sequence = claimSequence.get();
+        }
+        // Volatile store orders the slot before the writerParked and writerStopped checks,
+        // the writer checks them in reverse order
+        slots.set(index(sequence), artifactMetaInfo);
+        if (writerStopped) {
+            drainStopped();
+        } else if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return stalled;
+    }
+
+    /**
+     * Waits until the requests offered before the call are passed to the sink
+     * @return false if the timeout elapsed
+     */
+    public boolean flush(long timeout, TimeUnit timeUnit) {
+        long target = claimSequence.get();
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (writtenSequence < target) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the writer once the published requests are passed to the sink. Requests offered later are passed
+     * to the sink on the calling thread.
+     * @return false if the timeout elapsed before the writer stopped
+     */
+    public boolean close(long timeout, TimeUnit timeUnit) {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeUnit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !writer.isAlive();
+    }
+
+    /**
+     * @return Number of requests claimed by producers and not read by the writer yet
+     */
+    public int size() {
+        return (int) (claimSequence.get() - consumedSequence);
+    }
+
+    private void drain() {
+        while (true) {
+            long sequence = consumedSequence;
+            while (batch.size() < MAX_BATCH_SIZE) {
+                int index = index(sequence);
+                ArtifactMetaInfo artifactMetaInfo = slots.get(index);
+                if (artifactMetaInfo == null) {
+                    break;
+                }
+                slots.lazySet(index, null);
+                batch.add(artifactMetaInfo);
+                sequence++;
+            }
+            if (batch.isEmpty()) {
+                if (closed && claimSequence.get() == consumedSequence) {
+                    return;
+                }
+                awaitRequest();
+                continue;
+            }
+            consumedSequence = sequence;
+            write();
+            writtenSequence = sequence;
+        }
+    }
+
+    /**
+     * Passes the batch to the sink until it is accepted
+     */
+    private void write() {
+        Map<PeerLane, Integer> progress = new HashMap<>();
+        long retryNanos = SINK_RETRY_MIN_NANOS;
+        while (true) {
+            try {
+                if (sink.enqueue(batch, progress)) {
+                    batch.clear();
+                    return;
+                }
+                log.error("Can not enqueue " + batch.size() + " replication requests to every peer, retrying in "
+                        + TimeUnit.NANOSECONDS.toMillis(retryNanos) + " ms");
+            } catch (Throwable e) {
+                log.error("Can not enqueue " + batch.size() + " replication requests, retrying in "
+                        + TimeUnit.NANOSECONDS.toMillis(retryNanos) + " ms", e);
+            }
+            LockSupport.parkNanos(this, retryNanos);
+            retryNanos = Math.min(retryNanos * 2, SINK_RETRY_MAX_NANOS);
+        }
+    }
+
+    /**
+     * Hands the remaining requests over to the calling threads when the writer exits
+     */
+    private void stopWriter() {
+        if (!batch.isEmpty()) {
+            enqueueOnCallerThread(batch);
+            batch.clear();
+        }
+        // Volatile store orders the flag before the slots check, producers check them in reverse order
+        writerStopped = true;
+        drainStopped();
+    }
+
+    /**
+     * Passes the published requests to the sink on the calling thread after the writer stopped
+     */
+    private synchronized void drainStopped() {
+        long sequence = consumedSequence;
+        List<ArtifactMetaInfo> published = new ArrayList<>();
+        while (true) {
+            int index = index(sequence);
+            ArtifactMetaInfo artifactMetaInfo = slots.get(index);
+            if (artifactMetaInfo == null) {
+                break;
+            }
+            slots.set(index, null);
+            published.add(artifactMetaInfo);
+            sequence++;
+        }
+        consumedSequence = sequence;
+        if (!published.isEmpty()) {
+            enqueueOnCallerThread(published);
+        }
+        writtenSequence = sequence;
+    }
+
+    private void enqueueOnCallerThread(List<ArtifactMetaInfo> artifactMetaInfos) {
+        try {
+            if (!sink.enqueue(artifactMetaInfos, new HashMap<PeerLane, Integer>())) {
+                log.error("Can not enqueue " + artifactMetaInfos.size() + " replication requests to every peer");
+            }
+        } catch (RuntimeException e) {
+            log.error("Can not enqueue " + artifactMetaInfos.size() + " replication requests", e);
+        }
+    }
+
+    private void awaitRequest() {
+        writerParked = true;
+        if (slots.get(index(consumedSequence)) == null) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        writerParked = false;
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Returns undelivered replication requests to the lane queue after exponential backoff with jitter.
+ * Entries stay unacknowledged in the queue store while waiting, so they survive restart.
+ */
+public class RetryScheduler {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryScheduler(long initialDelayMillis, long maxDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Schedules another delivery attempt of the entry. If the timer is already stopped, the entry is returned
+     * to the queue at once, so it is not left deferred until restart.
+     * @param peerLane Lane the entry was taken from
+     * @param entry    Undelivered entry
+     */
+    public void schedule(PeerLane peerLane, QueueEntry entry) {
+        RetryTask task = new RetryTask(peerLane, entry);
+        peerLane.getQueue().defer(entry);
+        peerLane.getScheduledRetries().put(entry, task);
+        try {
+            task.future = timer.schedule(task, backoff(entry.failedAttempt()), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Returns all waiting entries of the lane to its queue immediately, used when the peer becomes available
+     */
+    public void flush(PeerLane peerLane) {
+        for (Runnable task : peerLane.getScheduledRetries().values()) {
+            task.run();
+        }
+    }
+
+    /**
+     * Cancels waiting entries of the closed lane, they stay unacknowledged in its queue store
+     */
+    public void cancel(PeerLane peerLane) {
+        for (Runnable task : peerLane.getScheduledRetries().values()) {
+            ((RetryTask) task).cancel();
+        }
+        peerLane.getScheduledRetries().clear();
+    }
+
+    /**
+     * Stops the timer. Waiting entries stay unacknowledged in the queue store and are restored on the next start.
+     */
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Delay grows twice with every attempt up to the maximum, half of the delay is random
+     */
+    long backoff(int attempt) {
+        long delay = initialDelayMillis << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > maxDelayMillis) {
+            delay = maxDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+    }
+
+    private class RetryTask implements Runnable {
+        private final PeerLane peerLane;
+        private final QueueEntry entry;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile ScheduledFuture<?> future;
+
+        private RetryTask(PeerLane peerLane, QueueEntry entry) {
+            this.peerLane = peerLane;
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            peerLane.getScheduledRetries().remove(entry);
+            peerLane.getQueue().requeue(entry);
+        }
+
+        private void cancel() {
+            done.set(true);
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
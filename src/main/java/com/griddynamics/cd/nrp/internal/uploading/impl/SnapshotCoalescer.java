@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds SNAPSHOT notifications for the coalescing window. Notification is passed to the {@link Sink}
+ * when the window started by the first notification about the artifact ends, notifications arriving
+ * within the window replace the pending one, so only the latest deploy is replicated.
+ */
+public class SnapshotCoalescer {
+
+    /**
+     * Receives notifications that left the coalescing window
+     */
+    public interface Sink {
+        void enqueue(ArtifactMetaInfo artifactMetaInfo);
+    }
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final ConcurrentMap<SnapshotKey, ArtifactMetaInfo> pending = new ConcurrentHashMap<>();
+    private final Sink sink;
+
+    public SnapshotCoalescer(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * @param key          Key of the SNAPSHOT artifact
+     * @param windowMillis Time the first notification about the artifact is held
+     * @return true if the notification replaced the pending one
+     */
+    public boolean offer(final SnapshotKey key, ArtifactMetaInfo artifactMetaInfo, long windowMillis) {
+        if (pending.put(key, artifactMetaInfo) != null) {
+            return true;
+        }
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    release(key);
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Coalescer is closed, notification is not held any more
+            release(key);
+        }
+        return false;
+    }
+
+    /**
+     * Passes all pending notifications to the sink without waiting for their windows to end
+     */
+    public void flush() {
+        for (SnapshotKey key : pending.keySet()) {
+            release(key);
+        }
+    }
+
+    /**
+     * Stops the timer and passes pending notifications to the sink, notifications offered later are passed at once
+     */
+    public void close() {
+        timer.shutdownNow();
+        flush();
+    }
+
+    private void release(SnapshotKey key) {
+        ArtifactMetaInfo latest = pending.remove(key);
+        if (latest != null) {
+            sink.enqueue(latest);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.serialization.ArtifactMetaInfoCodec;
+import com.griddynamics.cd.nrp.internal.serialization.RecordBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Unbounded on-disk FIFO the {@link FileBlockingQueue} overflows into when its in-memory capacity is exhausted.
+ * Requests are appended to segment files and read back in the same order once the capacity is released,
+ * only the segment lengths and the read position are kept in memory. Read position is persisted to the cursor
+ * file by {@link #commit()}, fully read segments are deleted then. Requests read after the last commit are
+ * read again after restart or after {@link #rollback()}.
+ */
+public class SpillQueue implements Closeable {
+
+    /**
+     * Suffix appended to the queue dump file name to get the spill directory
+     */
+    public static final String DIRECTORY_SUFFIX = ".spill";
+
+    /**
+     * Default size of the single spill segment
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SEGMENT_NAME_FORMAT = "%019d" + SEGMENT_SUFFIX;
+    private static final String CURSOR_FILE_NAME = "cursor";
+    private static final String CURSOR_TEMP_FILE_NAME = "cursor.tmp";
+
+    /**
+     * Record body length and CRC32 of the record body
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Logger log = LoggerFactory.getLogger(SpillQueue.class);
+
+    private final File directory;
+    private final long segmentSize;
+    /**
+     * Valid length of every segment by segment id
+     */
+    private final TreeMap<Long, Long> segments = new TreeMap<>();
+    private long writeSegmentId;
+    private FileChannel writeChannel;
+    private long readSegmentId;
+    private long readOffset;
+    private FileChannel readChannel;
+    /**
+     * Read position persisted by the last commit
+     */
+    private long committedSegmentId;
+    private long committedOffset;
+    /**
+     * Number of requests read after the last commit
+     */
+    private long uncommitted;
+    /**
+     * Number of requests after the read position
+     */
+    private volatile long size;
+    private boolean closed;
+    private final RecordBuffer recordBuffer = new RecordBuffer(256);
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+    public SpillQueue(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SpillQueue(File directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the spill directory and counts requests after the persisted read position.
+     * Torn record at the tail of the last segment (e.g. after the crash) is truncated.
+     */
+    public synchronized void recover() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create spill directory: " + directory.getAbsolutePath());
+        }
+        readCursor();
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        TreeMap<Long, File> segmentFiles = new TreeMap<>();
+        for (File file : files) {
+            segmentFiles.put(segmentId(file), file);
+        }
+        for (Map.Entry<Long, File> segmentFile : segmentFiles.entrySet()) {
+            long id = segmentFile.getKey();
+            if (id < readSegmentId) {
+                delete(segmentFile.getValue());
+                continue;
+            }
+            long length = scanSegment(segmentFile.getValue(), id == readSegmentId ? readOffset : 0);
+            if (id == segmentFiles.lastKey()) {
+                try (FileChannel channel = openWriteChannel(segmentFile.getValue())) {
+                    channel.truncate(length);
+                }
+            }
+            segments.put(id, length);
+        }
+        if (segments.isEmpty()) {
+            segments.put(readSegmentId, 0L);
+            readOffset = 0;
+        }
+        committedSegmentId = readSegmentId;
+        committedOffset = readOffset;
+        writeSegmentId = segments.lastKey();
+        writeChannel = openWriteChannel(segmentFile(writeSegmentId));
+        if (size > 0) {
+            log.info("Replication queue spill " + directory.getAbsolutePath() + " recovered. Spilled requests: " + size);
+        }
+    }
+
+    /**
+     * Appends requests to the tail and syncs the active segment once
+     * @param artifactMetaInfos Replication requests
+     */
+    public synchronized void append(List<ArtifactMetaInfo> artifactMetaInfos) throws IOException {
+        ensureOpen();
+        long enqueuedMillis = System.currentTimeMillis();
+        for (ArtifactMetaInfo artifactMetaInfo : artifactMetaInfos) {
+            DataOutputStream out = recordBuffer.start();
+            out.writeLong(enqueuedMillis);
+            ArtifactMetaInfoCodec.write(out, artifactMetaInfo);
+            out.flush();
+            long length = segments.get(writeSegmentId);
+            if (length > 0 && length + RECORD_HEADER_SIZE + recordBuffer.size() > segmentSize) {
+                writeChannel.force(false);
+                writeChannel.close();
+                writeSegmentId++;
+                segments.put(writeSegmentId, 0L);
+                writeChannel = openWriteChannel(segmentFile(writeSegmentId));
+                length = 0;
+            }
+            recordHeader.clear();
+            recordHeader.putInt(recordBuffer.size()).putInt(recordBuffer.checksum());
+            recordHeader.flip();
+            ByteBuffer[] record = {recordHeader, recordBuffer.wrap()};
+            while (record[1].hasRemaining()) {
+                writeChannel.write(record);
+            }
+            segments.put(writeSegmentId, length + RECORD_HEADER_SIZE + recordBuffer.size());
+            size++;
+        }
+        writeChannel.force(false);
+    }
+
+    /**
+     * Reads up to maxRequests from the head. Read position is persisted by {@link #commit()}.
+     * @return Requests in the order they were appended
+     */
+    public synchronized List<SpilledRequest> poll(int maxRequests) throws IOException {
+        ensureOpen();
+        List<SpilledRequest> requests = new ArrayList<>(Math.min(maxRequests, (int) Math.min(size, Integer.MAX_VALUE)));
+        while (requests.size() < maxRequests && size > 0) {
+            if (readOffset >= segments.get(readSegmentId)) {
+                closeReadChannel();
+                readSegmentId = segments.higherKey(readSegmentId);
+                readOffset = 0;
+                continue;
+            }
+            if (readChannel == null) {
+                readChannel = FileChannel.open(segmentFile(readSegmentId).toPath(), StandardOpenOption.READ);
+            }
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            readFully(readChannel, header, readOffset);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(readChannel, body, readOffset + RECORD_HEADER_SIZE);
+            if (checksum(body.array()) != checksum) {
+                throw new IOException("Spill record checksum mismatch in " + segmentFile(readSegmentId).getAbsolutePath());
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+            long enqueuedMillis = in.readLong();
+            requests.add(new SpilledRequest(ArtifactMetaInfoCodec.read(in), enqueuedMillis));
+            readOffset += RECORD_HEADER_SIZE + length;
+            size--;
+            uncommitted++;
+        }
+        return requests;
+    }
+
+    /**
+     * Persists the read position and deletes fully read segments
+     */
+    public synchronized void commit() throws IOException {
+        ensureOpen();
+        File tempFile = new File(directory, CURSOR_TEMP_FILE_NAME);
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer cursor = ByteBuffer.allocate(16);
+            cursor.putLong(readSegmentId).putLong(readOffset);
+            cursor.flip();
+            while (cursor.hasRemaining()) {
+                channel.write(cursor);
+            }
+            channel.force(false);
+        }
+        Files.move(tempFile.toPath(), new File(directory, CURSOR_FILE_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committedSegmentId = readSegmentId;
+        committedOffset = readOffset;
+        uncommitted = 0;
+        while (segments.firstKey() < readSegmentId) {
+            delete(segmentFile(segments.pollFirstEntry().getKey()));
+        }
+    }
+
+    /**
+     * Moves the read position back to the last commit, so the requests read after it are polled again.
+     * Segments are deleted only by the commit, so the requests are still there.
+     */
+    public synchronized void rollback() throws IOException {
+        ensureOpen();
+        if (readSegmentId != committedSegmentId) {
+            closeReadChannel();
+            readSegmentId = committedSegmentId;
+        }
+        readOffset = committedOffset;
+        size += uncommitted;
+        uncommitted = 0;
+    }
+
+    /**
+     * @return Number of spilled requests that were not read yet
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        closeReadChannel();
+        if (writeChannel != null) {
+            writeChannel.force(true);
+            writeChannel.close();
+            writeChannel = null;
+        }
+    }
+
+    /**
+     * Rejects calls after the spill is closed, e.g. a refill triggered by a late acknowledgement
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Replication queue spill is closed: " + directory.getAbsolutePath());
+        }
+    }
+
+    private void readCursor() throws IOException {
+        File cursorFile = new File(directory, CURSOR_FILE_NAME);
+        if (!cursorFile.isFile()) {
+            readSegmentId = 1;
+            readOffset = 0;
+            return;
+        }
+        ByteBuffer cursor = ByteBuffer.wrap(Files.readAllBytes(cursorFile.toPath()));
+        readSegmentId = cursor.getLong();
+        readOffset = cursor.getLong();
+    }
+
+    /**
+     * Counts valid records of the segment starting at the offset
+     * @return Valid length of the segment
+     */
+    private long scanSegment(File file, long offset) throws IOException {
+        long validLength = offset;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            while (validLength + RECORD_HEADER_SIZE <= fileSize) {
+                header.clear();
+                readFully(channel, header, validLength);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || validLength + RECORD_HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(channel, body, validLength + RECORD_HEADER_SIZE);
+                if (checksum(body.array()) != checksum) {
+                    break;
+                }
+                validLength += RECORD_HEADER_SIZE + length;
+                size++;
+            }
+            if (validLength < fileSize) {
+                log.warn("Spill segment " + file.getAbsolutePath() + " is damaged at offset " + validLength);
+            }
+        }
+        return validLength;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of spill segment");
+            }
+        }
+    }
+
+    private void closeReadChannel() throws IOException {
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+    }
+
+    private void delete(File file) {
+        if (!file.delete()) {
+            log.warn("Can not delete spill segment: " + file.getAbsolutePath());
+        }
+    }
+
+    private File segmentFile(long id) {
+        return new File(directory, String.format(SEGMENT_NAME_FORMAT, id));
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static FileChannel openWriteChannel(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static long segmentId(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Request read from the spill together with the time it was spilled
+     */
+    public static class SpilledRequest {
+        private final ArtifactMetaInfo artifactMetaInfo;
+        private final long enqueuedMillis;
+
+        private SpilledRequest(ArtifactMetaInfo artifactMetaInfo, long enqueuedMillis) {
+            this.artifactMetaInfo = artifactMetaInfo;
+            this.enqueuedMillis = enqueuedMillis;
+        }
+
+        public ArtifactMetaInfo getArtifactMetaInfo() {
+            return artifactMetaInfo;
+        }
+
+        public long getEnqueuedMillis() {
+            return enqueuedMillis;
+        }
+    }
+}
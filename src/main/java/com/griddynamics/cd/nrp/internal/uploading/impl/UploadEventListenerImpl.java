@@ -17,22 +17,23 @@ package com.griddynamics.cd.nrp.internal.uploading.impl;
 
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
+import com.griddynamics.cd.nrp.internal.metrics.ReplicationMetrics;
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
 import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
-import com.griddynamics.cd.nrp.internal.model.api.ArtifactStatus;
 import com.griddynamics.cd.nrp.internal.uploading.ArtifactUpdateApiClient;
 import com.griddynamics.cd.nrp.internal.uploading.ConfigurationsManager;
 import com.griddynamics.cd.nrp.internal.uploading.UploadEventListener;
 import org.sonatype.nexus.client.core.subsystem.repository.maven.MavenProxyRepository;
 import org.sonatype.nexus.proxy.events.RepositoryItemEventStore;
+import org.sonatype.nexus.proxy.item.StorageFileItem;
 import org.sonatype.nexus.proxy.maven.MavenRepository;
 import org.sonatype.nexus.proxy.maven.gav.Gav;
 import org.sonatype.sisu.goodies.common.ComponentSupport;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Artifact stored event hook
@@ -43,6 +44,8 @@ public class UploadEventListenerImpl extends ComponentSupport implements UploadE
 
     public static final String ID = "uploadEventListener";
 
+    private static final String METADATA_PATH_SUFFIX = "/maven-metadata.xml";
+
     /**
      * Provides access to plugin the configurations
      */
@@ -50,76 +53,73 @@ public class UploadEventListenerImpl extends ComponentSupport implements UploadE
 
     private ArtifactUpdateApiClient artifactUpdateApiClient;
 
-    private Map<ArtifactMetaInfo, ArtifactStatus> receivedArtifacts = new ConcurrentHashMap<>();
+    /**
+     * Groups files of the deployment into artifact sets
+     */
+    private ArtifactSetTracker artifactSetTracker;
+
+    private ReplicationMetrics replicationMetrics;
 
     @Inject
     public UploadEventListenerImpl(@Named(value = ConfigurationsManagerImpl.ID) ConfigurationsManager configurationsManager,
-                                   @Named(value = ArtifactUpdateApiClientImpl.ID) ArtifactUpdateApiClient artifactUpdateApiClient) {
+                                   @Named(value = ArtifactUpdateApiClientImpl.ID) ArtifactUpdateApiClient artifactUpdateApiClient,
+                                   @Named(value = ReplicationMetricsImpl.ID) ReplicationMetrics replicationMetrics) {
         this.configurationsManager = configurationsManager;
         this.artifactUpdateApiClient = artifactUpdateApiClient;
+        this.replicationMetrics = replicationMetrics;
+        this.artifactSetTracker = new ArtifactSetTracker(configurationsManager.getConfiguration(), artifactUpdateApiClient,
+                replicationMetrics);
     }
 
     /**
-     * Fired when new artifact deployed to nexus (proxy repositories are ignored)
+     * Fired when new artifact deployed to nexus (proxy repositories are ignored). Binaries, sha1 checksums
+     * and maven-metadata.xml updates are passed to the {@link ArtifactSetTracker}, which sends one replication
+     * request for all files of the deployment.
      */
     @Subscribe
     @AllowConcurrentEvents
     public void onArtifactUploading(RepositoryItemEventStore event) {
         if (event.getRepository() instanceof MavenRepository &&
                 !(event.getRepository() instanceof MavenProxyRepository)) {
+            replicationMetrics.eventReceived();
             MavenRepository repo = (MavenRepository) event.getRepository();
-            Gav gav = repo.getGavCalculator().pathToGav(event.getItemUid().getPath());
+            String path = event.getItemUid().getPath();
+            if (path.endsWith(METADATA_PATH_SUFFIX)) {
+                artifactSetTracker.metadataReceived(repo.getId(),
+                        path.substring(0, path.length() - METADATA_PATH_SUFFIX.length()));
+                return;
+            }
+            Gav gav = repo.getGavCalculator().pathToGav(path);
             if (null != gav) {
                 ArtifactMetaInfo metaInfo = new ArtifactMetaInfo(configurationsManager.getConfiguration().getMyUrl(), gav.getGroupId(), gav.getArtifactId(), gav.getVersion(), repo.getId());
                 metaInfo.setClassifier(gav.getClassifier());
                 metaInfo.setExtension(gav.getExtension());
-                ArtifactStatus artifactStatus = null;
+                if (!artifactUpdateApiClient.isReplicated(metaInfo)) {
+                    log.debug("Artifact is filtered out for all peers: " + metaInfo.toString());
+                    return;
+                }
                 if (!gav.isSignature() && !gav.isHash()) {
-                    artifactStatus = getArtifactStatus(metaInfo);
-                    artifactStatus.setFileReceived(true);
+                    if (event.getItem() instanceof StorageFileItem) {
+                        // Peer skips the download if it already has the content with the same checksum
+                        StorageFileItem item = (StorageFileItem) event.getItem();
+                        metaInfo.setSha1(item.getRepositoryItemAttributes().get(StorageFileItem.DIGEST_SHA1_KEY));
+                        metaInfo.setSize(item.getLength() >= 0 ? item.getLength() : null);
+                    }
+                    artifactSetTracker.fileReceived(metaInfo, false);
                     log.debug("File received: " + metaInfo.toString());
                 } else if (gav.isHash() && gav.getHashType().equals(Gav.HashType.sha1)) {
-                    artifactStatus = getArtifactStatus(metaInfo);
-                    artifactStatus.setSha1Received(true);
+                    artifactSetTracker.fileReceived(metaInfo, true);
                     log.debug(gav.getHashType().name() + " hash file received for: " + metaInfo.toString());
                 }
-                if (null != artifactStatus) {
-                    updateArtifactStatus(metaInfo, artifactStatus);
-                    if (artifactStatus.isReadyForReplication()) {
-                        log.debug("File with hashes received for: " + metaInfo.toString() + " Sending request");
-                        artifactUpdateApiClient.offerRequest(metaInfo);
-                        clearStatus(metaInfo);
-                    }
-                }
             }
         }
     }
 
     /**
-     * Returns if binary / checksum files were deployed
-     * @param metaInfo Meta info of the deployed artifact
-     */
-    private ArtifactStatus getArtifactStatus(ArtifactMetaInfo metaInfo) {
-        if (!receivedArtifacts.containsKey(metaInfo)) {
-            receivedArtifacts.put(metaInfo, new ArtifactStatus(metaInfo));
-        }
-        return receivedArtifacts.get(metaInfo);
-    }
-
-    /**
-     * Executed when new file (binary or checksum) received
-     * @param artifactMetaInfo Meta info of the deployed artifact
-     * @param artifactStatus Information about received files for deployed artifact
-     */
-    private void updateArtifactStatus(ArtifactMetaInfo artifactMetaInfo, ArtifactStatus artifactStatus) {
-        receivedArtifacts.put(artifactMetaInfo, artifactStatus);
-    }
-
-    /**
-     * Executed when bin and sha1 files received and nexus peer notifications sent
-     * @param metaInfo Meta info of the deployed artifact
+     * Stops tracking of the artifact sets, complete sets waiting for the quiet period are sent
      */
-    private void clearStatus(ArtifactMetaInfo metaInfo) {
-        receivedArtifacts.remove(metaInfo);
+    @PreDestroy
+    public void destroy() {
+        artifactSetTracker.close();
     }
 }
@@ -16,7 +16,19 @@
 package com.griddynamics.cd.nrp.plugin;
 
 import com.google.common.base.Preconditions;
+import com.griddynamics.cd.nrp.internal.reconciliation.ContentReconciler;
+import com.griddynamics.cd.nrp.internal.reconciliation.ContentTreeIndex;
+import com.griddynamics.cd.nrp.internal.reconciliation.impl.ContentReconcilerImpl;
+import com.griddynamics.cd.nrp.internal.reconciliation.impl.ContentTreeIndexImpl;
+import com.griddynamics.cd.nrp.internal.receiving.ArtifactFetchScheduler;
+import com.griddynamics.cd.nrp.internal.receiving.ChecksumIndex;
+import com.griddynamics.cd.nrp.internal.receiving.ProxyRepositoryIndex;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ArtifactFetchSchedulerImpl;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ChecksumIndexImpl;
+import com.griddynamics.cd.nrp.internal.receiving.impl.ProxyRepositoryIndexImpl;
+import com.griddynamics.cd.nrp.internal.uploading.ArtifactUpdateApiClient;
 import com.griddynamics.cd.nrp.internal.uploading.UploadEventListener;
+import com.griddynamics.cd.nrp.internal.uploading.impl.ArtifactUpdateApiClientImpl;
 import com.griddynamics.cd.nrp.internal.uploading.impl.UploadEventListenerImpl;
 import org.eclipse.sisu.EagerSingleton;
 import org.jetbrains.annotations.NonNls;
@@ -49,13 +61,31 @@ public class ReplicationPlugin extends PluginIdentity {
     public static final String ARTIFACT_ID = "nexus-" + ID_PREFIX + "-plugin";
 
     /**
-     * Initializes plugin and registers deploy event handler
+     * Initializes plugin and registers deploy, repository registry and configuration change event handlers
      * @param eventBus Global nexus event bus
      * @param uploadEventListener Deploy event handler
+     * @param proxyRepositoryIndex Index of proxy repositories updated by repository registry events
+     * @param artifactUpdateApiClient Peer lanes updated by configuration changes
+     * @param artifactFetchScheduler Artifact retrievals limits updated by configuration changes
+     * @param checksumIndex Index of local files updated by repository item events
+     * @param contentTreeIndex Content hash trees updated by repository item events
+     * @param contentReconciler Reconciliation job rescheduled by configuration changes
      */
     @Inject
-    public ReplicationPlugin(EventBus eventBus, @Named(UploadEventListenerImpl.ID) UploadEventListener uploadEventListener) throws Exception {
+    public ReplicationPlugin(EventBus eventBus, @Named(UploadEventListenerImpl.ID) UploadEventListener uploadEventListener,
+                             @Named(ProxyRepositoryIndexImpl.ID) ProxyRepositoryIndex proxyRepositoryIndex,
+                             @Named(ArtifactUpdateApiClientImpl.ID) ArtifactUpdateApiClient artifactUpdateApiClient,
+                             @Named(ArtifactFetchSchedulerImpl.ID) ArtifactFetchScheduler artifactFetchScheduler,
+                             @Named(ChecksumIndexImpl.ID) ChecksumIndex checksumIndex,
+                             @Named(ContentTreeIndexImpl.ID) ContentTreeIndex contentTreeIndex,
+                             @Named(ContentReconcilerImpl.ID) ContentReconciler contentReconciler) throws Exception {
         super(GROUP_ID, ARTIFACT_ID);
         eventBus.register(Preconditions.checkNotNull(uploadEventListener));
+        eventBus.register(Preconditions.checkNotNull(proxyRepositoryIndex));
+        eventBus.register(Preconditions.checkNotNull(artifactUpdateApiClient));
+        eventBus.register(Preconditions.checkNotNull(artifactFetchScheduler));
+        eventBus.register(Preconditions.checkNotNull(checksumIndex));
+        eventBus.register(Preconditions.checkNotNull(contentTreeIndex));
+        eventBus.register(Preconditions.checkNotNull(contentReconciler));
     }
 }
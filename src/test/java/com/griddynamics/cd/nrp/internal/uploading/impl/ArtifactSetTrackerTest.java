@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015, Grid Dynamics International, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.griddynamics.cd.nrp.internal.uploading.impl;
+
+import com.griddynamics.cd.nrp.internal.filter.ArtifactFilter;
+import com.griddynamics.cd.nrp.internal.metrics.impl.ReplicationMetricsImpl;
+import com.griddynamics.cd.nrp.internal.model.api.ArtifactMetaInfo;
+import com.griddynamics.cd.nrp.internal.model.config.ReplicationPluginConfiguration;
+import com.griddynamics.cd.nrp.internal.uploading.ArtifactUpdateApiClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sends binary and checksum events of many artifacts from concurrent threads, every artifact has to be
+ * enqueued exactly once
+ */
+public class ArtifactSetTrackerTest {
+
+    private static final int ARTIFACTS = 2000;
+    private static final int THREADS = 8;
+    private static final String[] EXTENSIONS = {"jar", "pom"};
+
+    private final ConcurrentMap<String, AtomicInteger> enqueued = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private ReplicationPluginConfiguration configuration;
+    private ArtifactSetTracker tracker;
+
+    @Before
+    public void setUp() {
+        configuration = new ReplicationPluginConfiguration();
+        tracker = new ArtifactSetTracker(configuration, new ArtifactUpdateApiClient() {
+            @Override
+            public void offerRequest(ArtifactMetaInfo artifactMetaInfo) {
+                AtomicInteger count = new AtomicInteger();
+                AtomicInteger previous = enqueued.putIfAbsent(artifactMetaInfo.getArtifactId(), count);
+                (previous != null ? previous : count).incrementAndGet();
+                requests.incrementAndGet();
+            }
+
+            @Override
+            public boolean isReplicated(ArtifactMetaInfo artifactMetaInfo) {
+                return true;
+            }
+
+            @Override
+            public ArtifactFilter getPeerFilter(String peerUrl) {
+                return null;
+            }
+        }, new ReplicationMetricsImpl());
+    }
+
+    @After
+    public void tearDown() {
+        tracker.close();
+    }
+
+    @Test
+    public void concurrentFileAndChecksumEventsEnqueueArtifactOnce() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    // Every event of the artifact is sent by another thread: binaries by the even threads,
+                    // checksums by the odd ones
+                    for (int i = 0; i < ARTIFACTS; i++) {
+                        for (int e = 0; e < EXTENSIONS.length; e++) {
+                            if ((i + e) % (THREADS / 2) == thread / 2) {
+                                tracker.fileReceived(metaInfo(i, EXTENSIONS[e]), thread % 2 == 1);
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        long quietMillis = configuration.getArtifactSetQuietMillis();
+        long deadline = System.currentTimeMillis() + quietMillis + TimeUnit.SECONDS.toMillis(30);
+        while (requests.get() < ARTIFACTS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        // Duplicate notifications would be sent by the following sweeps
+        Thread.sleep(quietMillis * 2);
+
+        assertEquals(ARTIFACTS, enqueued.size());
+        for (int i = 0; i < ARTIFACTS; i++) {
+            AtomicInteger count = enqueued.get("app" + i);
+            assertTrue("Artifact app" + i + " is not enqueued", count != null);
+            assertEquals("Artifact app" + i + " is enqueued " + count + " times", 1, count.get());
+        }
+        assertEquals(ARTIFACTS, requests.get());
+    }
+
+    private static ArtifactMetaInfo metaInfo(int artifact, String extension) {
+        ArtifactMetaInfo metaInfo = new ArtifactMetaInfo("http://localhost:8081/nexus", "com.example", "app" + artifact,
+                "1.0", "releases");
+        metaInfo.setExtension(extension);
+        return metaInfo;
+    }
+}